@@ -0,0 +1,56 @@
+package jenkinsci.plugins.influxdb.benchmarks;
+
+import hudson.model.Job;
+import hudson.model.Run;
+import jenkinsci.plugins.influxdb.generators.PointPriority;
+import jenkinsci.plugins.influxdb.generators.PointSink;
+import org.influxdb.dto.Point;
+import org.mockito.Mockito;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Fixtures shared by the benchmarks.
+ *
+ * Mocks record every invocation, so they must only be called a bounded number of times per
+ * operation; per point lookups have to go to real objects.
+ */
+final class Builds {
+
+    static final String JOB_NAME = "master";
+    static final int BUILD_NUMBER = 11;
+    static final String CUSTOM_PREFIX = "test_prefix";
+
+    private Builds() {
+    }
+
+    static Run<?, ?> mockBuild() {
+        Run<?, ?> build = Mockito.mock(Run.class);
+        Job job = Mockito.mock(Job.class);
+        Mockito.when(build.getNumber()).thenReturn(BUILD_NUMBER);
+        Mockito.when(build.getParent()).thenReturn(job);
+        Mockito.when(job.getName()).thenReturn(JOB_NAME);
+        return build;
+    }
+
+    /**
+     * A sink that only keeps the points alive long enough for them not to be optimized away.
+     */
+    static PointSink consuming(final Blackhole blackhole) {
+        return new PointSink() {
+            @Override
+            public void add(Point point) {
+                blackhole.consume(point);
+            }
+
+            @Override
+            public void add(Point point, PointPriority priority) {
+                blackhole.consume(point);
+            }
+
+            @Override
+            public void addLines(String lines, PointPriority priority) {
+                blackhole.consume(lines);
+            }
+        };
+    }
+}
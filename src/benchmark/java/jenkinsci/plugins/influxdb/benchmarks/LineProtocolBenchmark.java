@@ -0,0 +1,84 @@
+package jenkinsci.plugins.influxdb.benchmarks;
+
+import jenkinsci.plugins.influxdb.writer.LineProtocolEncoder;
+import org.influxdb.dto.BatchPoints;
+import org.influxdb.dto.Point;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes a batch of points to line protocol, through {@link BatchPoints#lineProtocol()} and
+ * field by field through the {@link LineProtocolEncoder} the generators with many points use.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LineProtocolBenchmark {
+
+    @Param({"1000", "10000"})
+    public int points;
+
+    private BatchPoints batch;
+    private String[] names;
+    private long time;
+    private LineProtocolEncoder encoder;
+
+    @Setup
+    public void setup() {
+        batch = BatchPoints.database("jenkins").build();
+        names = new String[points];
+        time = System.currentTimeMillis() * 1000000;
+        for (int i = 0; i < points; i++) {
+            names[i] = "case " + i;
+            batch.point(Point.measurement("testcase_point")
+                    .tag("project_name", "test_prefix_master")
+                    .tag("prefix", "test_prefix")
+                    .addField("project_name", "test_prefix_master")
+                    .addField("build_number", 11)
+                    .addField("rf_name", names[i])
+                    .addField("rf_passed", i % 7 != 0 ? 1L : 0L)
+                    .addField("rf_duration", 1000L + i)
+                    .addField("rf_pass_percentage", i % 100 + 0.25)
+                    .time(time + i, TimeUnit.NANOSECONDS)
+                    .build());
+        }
+        encoder = new LineProtocolEncoder();
+    }
+
+    @Benchmark
+    public String batchPoints() {
+        return batch.lineProtocol();
+    }
+
+    @Benchmark
+    public int encoder() {
+        encoder.reset();
+        for (int i = 0; i < points; i++) {
+            encoder.measurement("testcase_point")
+                    .tag("prefix", "test_prefix")
+                    .tag("project_name", "test_prefix_master")
+                    .field("build_number", 11)
+                    .field("project_name", "test_prefix_master")
+                    .field("rf_duration", 1000L + i)
+                    .field("rf_name", names[i])
+                    .field("rf_pass_percentage", i % 100 + 0.25)
+                    .field("rf_passed", i % 7 != 0 ? 1L : 0L)
+                    .endLine(time + i);
+        }
+        return encoder.length();
+    }
+}
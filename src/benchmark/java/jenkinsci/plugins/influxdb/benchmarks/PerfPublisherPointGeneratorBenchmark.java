@@ -0,0 +1,82 @@
+package jenkinsci.plugins.influxdb.benchmarks;
+
+import hudson.model.Run;
+import hudson.plugins.PerfPublisher.PerfPublisherBuildAction;
+import hudson.plugins.PerfPublisher.Report.Metric;
+import hudson.plugins.PerfPublisher.Report.Report;
+import hudson.plugins.PerfPublisher.Report.ReportContainer;
+import hudson.plugins.PerfPublisher.Report.Test;
+import jenkinsci.plugins.influxdb.generators.PerfPublisherPointGenerator;
+import jenkinsci.plugins.influxdb.renderer.ProjectNameRenderer;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates the points of a synthetic PerfPublisher report with three metrics per test.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PerfPublisherPointGeneratorBenchmark {
+
+    private static final String[] METRICS = {"time", "memory", "throughput"};
+
+    @Param({"1000", "10000", "100000"})
+    public int cases;
+
+    private Run<?, ?> build;
+
+    @Setup
+    public void setup() {
+        Report report = new Report();
+        for (int i = 0; i < cases; i++) {
+            Test test = new Test();
+            test.setName("test" + i + ".txt");
+            test.setExecuted(i % 20 != 0);
+
+            Map<String, Metric> metrics = new HashMap<>();
+            for (int m = 0; m < METRICS.length; m++) {
+                Metric metric = new Metric();
+                metric.setMeasure(i * (m + 1) % 1000 + 0.5f);
+                metric.setRelevant(m != 2);
+                metric.setUnit("ms");
+                metrics.put(METRICS[m], metric);
+            }
+            test.setMetrics(metrics);
+            report.addTest(test);
+        }
+        ReportContainer reports = new ReportContainer();
+        reports.addReport(report);
+
+        PerfPublisherBuildAction action = Mockito.mock(PerfPublisherBuildAction.class);
+        Mockito.when(action.getReport()).thenReturn(report);
+        Mockito.when(action.getReports()).thenReturn(reports);
+
+        build = Builds.mockBuild();
+        Mockito.when(build.getAction(PerfPublisherBuildAction.class)).thenReturn(action);
+    }
+
+    @Benchmark
+    public void generate(Blackhole blackhole) {
+        new PerfPublisherPointGenerator(new ProjectNameRenderer(Builds.CUSTOM_PREFIX, null), Builds.CUSTOM_PREFIX, build)
+                .generate(Builds.consuming(blackhole));
+    }
+}
@@ -0,0 +1,63 @@
+package jenkinsci.plugins.influxdb.benchmarks;
+
+import hudson.model.Run;
+import jenkinsci.plugins.influxdb.generators.AbstractPointGenerator;
+import jenkinsci.plugins.influxdb.renderer.ProjectNameRenderer;
+import org.influxdb.dto.Point;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per point cost shared by all generators: rendering the project name and building the common
+ * part of a point.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PointBuildingBenchmark {
+
+    private Run<?, ?> build;
+    private ProjectNameRenderer renderer;
+    private AbstractPointGenerator generator;
+
+    @Setup
+    public void setup() {
+        build = Builds.mockBuild();
+        renderer = new ProjectNameRenderer(Builds.CUSTOM_PREFIX, null);
+        // resolves the job name once, later renders do not touch the build
+        renderer.render(build);
+        generator = new AbstractPointGenerator(new ProjectNameRenderer(Builds.CUSTOM_PREFIX, null)) {
+            @Override
+            public boolean hasReport() {
+                return true;
+            }
+
+            @Override
+            public Point[] generate() {
+                return new Point[0];
+            }
+        };
+        generator.buildPoint("warmup", Builds.CUSTOM_PREFIX, build);
+    }
+
+    @Benchmark
+    public String render() {
+        return renderer.render(build);
+    }
+
+    @Benchmark
+    public Point buildPoint() {
+        return generator.buildPoint("benchmark-point", Builds.CUSTOM_PREFIX, build)
+                .addField("value", 42L)
+                .build();
+    }
+}
@@ -0,0 +1,91 @@
+package jenkinsci.plugins.influxdb.benchmarks;
+
+import hudson.model.Run;
+import hudson.plugins.robot.RobotBuildAction;
+import hudson.plugins.robot.model.RobotCaseResult;
+import hudson.plugins.robot.model.RobotResult;
+import hudson.plugins.robot.model.RobotSuiteResult;
+import jenkinsci.plugins.influxdb.generators.RobotFrameworkPointGenerator;
+import jenkinsci.plugins.influxdb.renderer.ProjectNameRenderer;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates the points of a synthetic Robot Framework report. Every suite holds 100 cases, every
+ * case carries two of 50 tags and every tenth case is reported twice, so the de-duplication of
+ * cases and tags is exercised.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RobotFrameworkPointGeneratorBenchmark {
+
+    private static final int CASES_PER_SUITE = 100;
+    private static final int TAGS = 50;
+
+    @Param({"1000", "10000", "100000"})
+    public int cases;
+
+    private Run<?, ?> build;
+
+    @Setup
+    public void setup() {
+        List<RobotSuiteResult> suites = new ArrayList<>();
+        RobotSuiteResult suite = null;
+        for (int i = 0; i < cases; i++) {
+            if (i % CASES_PER_SUITE == 0) {
+                suite = new RobotSuiteResult();
+                suite.setName("suite" + suites.size());
+                suites.add(suite);
+            }
+            suite.addCaseResult(caseResult(suite, i));
+            if (i % 10 == 0) {
+                suite.addCaseResult(caseResult(suite, i));
+            }
+        }
+
+        RobotResult result = Mockito.mock(RobotResult.class);
+        Mockito.when(result.getAllSuites()).thenReturn(suites);
+        RobotBuildAction action = Mockito.mock(RobotBuildAction.class);
+        Mockito.when(action.getResult()).thenReturn(result);
+
+        build = Builds.mockBuild();
+        Mockito.when(build.getAction(RobotBuildAction.class)).thenReturn(action);
+    }
+
+    @Benchmark
+    public void generate(Blackhole blackhole) {
+        new RobotFrameworkPointGenerator(new ProjectNameRenderer(Builds.CUSTOM_PREFIX, null), Builds.CUSTOM_PREFIX, build)
+                .generate(Builds.consuming(blackhole));
+    }
+
+    private static RobotCaseResult caseResult(RobotSuiteResult suite, int i) {
+        RobotCaseResult caseResult = new RobotCaseResult();
+        caseResult.setName("case" + i);
+        caseResult.setParent(suite);
+        caseResult.setPassed(i % 7 != 0);
+        caseResult.setCritical(i % 3 == 0);
+        caseResult.setDuplicateSafeName(suite.getName() + ".case" + i);
+        caseResult.addTags(Arrays.asList("tag" + (i % TAGS), "tag" + ((i + 1) % TAGS)));
+        return caseResult;
+    }
+}
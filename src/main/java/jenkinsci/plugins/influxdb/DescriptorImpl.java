@@ -1,12 +1,25 @@
 package jenkinsci.plugins.influxdb;
  
-import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.annotation.Nonnull;
 import javax.annotation.CheckForNull;
  
 import org.kohsuke.stapler.StaplerRequest;
  
 import jenkinsci.plugins.influxdb.models.Target;
+import jenkinsci.plugins.influxdb.models.TargetSnapshot;
+import jenkinsci.plugins.influxdb.writer.ChunkUploader;
+import jenkinsci.plugins.influxdb.writer.CircuitBreaker;
+import jenkinsci.plugins.influxdb.writer.ChunkedPointSink;
+import jenkinsci.plugins.influxdb.writer.CoalescingWriter;
+import jenkinsci.plugins.influxdb.writer.InfluxDbClientRegistry;
+import jenkinsci.plugins.influxdb.writer.PointSpool;
+import jenkinsci.plugins.influxdb.writer.PublishQueue;
+import jenkinsci.plugins.influxdb.writer.QueueFullPolicy;
+import jenkinsci.plugins.influxdb.writer.RetryPolicy;
+import com.google.common.base.Joiner;
 import hudson.model.AbstractProject;
 import hudson.model.ModelObject;
 import hudson.tasks.BuildStepDescriptor;
@@ -16,24 +29,214 @@ import net.sf.json.JSONObject;
  
 public final class DescriptorImpl extends BuildStepDescriptor<Publisher> implements ModelObject {
  
+    /** The logger. **/
+    private static final Logger logger = Logger.getLogger(DescriptorImpl.class.getName());
+
     public static final String DISPLAY_NAME = "Publish build data to InfluxDb target";
     private final CopyOnWriteList<Target> targets = new CopyOnWriteList<Target>();
+
+    /**
+     * the targets indexed for builds, replaced as a whole whenever the configuration changes
+     */
+    private transient volatile TargetSnapshot targetSnapshot = TargetSnapshot.EMPTY;
+
+    /**
+     * settings of the publish queue used by targets with asynchronous writes
+     */
+    private int queueCapacity = PublishQueue.DEFAULT_CAPACITY;
+    private String queueFullPolicy = QueueFullPolicy.BLOCK.name();
+    private int senderThreads = PublishQueue.DEFAULT_SENDER_THREADS;
+
+    /**
+     * size cap of the on-disk spool of each target, in megabytes
+     */
+    private int spoolCapacityMb = (int) (PointSpool.DEFAULT_MAX_TOTAL_BYTES / (1024 * 1024));
+
+    /**
+     * flush thresholds of targets that coalesce the writes of concurrent builds
+     */
+    private int coalesceMaxPoints = CoalescingWriter.DEFAULT_MAX_POINTS;
+    private int coalesceMaxBytes = CoalescingWriter.DEFAULT_MAX_BYTES;
+    private int coalesceIntervalMillis = CoalescingWriter.DEFAULT_FLUSH_INTERVAL_MILLIS;
+
+    /**
+     * size limits of the chunks a build's points are split into, and how many are uploaded at once
+     */
+    private int chunkMaxPoints = ChunkedPointSink.DEFAULT_MAX_POINTS;
+    private int chunkMaxBytes = ChunkedPointSink.DEFAULT_MAX_BYTES;
+    private int chunkUploads = ChunkUploader.DEFAULT_MAX_IN_FLIGHT;
+
+    /**
+     * retries of failed writes, and when to stop writing to a server that keeps failing
+     */
+    private int retryAttempts = RetryPolicy.DEFAULT_MAX_ATTEMPTS;
+    private int retryBaseDelayMillis = RetryPolicy.DEFAULT_BASE_DELAY_MILLIS;
+    private int retryMaxDelayMillis = RetryPolicy.DEFAULT_MAX_DELAY_MILLIS;
+    private int breakerFailureThreshold = CircuitBreaker.DEFAULT_FAILURE_THRESHOLD;
+    private int breakerOpenSeconds = CircuitBreaker.DEFAULT_OPEN_SECONDS;
  
     public DescriptorImpl() {
         super(InfluxDbPublisher.class);
         load();
+        targetSnapshot = TargetSnapshot.of(targets);
+        for (String problem : targetSnapshot.getProblems()) {
+            logger.log(Level.WARNING, "[InfluxDB Plugin] " + problem);
+        }
+        configurePublishQueue();
+        configureSpool();
+        CoalescingWriter.configure(coalesceMaxPoints, coalesceMaxBytes, coalesceIntervalMillis);
+        CircuitBreaker.configure(getBreakerFailureThreshold(), getBreakerOpenSeconds());
     }
      
     public Target[] getTargets() {
-        Iterator<Target> it = targets.iterator();
-        int size = 0;
-        while (it.hasNext()) {
-            it.next();
-            size++;
-        }
-        return targets.toArray(new Target[size]);
+        return targetSnapshot.toArray();
+    }
+
+    /**
+     * @return the target with the description, or null
+     */
+    public Target getTarget(String description) {
+        return targetSnapshot.get(description);
+    }
+
+    /**
+     * @return the first configured target, or null
+     */
+    public Target getDefaultTarget() {
+        return targetSnapshot.getDefault();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public String getQueueFullPolicy() {
+        return queueFullPolicy;
+    }
+
+    public void setQueueFullPolicy(String queueFullPolicy) {
+        this.queueFullPolicy = QueueFullPolicy.parse(queueFullPolicy).name();
+    }
+
+    public int getSenderThreads() {
+        return senderThreads;
+    }
+
+    public void setSenderThreads(int senderThreads) {
+        this.senderThreads = senderThreads;
     }
  
+    public int getSpoolCapacityMb() {
+        return spoolCapacityMb;
+    }
+
+    public void setSpoolCapacityMb(int spoolCapacityMb) {
+        this.spoolCapacityMb = spoolCapacityMb;
+    }
+
+    public int getCoalesceMaxPoints() {
+        return coalesceMaxPoints;
+    }
+
+    public void setCoalesceMaxPoints(int coalesceMaxPoints) {
+        this.coalesceMaxPoints = coalesceMaxPoints;
+    }
+
+    public int getCoalesceMaxBytes() {
+        return coalesceMaxBytes;
+    }
+
+    public void setCoalesceMaxBytes(int coalesceMaxBytes) {
+        this.coalesceMaxBytes = coalesceMaxBytes;
+    }
+
+    public int getCoalesceIntervalMillis() {
+        return coalesceIntervalMillis;
+    }
+
+    public void setCoalesceIntervalMillis(int coalesceIntervalMillis) {
+        this.coalesceIntervalMillis = coalesceIntervalMillis;
+    }
+
+    public int getChunkMaxPoints() {
+        return chunkMaxPoints > 0 ? chunkMaxPoints : ChunkedPointSink.DEFAULT_MAX_POINTS;
+    }
+
+    public void setChunkMaxPoints(int chunkMaxPoints) {
+        this.chunkMaxPoints = chunkMaxPoints;
+    }
+
+    public int getChunkMaxBytes() {
+        return chunkMaxBytes > 0 ? chunkMaxBytes : ChunkedPointSink.DEFAULT_MAX_BYTES;
+    }
+
+    public void setChunkMaxBytes(int chunkMaxBytes) {
+        this.chunkMaxBytes = chunkMaxBytes;
+    }
+
+    public int getChunkUploads() {
+        return chunkUploads > 0 ? chunkUploads : ChunkUploader.DEFAULT_MAX_IN_FLIGHT;
+    }
+
+    public void setChunkUploads(int chunkUploads) {
+        this.chunkUploads = chunkUploads;
+    }
+
+    public int getRetryAttempts() {
+        return retryAttempts > 0 ? retryAttempts : RetryPolicy.DEFAULT_MAX_ATTEMPTS;
+    }
+
+    public void setRetryAttempts(int retryAttempts) {
+        this.retryAttempts = retryAttempts;
+    }
+
+    public int getRetryBaseDelayMillis() {
+        return retryBaseDelayMillis > 0 ? retryBaseDelayMillis : RetryPolicy.DEFAULT_BASE_DELAY_MILLIS;
+    }
+
+    public void setRetryBaseDelayMillis(int retryBaseDelayMillis) {
+        this.retryBaseDelayMillis = retryBaseDelayMillis;
+    }
+
+    public int getRetryMaxDelayMillis() {
+        return retryMaxDelayMillis > 0 ? retryMaxDelayMillis : RetryPolicy.DEFAULT_MAX_DELAY_MILLIS;
+    }
+
+    public void setRetryMaxDelayMillis(int retryMaxDelayMillis) {
+        this.retryMaxDelayMillis = retryMaxDelayMillis;
+    }
+
+    public int getBreakerFailureThreshold() {
+        return breakerFailureThreshold > 0 ? breakerFailureThreshold : CircuitBreaker.DEFAULT_FAILURE_THRESHOLD;
+    }
+
+    public void setBreakerFailureThreshold(int breakerFailureThreshold) {
+        this.breakerFailureThreshold = breakerFailureThreshold;
+    }
+
+    public int getBreakerOpenSeconds() {
+        return breakerOpenSeconds > 0 ? breakerOpenSeconds : CircuitBreaker.DEFAULT_OPEN_SECONDS;
+    }
+
+    public void setBreakerOpenSeconds(int breakerOpenSeconds) {
+        this.breakerOpenSeconds = breakerOpenSeconds;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return new RetryPolicy(getRetryAttempts(), getRetryBaseDelayMillis(), getRetryMaxDelayMillis());
+    }
+
+    /**
+     * @return the circuit breaker of the server the target writes to, shown on the configuration page
+     */
+    public CircuitBreaker getCircuitBreaker(Target target) {
+        return CircuitBreaker.forTarget(target);
+    }
+
     @Override
     public String getDisplayName() {
         return DISPLAY_NAME;
@@ -52,9 +255,44 @@ public final class DescriptorImpl extends BuildStepDescriptor<Publisher> impleme
     }
  
     @Override
-    public boolean configure(StaplerRequest req, JSONObject formData) {
-        targets.replaceBy(req.bindParametersToList(Target.class, "targetBinding."));
+    public boolean configure(StaplerRequest req, JSONObject formData) throws FormException {
+        List<Target> configured = req.bindParametersToList(Target.class, "targetBinding.");
+        // targets are validated once here instead of on every publish
+        TargetSnapshot snapshot = TargetSnapshot.of(configured);
+        if (!snapshot.getProblems().isEmpty()) {
+            throw new FormException(Joiner.on(". ").join(snapshot.getProblems()), "targets");
+        }
+        targets.replaceBy(configured);
+        targetSnapshot = snapshot;
+        req.bindParameters(this, "queueBinding.");
+        req.bindParameters(this, "spoolBinding.");
+        req.bindParameters(this, "coalesceBinding.");
+        req.bindParameters(this, "chunkBinding.");
+        req.bindParameters(this, "retryBinding.");
         save();
+        InfluxDbClientRegistry.get().retainOnly(getTargets());
+        configurePublishQueue();
+        configureSpool();
+        CoalescingWriter.configure(coalesceMaxPoints, coalesceMaxBytes, coalesceIntervalMillis);
+        CircuitBreaker.configure(getBreakerFailureThreshold(), getBreakerOpenSeconds());
         return true;
     }
+
+    private void configurePublishQueue() {
+        // ignore invalid values entered on the configuration page
+        if (queueCapacity <= 0) {
+            queueCapacity = PublishQueue.DEFAULT_CAPACITY;
+        }
+        if (senderThreads <= 0) {
+            senderThreads = PublishQueue.DEFAULT_SENDER_THREADS;
+        }
+        PublishQueue.get().configure(queueCapacity, QueueFullPolicy.parse(queueFullPolicy), senderThreads);
+    }
+
+    private void configureSpool() {
+        if (spoolCapacityMb <= 0) {
+            spoolCapacityMb = (int) (PointSpool.DEFAULT_MAX_TOTAL_BYTES / (1024 * 1024));
+        }
+        PointSpool.setMaxTotalBytes(spoolCapacityMb * 1024L * 1024L);
+    }
 }
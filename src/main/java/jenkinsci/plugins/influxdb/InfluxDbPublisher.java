@@ -1,8 +1,10 @@
 package jenkinsci.plugins.influxdb;
 
+import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import hudson.Extension;
 import hudson.FilePath;
 import hudson.Launcher;
@@ -13,24 +15,41 @@ import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Notifier;
 import hudson.tasks.Publisher;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.LogTaskListener;
+import hudson.util.NamingThreadFactory;
 import jenkins.tasks.SimpleBuildStep;
 import jenkinsci.plugins.influxdb.generators.*;
 import jenkinsci.plugins.influxdb.models.Target;
 import jenkinsci.plugins.influxdb.renderer.MeasurementRenderer;
 import jenkinsci.plugins.influxdb.renderer.ProjectNameRenderer;
-import org.influxdb.InfluxDB;
-import org.influxdb.InfluxDB.ConsistencyLevel;
-import org.influxdb.InfluxDBFactory;
-import org.influxdb.dto.BatchPoints;
-import org.influxdb.dto.Point;
+import jenkinsci.plugins.influxdb.stats.BuildStatistics;
+import jenkinsci.plugins.influxdb.stats.PluginStatistics;
+import jenkinsci.plugins.influxdb.writer.BatchWriter;
+import jenkinsci.plugins.influxdb.writer.CardinalityGuard;
+import jenkinsci.plugins.influxdb.writer.ChunkUploader;
+import jenkinsci.plugins.influxdb.writer.ChunkedPointSink;
+import jenkinsci.plugins.influxdb.writer.CoalescingWriter;
+import jenkinsci.plugins.influxdb.writer.LineProtocolEncoder;
+import jenkinsci.plugins.influxdb.writer.PointSpool;
+import jenkinsci.plugins.influxdb.writer.PublishQueue;
+import jenkinsci.plugins.influxdb.writer.RateLimiter;
+import jenkinsci.plugins.influxdb.writer.RetryPolicy;
+import jenkinsci.plugins.influxdb.writer.WriteBatch;
+import jenkinsci.plugins.influxdb.writer.WriteRejectedException;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.influxdb.dto.Point;
 import org.kohsuke.stapler.DataBoundSetter;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -43,6 +62,13 @@ public class InfluxDbPublisher extends Notifier implements SimpleBuildStep{
     @Extension(optional = true)
     public static final DescriptorImpl DESCRIPTOR = new DescriptorImpl();
 
+    private static final BatchWriter batchWriter = new BatchWriter();
+
+    // hands the chunks of builds to their targets, so that generator threads never wait on the network,
+    // and waits for the uploads to additional targets after their builds have completed
+    private static final ExecutorService chunkDispatcher = Executors.newCachedThreadPool(
+            new NamingThreadFactory(new DaemonThreadFactory(), "InfluxDB chunk dispatcher"));
+
     private String selectedTarget;
 
     /**
@@ -94,6 +120,40 @@ public class InfluxDbPublisher extends Notifier implements SimpleBuildStep{
      */
     private Map<String, Map<String, Object>> customDataMap;
 
+    /**
+     * time budget of each point generator in seconds. A generator that needs longer is
+     * skipped, the points of the other generators are still published.
+     */
+    private long generatorTimeout = PointGeneratorRunner.DEFAULT_TIMEOUT_SECONDS;
+
+    /**
+     * comma separated descriptions of further targets that receive the same points as the
+     * selected target, e.g. a central long-term InfluxDB next to a regional one
+     */
+    private String additionalTargets;
+
+    /**
+     * comma separated names of the only point generators to run, e.g. "jenkinsBase,robotFramework".
+     * All generators run if empty.
+     */
+    private String includedGenerators;
+
+    /**
+     * comma separated names of point generators not to run, e.g. "sonarQube,changeLog"
+     */
+    private String excludedGenerators;
+
+    /**
+     * Ant pattern of the JUnit XML reports to read from the workspace, e.g.
+     * "**/target/surefire-reports/TEST-*.xml". No reports are read if empty.
+     */
+    private String junitReports;
+
+    /**
+     * whether a point is published for every JUnit test case, not only for every suite
+     */
+    private boolean junitCasePoints;
+
     public InfluxDbPublisher() {
     }
 
@@ -105,10 +165,9 @@ public class InfluxDbPublisher extends Notifier implements SimpleBuildStep{
     public String getSelectedTarget() {
         String ipTemp = selectedTarget;
         if (ipTemp == null) {
-            Target[] targets = DESCRIPTOR.getTargets();
-            if (targets.length > 0) {
-                //ipTemp = targets[0].getUrl() + "," + targets[0].getDatabase();
-                ipTemp = targets[0].getDescription();
+            Target defaultTarget = DESCRIPTOR.getDefaultTarget();
+            if (defaultTarget != null) {
+                ipTemp = defaultTarget.getDescription();
             }
         }
         return ipTemp;
@@ -155,18 +214,65 @@ public class InfluxDbPublisher extends Notifier implements SimpleBuildStep{
         return customDataMap;
     }
 
+    public long getGeneratorTimeout() {
+        return generatorTimeout;
+    }
+
+    @DataBoundSetter
+    public void setGeneratorTimeout(long generatorTimeout) {
+        this.generatorTimeout = generatorTimeout;
+    }
+
+    public String getAdditionalTargets() {
+        return additionalTargets;
+    }
+
+    @DataBoundSetter
+    public void setAdditionalTargets(String additionalTargets) {
+        this.additionalTargets = additionalTargets;
+    }
+
+    public String getIncludedGenerators() {
+        return includedGenerators;
+    }
+
+    @DataBoundSetter
+    public void setIncludedGenerators(String includedGenerators) {
+        this.includedGenerators = includedGenerators;
+    }
+
+    public String getExcludedGenerators() {
+        return excludedGenerators;
+    }
+
+    @DataBoundSetter
+    public void setExcludedGenerators(String excludedGenerators) {
+        this.excludedGenerators = excludedGenerators;
+    }
+
+    public String getJunitReports() {
+        return junitReports;
+    }
+
+    @DataBoundSetter
+    public void setJunitReports(String junitReports) {
+        this.junitReports = junitReports;
+    }
+
+    public boolean isJunitCasePoints() {
+        return junitCasePoints;
+    }
+
+    @DataBoundSetter
+    public void setJunitCasePoints(boolean junitCasePoints) {
+        this.junitCasePoints = junitCasePoints;
+    }
+
     public Target getTarget() {
-        Target[] targets = DESCRIPTOR.getTargets();
-        if (selectedTarget == null && targets.length > 0) {
-            return targets[0];
-        }
-        for (Target target : targets) {
-            String targetInfo = target.getDescription();
-            if (targetInfo.equals(selectedTarget)) {
-                return target;
-            }
+        if (selectedTarget == null) {
+            return DESCRIPTOR.getDefaultTarget();
         }
-        return null;
+        return DESCRIPTOR.getTarget(selectedTarget);
     }
 
     //@Override
@@ -190,9 +296,10 @@ public class InfluxDbPublisher extends Notifier implements SimpleBuildStep{
     }
 
     @Override
-    public void perform(Run<?, ?> build, FilePath workspace, Launcher launcher, TaskListener listener)
+    public void perform(Run<?, ?> build, FilePath workspace, Launcher launcher, final TaskListener listener)
             throws InterruptedException, IOException {
 
+        long started = System.nanoTime();
         MeasurementRenderer<Run<?, ?>> measurementRenderer = new ProjectNameRenderer(customPrefix, customProjectName);
 
         // get the target from the job's config
@@ -200,128 +307,399 @@ public class InfluxDbPublisher extends Notifier implements SimpleBuildStep{
         if (target==null) {
             throw new RuntimeException("Target was null!");
         }
+        final List<Target> targets = resolveTargets(target, listener);
 
-        // prepare a meaningful logmessage
-        String logMessage = "[InfluxDB Plugin] Publishing data to: " + target.toString();
-
-        // write to jenkins logger
-        logger.log(Level.INFO, logMessage);
-        // write to jenkins console
-        listener.getLogger().println(logMessage);
-
-        // connect to InfluxDB
-        InfluxDB influxDB = Strings.isNullOrEmpty(target.getUsername()) ? InfluxDBFactory.connect(target.getUrl()) : InfluxDBFactory.connect(target.getUrl(), target.getUsername(), target.getPassword());
-        List<Point> pointsToWrite = new ArrayList<Point>();
-
-        // finally write to InfluxDB
-        JenkinsBasePointGenerator jGen = new JenkinsBasePointGenerator(measurementRenderer, customPrefix, build);
-        addPoints(pointsToWrite, jGen, listener);
+        for (Target publishTarget : targets) {
+            // prepare a meaningful logmessage
+            String logMessage = "[InfluxDB Plugin] Publishing data to: " + publishTarget.toString();
 
-        CustomDataPointGenerator cdGen = new CustomDataPointGenerator(measurementRenderer, customPrefix, build, customData);
-        if (cdGen.hasReport()) {
-            listener.getLogger().println("[InfluxDB Plugin] Custom data found. Writing to InfluxDB...");
-            addPoints(pointsToWrite, cdGen, listener);
+            // write to jenkins logger
+            logger.log(Level.INFO, logMessage);
+            // write to jenkins console
+            listener.getLogger().println(logMessage);
         }
 
-        CustomDataMapPointGenerator cdmGen = new CustomDataMapPointGenerator(measurementRenderer, customPrefix, build, customDataMap);
-        if (cdmGen.hasReport()) {
-            listener.getLogger().println("[InfluxDB Plugin] Custom data map found. Writing to InfluxDB...");
-            addPoints(pointsToWrite, cdmGen, listener);
+        // collect the points of all generators concurrently
+        PointGeneratorRunner runner = new PointGeneratorRunner(listener, generatorTimeout);
+        // optional plugins were checked once when the factories were loaded, disabled generators are never created
+        GeneratorContext context = new GeneratorContext(measurementRenderer, customPrefix, build, listener, customData,
+                customDataMap, workspace, junitReports, junitCasePoints);
+        for (PointGeneratorFactory factory : selectFactories(listener)) {
+            try {
+                runner.add(factory.create(context), factory.getLabel());
+            } catch (RuntimeException | LinkageError e) {
+                logger.log(Level.WARNING, "Could not create point generator " + factory.getName(), e);
+                listener.getLogger().println("[InfluxDB Plugin] Could not create point generator " + factory.getName() + ". Skipping: " + e);
+            }
         }
 
+        // points are generated and encoded once, and every chunk is published to all targets. Only the
+        // selected target is waited for, additional targets never add latency to the build
+        final List<ChunkUploader> uploaders = new ArrayList<>();
+        // outcomes of the chunks handed to coalescing writers, added to by the generator threads
+        final List<List<CoalescingWriter.Ticket>> tickets = new ArrayList<>();
+        RetryPolicy retryPolicy = DESCRIPTOR.getRetryPolicy();
+        for (int i = 0; i < targets.size(); i++) {
+            uploaders.add(new ChunkUploader(batchWriter, DESCRIPTOR.getChunkUploads(), retryPolicy));
+            tickets.add(Collections.synchronizedList(new ArrayList<CoalescingWriter.Ticket>()));
+        }
+        ChunkedPointSink sink = new ChunkedPointSink(target, build.getFullDisplayName(),
+                DESCRIPTOR.getChunkMaxPoints(), DESCRIPTOR.getChunkMaxBytes(), new ChunkedPointSink.Handler() {
+            @Override
+            public void handle(WriteBatch chunk) throws InterruptedException {
+                // the sink hands every chunk on once per target
+                for (int i = 0; i < targets.size(); i++) {
+                    if (targets.get(i) == chunk.getTarget()) {
+                        publish(targets.get(i), chunk, listener, uploaders.get(i), tickets.get(i), i == 0);
+                        return;
+                    }
+                }
+            }
+        });
+        List<CardinalityGuard> guards = new ArrayList<>();
+        for (Target publishTarget : targets) {
+            guards.add(CardinalityGuard.forTarget(publishTarget));
+        }
+        sink.setTargets(targets, guards);
+        sink.setDispatcher(chunkDispatcher, DESCRIPTOR.getChunkUploads());
+        BuildStatistics statistics = runner.getStatistics();
+        InfluxReportException failure = null;
         try {
-            CoberturaPointGenerator cGen = new CoberturaPointGenerator(measurementRenderer, customPrefix, build);
-            if (cGen.hasReport()) {
-                listener.getLogger().println("[InfluxDB Plugin] Cobertura data found. Writing to InfluxDB...");
-                addPoints(pointsToWrite, cGen, listener);
+            runner.run(sink);
+            sink.close();
+        } finally {
+            // every target gets its own status, only the selected target can fail the build
+            failure = writeToInflux(targets.get(0), uploaders.get(0), tickets.get(0), statistics, listener);
+            for (int i = 1; i < targets.size(); i++) {
+                reportAdditional(targets.get(i), uploaders.get(i), tickets.get(i), statistics, listener);
             }
-        } catch (NoClassDefFoundError ignore) {
-            logger.log(Level.INFO, "Plugin skipped: Cobertura");
+            statistics.setEncodedBytes(sink.getByteCount());
+            statistics.setCardinalityViolations(sink.getCardinalityWarned(), sink.getCardinalityRejected(),
+                    sink.getCardinalityRerouted());
+            reportCardinality(sink, listener);
+            PluginStatistics.get().recordBuild(statistics, System.nanoTime() - started);
         }
+        publishStatistics(targets, new PluginStatsPointGenerator(measurementRenderer, customPrefix, build, statistics), listener);
+        if (failure != null) {
+            throw failure;
+        }
+        listener.getLogger().println("[InfluxDB Plugin] Completed.");
+    }
 
-        try {
-            RobotFrameworkPointGenerator rfGen = new RobotFrameworkPointGenerator(measurementRenderer, customPrefix, build);
-            if (rfGen.hasReport()) {
-                listener.getLogger().println("[InfluxDB Plugin] Robot Framework data found. Writing to InfluxDB...");
-                addPoints(pointsToWrite, rfGen, listener);
+    private static void reportCardinality(ChunkedPointSink sink, TaskListener listener) {
+        int warned = sink.getCardinalityWarned();
+        int rejected = sink.getCardinalityRejected();
+        int rerouted = sink.getCardinalityRerouted();
+        if (warned + rejected + rerouted == 0) {
+            return;
+        }
+        StringBuilder message = new StringBuilder("[InfluxDB Plugin] Cardinality limit exceeded by measurements ")
+                .append(Joiner.on(", ").join(sink.getExceededMeasurements())).append(':');
+        if (warned > 0) {
+            message.append(' ').append(warned).append(" points written anyway.");
+        }
+        if (rejected > 0) {
+            message.append(' ').append(rejected).append(" points rejected.");
+        }
+        if (rerouted > 0) {
+            message.append(' ').append(rerouted).append(" points written to ").append(CardinalityGuard.FALLBACK_MEASUREMENT).append('.');
+        }
+        listener.getLogger().println(message);
+    }
+
+    /**
+     * Returns the factories of the generators enabled for this job, in their registration order.
+     */
+    private List<PointGeneratorFactory> selectFactories(TaskListener listener) {
+        Set<String> included = parseNames(includedGenerators);
+        Set<String> excluded = parseNames(excludedGenerators);
+        List<PointGeneratorFactory> selected = new ArrayList<>();
+        Set<String> known = new HashSet<>();
+        for (PointGeneratorFactory factory : PointGeneratorFactory.all()) {
+            String name = factory.getName();
+            known.add(name);
+            if ((included.isEmpty() || included.contains(name)) && !excluded.contains(name)) {
+                selected.add(factory);
             }
-        } catch (NoClassDefFoundError ignore) {
-            logger.log(Level.INFO, "Plugin skipped: Robot Framework");
         }
+        for (String name : Sets.union(included, excluded)) {
+            if (!known.contains(name)) {
+                listener.getLogger().println("[InfluxDB Plugin] Point generator " + name + " is not available. Ignoring it.");
+            }
+        }
+        return selected;
+    }
 
-        try {
-            JacocoPointGenerator jacoGen = new JacocoPointGenerator(measurementRenderer, customPrefix, build);
-            if (jacoGen.hasReport()) {
-                listener.getLogger().println("[InfluxDB Plugin] Jacoco data found. Writing to InfluxDB...");
-                addPoints(pointsToWrite, jacoGen, listener);
+    private static Set<String> parseNames(String names) {
+        Set<String> parsed = new HashSet<>();
+        if (Strings.isNullOrEmpty(names)) {
+            return parsed;
+        }
+        for (String name : names.split(",")) {
+            name = name.trim();
+            if (!name.isEmpty()) {
+                parsed.add(name);
             }
-        } catch (NoClassDefFoundError ignore) {
-            logger.log(Level.INFO, "Plugin skipped: JaCoCo");
         }
+        return parsed;
+    }
 
-        try {
-            PerformancePointGenerator perfGen = new PerformancePointGenerator(measurementRenderer, customPrefix, build);
-            if (perfGen.hasReport()) {
-                listener.getLogger().println("[InfluxDB Plugin] Performance data found. Writing to InfluxDB...");
-                addPoints(pointsToWrite, perfGen, listener);
+    /**
+     * Returns the selected target followed by the additional targets that exist.
+     */
+    private List<Target> resolveTargets(Target target, TaskListener listener) {
+        List<Target> targets = new ArrayList<>();
+        targets.add(target);
+        if (Strings.isNullOrEmpty(additionalTargets)) {
+            return targets;
+        }
+        for (String description : additionalTargets.split(",")) {
+            description = description.trim();
+            if (description.isEmpty()) {
+                continue;
+            }
+            Target additional = DESCRIPTOR.getTarget(description);
+            if (additional == null) {
+                listener.getLogger().println("[InfluxDB Plugin] Additional target " + description + " does not exist. Skipping.");
+            } else if (!targets.contains(additional)) {
+                targets.add(additional);
             }
-        } catch (NoClassDefFoundError ignore) {
-            logger.log(Level.INFO, "Plugin skipped: Performance");
         }
+        return targets;
+    }
 
-        SonarQubePointGenerator sonarGen = new SonarQubePointGenerator(measurementRenderer, customPrefix, build, listener);
-        if (sonarGen.hasReport()) {
-            listener.getLogger().println("[InfluxDB Plugin] SonarQube data found. Writing to InfluxDB...");
-            addPoints(pointsToWrite, sonarGen, listener);
+    /**
+     * Hands a chunk to a target. The selected target waits while its publish queue or uploads are
+     * full, an additional target never waits: its chunks are queued, spooled or kept by its uploader.
+     */
+    private void publish(Target target, WriteBatch batch, TaskListener listener, ChunkUploader uploader,
+                         List<CoalescingWriter.Ticket> tickets, boolean selected) throws InterruptedException {
+        if (target.isCoalesceWrites()) {
+            CoalescingWriter.Ticket ticket = CoalescingWriter.forBatch(batch).add(batch);
+            if (ticket != null) {
+                tickets.add(ticket);
+                listener.getLogger().println("[InfluxDB Plugin] Handed " + batch.getPointCount() + " points to the coalescing writer.");
+                return;
+            }
+            // the target falls behind, the uploader below bounds what this build has in flight
+            listener.getLogger().println("[InfluxDB Plugin] Coalescing writer of " + target.getDescription()
+                    + " is backed up. Writing " + batch.getPointCount() + " points directly...");
         }
 
+        if (target.isAsyncWrite()) {
+            if (selected ? PublishQueue.get().offer(batch) : PublishQueue.get().tryOffer(batch)) {
+                listener.getLogger().println("[InfluxDB Plugin] Queued " + batch.getPointCount() + " points for asynchronous publishing.");
+                return;
+            }
+            if (PointSpool.spoolIfEnabled(batch)) {
+                listener.getLogger().println("[InfluxDB Plugin] Publish queue is full. Spooled " + batch.getPointCount() + " points for later delivery.");
+                return;
+            }
+            if (batch.getPriority() == PointPriority.BULK) {
+                // writing them synchronously would only add to the load that filled the queue
+                PluginStatistics.get().recordShed(batch.getPointCount());
+                listener.getLogger().println("[InfluxDB Plugin] Publish queue is full. Shed " + batch.getPointCount() + " bulk points.");
+                return;
+            }
+            listener.getLogger().println("[InfluxDB Plugin] Publish queue is full. Writing directly...");
+        }
 
-        ChangeLogPointGenerator changeLogGen = new ChangeLogPointGenerator(measurementRenderer, customPrefix, build);
-        if (changeLogGen.hasReport()) {
-            listener.getLogger().println("[InfluxDB Plugin] Git ChangeLog data found. Writing to InfluxDB...");
-            addPoints(pointsToWrite, changeLogGen, listener);
+        RateLimiter rateLimiter = RateLimiter.forTarget(target);
+        if (rateLimiter != null && rateLimiter.isBackedUp() && PointSpool.spoolIfEnabled(batch)) {
+            listener.getLogger().println("[InfluxDB Plugin] Rate limit of " + target.getDescription() + " reached. Spooled "
+                    + batch.getPointCount() + " points for later delivery.");
+            return;
+        }
+        if (selected) {
+            uploader.submit(batch);
+        } else {
+            uploader.offer(batch);
         }
+    }
 
-        try {
-            PerfPublisherPointGenerator perfPublisherGen = new PerfPublisherPointGenerator(measurementRenderer, customPrefix, build);
-            if (perfPublisherGen.hasReport()) {
-                listener.getLogger().println("[InfluxDB Plugin] PerfPublisher data found. Writing to InfluxDB...");
-                addPoints(pointsToWrite, perfPublisherGen, listener);
+    /**
+     * Reports an additional target right away if its uploads are done, and otherwise in the
+     * background, to the Jenkins log, once they are. Its failures are reported but never thrown.
+     */
+    private void reportAdditional(final Target target, final ChunkUploader uploader,
+                                  final List<CoalescingWriter.Ticket> tickets, BuildStatistics statistics,
+                                  TaskListener listener) throws InterruptedException {
+        if (isDone(uploader, tickets)) {
+            InfluxReportException failure = writeToInflux(target, uploader, tickets, statistics, listener);
+            if (failure != null) {
+                listener.getLogger().println("[InfluxDB Plugin] " + failure.getMessage());
             }
-        } catch (NoClassDefFoundError ignore) {
-            logger.log(Level.INFO, "Plugin skipped: Performance Publisher");
+            return;
         }
+        listener.getLogger().println("[InfluxDB Plugin] " + target.getDescription()
+                + ": Not waiting for the remaining uploads, they are reported to the Jenkins log.");
+        chunkDispatcher.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    InfluxReportException failure = writeToInflux(target, uploader, tickets, null,
+                            new LogTaskListener(logger, Level.INFO));
+                    if (failure != null) {
+                        logger.log(Level.WARNING, failure.getMessage(), failure.getCause());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
 
-        writeToInflux(target, influxDB, pointsToWrite);
-        listener.getLogger().println("[InfluxDB Plugin] Completed.");
+    private static boolean isDone(ChunkUploader uploader, List<CoalescingWriter.Ticket> tickets) {
+        if (!uploader.isDone()) {
+            return false;
+        }
+        synchronized (tickets) {
+            for (CoalescingWriter.Ticket ticket : tickets) {
+                if (!ticket.isDone()) {
+                    return false;
+                }
+            }
+        }
+        return true;
     }
 
-    private void addPoints(List<Point> pointsToWrite, PointGenerator generator, TaskListener listener) {
-        try {
-            pointsToWrite.addAll(Arrays.asList(generator.generate()));
-        } catch (Exception e) {
-            listener.getLogger().println("[InfluxDB Plugin] Failed to collect data. Ignoring Exception:" + e);
+    /**
+     * Waits for the synchronous and coalesced uploads of a target and reports the chunks that could
+     * not be written. Bulk chunks that could not be written are shed, they never fail the build.
+     *
+     * @param statistics the statistics of the build to add the target to, or null once they were recorded
+     * @return the failure to throw for a target that exposes exceptions, or null
+     */
+    private InfluxReportException writeToInflux(Target target, ChunkUploader uploader, List<CoalescingWriter.Ticket> tickets,
+                                                BuildStatistics statistics, TaskListener listener) throws InterruptedException {
+        InfluxReportException coalescedFailure = awaitCoalesced(target, tickets, listener);
+        List<ChunkUploader.Failure> failures = uploader.await();
+        if (statistics != null) {
+            statistics.addTarget(new BuildStatistics.TargetWrite(target.getDescription(), uploader.getChunkCount(),
+                    failures.size(), uploader.getRetries(), uploader.getWriteNanos(), uploader.getMaxWriteNanos(),
+                    uploader.getCompressedBytes(), target.isAsyncWrite() ? PublishQueue.get().size() : -1));
         }
+        String prefix = "[InfluxDB Plugin] " + target.getDescription() + ": ";
+        if (uploader.getCompressedBytes() > 0) {
+            listener.getLogger().println(prefix + "Compressed " + uploader.getRawBytes() + " bytes of line protocol to "
+                    + uploader.getCompressedBytes() + " bytes.");
+        }
+        Exception unspooled = null;
+        for (ChunkUploader.Failure failure : failures) {
+            WriteBatch chunk = failure.getChunk();
+            listener.getLogger().println(prefix + "Could not write chunk " + failure.getNumber() + " of "
+                    + uploader.getChunkCount() + " (" + chunk.getPointCount() + " points) after " + failure.getAttempts()
+                    + " attempts: " + failure.getCause());
+            // a malformed chunk would be rejected again when the spool replays it
+            if (!(failure.getCause() instanceof WriteRejectedException) && PointSpool.spoolIfEnabled(chunk)) {
+                // the spool replays the points once the target is reachable again
+                listener.getLogger().println(prefix + "Spooled " + chunk.getPointCount() + " points for later delivery.");
+                logger.log(Level.WARNING, "Could not report to InfluxDB. Points spooled.", failure.getCause());
+            } else if (chunk.getPriority() == PointPriority.BULK) {
+                PluginStatistics.get().recordShed(chunk.getPointCount());
+                listener.getLogger().println(prefix + "Shed " + chunk.getPointCount() + " bulk points.");
+                logger.log(Level.FINE, "Could not report bulk points to InfluxDB. Points shed.", failure.getCause());
+            } else {
+                logger.log(Level.WARNING, "Could not report to InfluxDB.", failure.getCause());
+                if (unspooled == null) {
+                    unspooled = failure.getCause();
+                }
+            }
+        }
+        if (unspooled != null && target.isExposeExceptions()) {
+            return new InfluxReportException(target.getDescription() + ": " + failures.size() + " of "
+                    + uploader.getChunkCount() + " chunks could not be written", unspooled);
+        }
+        return coalescedFailure;
     }
 
-    private void writeToInflux(Target target, InfluxDB influxDB, List<Point> pointsToWrite) {
-        /**
-         * build batchpoints for a single write.
-         */
-        try {
-            BatchPoints batchPoints = BatchPoints
-                     .database(target.getDatabase())
-                    .points(pointsToWrite.toArray(new Point[0]))
-                    .retentionPolicy(target.getRetentionPolicy())
-                    .consistency(ConsistencyLevel.ANY)
-                    .build();
-            influxDB.write(batchPoints);
-        } catch (Exception e) {
-            if (target.isExposeExceptions()) {
-                throw new InfluxReportException(e);
+    /**
+     * Waits until the merged writes containing the chunks of this build were written and reports
+     * those that failed. A failed merged write was already spooled or logged by the coalescing writer.
+     *
+     * @return the failure to throw for a target that exposes exceptions, or null
+     */
+    private static InfluxReportException awaitCoalesced(Target target, List<CoalescingWriter.Ticket> tickets,
+                                                        TaskListener listener) throws InterruptedException {
+        String prefix = "[InfluxDB Plugin] " + target.getDescription() + ": ";
+        Exception unspooled = null;
+        int failed = 0;
+        long rawBytes = 0;
+        long compressedBytes = 0;
+        List<CoalescingWriter.Ticket> pending;
+        synchronized (tickets) {
+            pending = new ArrayList<>(tickets);
+        }
+        for (CoalescingWriter.Ticket ticket : pending) {
+            ticket.await();
+            if (ticket.getFailure() == null) {
+                if (ticket.getResult().isCompressed()) {
+                    rawBytes += ticket.getResult().getRawBytes();
+                    compressedBytes += ticket.getResult().getCompressedBytes();
+                }
+                continue;
+            }
+            failed++;
+            if (ticket.isSpooled()) {
+                listener.getLogger().println(prefix + "Could not write " + ticket.getPointCount()
+                        + " coalesced points. Spooled them for later delivery.");
+            } else if (ticket.getPriority() == PointPriority.BULK) {
+                PluginStatistics.get().recordShed(ticket.getPointCount());
+                listener.getLogger().println(prefix + "Could not write " + ticket.getPointCount()
+                        + " coalesced points. Shed them as bulk points.");
             } else {
-                //Exceptions not exposed by configuration. Just log and ignore.
-                logger.log(Level.WARNING, "Could not report to InfluxDB. Ignoring Exception.", e);
+                listener.getLogger().println(prefix + "Could not write " + ticket.getPointCount()
+                        + " coalesced points: " + ticket.getFailure());
+                if (unspooled == null) {
+                    unspooled = ticket.getFailure();
+                }
+            }
+        }
+        if (compressedBytes > 0) {
+            listener.getLogger().println(prefix + "Compressed " + rawBytes + " bytes of coalesced line protocol to about "
+                    + compressedBytes + " bytes.");
+        }
+        if (unspooled != null && target.isExposeExceptions()) {
+            return new InfluxReportException(target.getDescription() + ": " + failed + " of " + pending.size()
+                    + " coalesced chunks could not be written", unspooled);
+        }
+        return null;
+    }
+
+    /**
+     * Writes the statistics of the build to the targets that publish them. The statistics are an
+     * aid for operators, failing to write them does not fail the build.
+     */
+    private void publishStatistics(List<Target> targets, PluginStatsPointGenerator generator, TaskListener listener) {
+        String payload = null;
+        int pointCount = 0;
+        for (Target target : targets) {
+            if (!target.isPublishPluginStats()) {
+                continue;
+            }
+            if (payload == null) {
+                LineProtocolEncoder encoder = new LineProtocolEncoder();
+                for (Point point : generator.generate()) {
+                    if (encoder.encode(point)) {
+                        pointCount++;
+                    }
+                }
+                payload = encoder.toString();
+            }
+            WriteBatch batch = new WriteBatch(target, payload, pointCount, "plugin statistics");
+            if (target != targets.get(0)) {
+                // the background senders write them, additional targets never hold up the build
+                if (!PublishQueue.get().tryOffer(batch)) {
+                    listener.getLogger().println("[InfluxDB Plugin] " + target.getDescription()
+                            + ": Publish queue is full. Skipped plugin statistics.");
+                }
+                continue;
+            }
+            try {
+                batchWriter.write(batch);
+            } catch (RuntimeException e) {
+                listener.getLogger().println("[InfluxDB Plugin] " + target.getDescription() + ": Could not write plugin statistics: " + e);
+                logger.log(Level.WARNING, "Could not write plugin statistics to InfluxDB.", e);
             }
         }
     }
@@ -2,6 +2,7 @@ package jenkinsci.plugins.influxdb.generators;
 
 import hudson.model.Run;
 import jenkinsci.plugins.influxdb.renderer.MeasurementRenderer;
+import jenkinsci.plugins.influxdb.writer.LineProtocolEncoder;
 import org.influxdb.dto.Point;
 
 import java.util.Objects;
@@ -12,15 +13,48 @@ public abstract class AbstractPointGenerator implements PointGenerator {
     public static final String BUILD_NUMBER = "build_number";
     public static final String CUSTOM_PREFIX = "prefix";
 
+    // chars of encoded lines handed to the sink at once
+    private static final int LINE_BLOCK_CHARS = 64 * 1024;
+
     private MeasurementRenderer projectNameRenderer;
 
+    // the rendered project name of the last build, rendering it per point is wasteful
+    private Run<?, ?> renderedBuild;
+    private String renderedProjectName;
+
     public AbstractPointGenerator(MeasurementRenderer projectNameRenderer) {
         this.projectNameRenderer = Objects.requireNonNull(projectNameRenderer);
     }
 
+    /**
+     * Emits the points to the sink as they are produced. Generators of large reports override this
+     * without materializing all of their points.
+     */
+    public void generate(PointSink sink) {
+        PointPriority priority = getPriority();
+        for (Point point : generate()) {
+            sink.add(point, priority);
+        }
+    }
+
+    /**
+     * @return the priority of the points of {@link #generate()}
+     */
+    protected PointPriority getPriority() {
+        return PointPriority.NORMAL;
+    }
+
+    /**
+     * @return true if the generator waits on the network or on an agent; it is run apart from the
+     *         generators that only read the build
+     */
+    protected boolean isIoBound() {
+        return false;
+    }
+
     @Override
     public Point.Builder buildPoint(String name, String customPrefix, Run<?, ?> build) {
-        final String renderedProjectName = projectNameRenderer.render(build);
+        final String renderedProjectName = renderProjectName(build);
         Point.Builder builder = Point
                 .measurement(name)
                 .addField(PROJECT_NAME, renderedProjectName)
@@ -34,9 +68,36 @@ public abstract class AbstractPointGenerator implements PointGenerator {
 
     }
 
+    /**
+     * Returns the tags and fields {@link #buildPoint} gives every point, for generators that encode
+     * their points with a {@link LineProtocolEncoder} instead of building them.
+     */
+    protected PointTemplate pointTemplate(String customPrefix, Run<?, ?> build) {
+        String prefix = customPrefix != null && !customPrefix.isEmpty() ? measurementName(customPrefix) : null;
+        return new PointTemplate(renderProjectName(build), build.getNumber(), prefix);
+    }
+
+    /**
+     * Hands the encoded lines to the sink once they fill a block, or whatever is left if {@code last}.
+     */
+    protected static void addLines(PointSink sink, LineProtocolEncoder lines, PointPriority priority, boolean last) {
+        if (lines.length() > 0 && (last || lines.length() >= LINE_BLOCK_CHARS)) {
+            sink.addLines(lines.toString(), priority);
+            lines.reset();
+        }
+    }
+
     protected String measurementName(String measurement) {
         //influx discourages "-" in measurement names.
-        return measurement.replaceAll("-", "_");
+        return measurement.replace('-', '_');
+    }
+
+    private synchronized String renderProjectName(Run<?, ?> build) {
+        if (build != renderedBuild) {
+            renderedProjectName = projectNameRenderer.render(build);
+            renderedBuild = build;
+        }
+        return renderedProjectName;
     }
 
 
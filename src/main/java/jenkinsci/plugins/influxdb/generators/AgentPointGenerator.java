@@ -0,0 +1,143 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.FilePath;
+import hudson.model.Run;
+import hudson.remoting.VirtualChannel;
+import hudson.slaves.WorkspaceList;
+import jenkins.MasterToSlaveFileCallable;
+import jenkinsci.plugins.influxdb.renderer.MeasurementRenderer;
+import org.influxdb.dto.Point;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Base of generators that read report files from the workspace. Parsing the files and encoding
+ * their points runs on the agent of the build, as a {@link MasterToSlaveFileCallable}, instead of on
+ * the controller. The encoded points are kept in temporary files next to the workspace and streamed
+ * back line by line, so only compact line protocol crosses the channel.
+ *
+ * Points are encoded on the agent and are best emitted to a {@link PointSink} that takes encoded
+ * points. {@link #generate()} decodes them into points again, for callers that need them as an array.
+ */
+public abstract class AgentPointGenerator extends AbstractPointGenerator {
+
+    /** The logger. **/
+    private static final Logger logger = Logger.getLogger(AgentPointGenerator.class.getName());
+
+    // lines per block handed to the sink
+    private static final int BLOCK_LINES = 1000;
+
+    protected final Run<?, ?> build;
+    protected final String customPrefix;
+    protected final FilePath workspace;
+
+    public AgentPointGenerator(MeasurementRenderer<Run<?, ?>> projectNameRenderer, String customPrefix, Run<?, ?> build,
+                               FilePath workspace) {
+        super(projectNameRenderer);
+        this.customPrefix = customPrefix;
+        this.build = build;
+        this.workspace = workspace;
+    }
+
+    /**
+     * @return the parser to run on the agent
+     */
+    protected abstract AgentReportParser createParser();
+
+    @Override
+    protected boolean isIoBound() {
+        return true;
+    }
+
+    @Override
+    public Point[] generate() {
+        PointCollector collector = new PointCollector();
+        generate(collector);
+        return collector.toArray();
+    }
+
+    @Override
+    public void generate(PointSink sink) {
+        try {
+            FilePath directory = WorkspaceList.tempDir(workspace).createTempDir("influxdb", "points");
+            try {
+                int[] counts = workspace.act(new ParseCallable(createParser(), pointTemplate(customPrefix, build), directory.getRemote()));
+                for (PointPriority priority : PointPriority.values()) {
+                    if (counts[priority.ordinal()] > 0) {
+                        stream(directory.child(AgentPointWriter.fileName(priority)), priority, sink);
+                    }
+                }
+            } finally {
+                delete(directory);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read reports from " + workspace, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading reports from " + workspace, e);
+        }
+    }
+
+    private static void stream(FilePath file, PointPriority priority, PointSink sink) throws IOException, InterruptedException {
+        try (Reader reader = new InputStreamReader(file.read(), StandardCharsets.UTF_8)) {
+            StringBuilder block = new StringBuilder();
+            int lines = 0;
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = reader.read(buffer)) >= 0) {
+                for (int i = 0; i < read; i++) {
+                    block.append(buffer[i]);
+                    // only a newline ends a point, the encoder escapes the ones within it
+                    if (buffer[i] == '\n' && ++lines == BLOCK_LINES) {
+                        sink.addLines(block.toString(), priority);
+                        block.setLength(0);
+                        lines = 0;
+                    }
+                }
+            }
+            if (block.length() > 0) {
+                sink.addLines(block.toString(), priority);
+            }
+        }
+    }
+
+    private static void delete(FilePath directory) {
+        try {
+            directory.deleteRecursive();
+        } catch (IOException | InterruptedException e) {
+            logger.log(Level.WARNING, "[InfluxDB Plugin] Could not delete " + directory, e);
+        }
+    }
+
+    /**
+     * Runs the parser on the agent and reports how many points of each priority it wrote.
+     */
+    private static final class ParseCallable extends MasterToSlaveFileCallable<int[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final AgentReportParser parser;
+        private final PointTemplate template;
+        private final String directory;
+
+        ParseCallable(AgentReportParser parser, PointTemplate template, String directory) {
+            this.parser = parser;
+            this.template = template;
+            this.directory = directory;
+        }
+
+        @Override
+        public int[] invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+            try (AgentPointWriter writer = new AgentPointWriter(template, new File(directory))) {
+                parser.parse(workspace, writer);
+                return writer.getCounts();
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import jenkinsci.plugins.influxdb.writer.LineProtocolEncoder;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Collects the points an {@link AgentReportParser} encodes on the agent in one file of line
+ * protocol per {@link PointPriority}, which the controller then streams back. Neither side holds
+ * more than a few lines of a large report in memory.
+ */
+public final class AgentPointWriter implements Closeable {
+
+    private static final PointPriority[] PRIORITIES = PointPriority.values();
+
+    private final PointTemplate template;
+    private final File directory;
+
+    // guarded by this, indexed by priority
+    private final Writer[] writers = new Writer[PRIORITIES.length];
+    private final int[] counts = new int[PRIORITIES.length];
+
+    AgentPointWriter(PointTemplate template, File directory) {
+        this.template = template;
+        this.directory = directory;
+    }
+
+    /**
+     * @return the name of the file the points of the priority are written to
+     */
+    static String fileName(PointPriority priority) {
+        return "points-" + priority.name().toLowerCase(Locale.ENGLISH) + ".lp";
+    }
+
+    /**
+     * Starts a point with the tags and fields every point of the build has.
+     */
+    public LineProtocolEncoder start(LineProtocolEncoder encoder, String measurement) {
+        return template.start(encoder, measurement);
+    }
+
+    /**
+     * Writes the lines of the encoder and resets it.
+     *
+     * @param pointCount number of lines in the encoder
+     */
+    public synchronized void write(LineProtocolEncoder encoder, int pointCount, PointPriority priority) throws IOException {
+        int lane = priority.ordinal();
+        if (writers[lane] == null) {
+            writers[lane] = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(new File(directory, fileName(priority))), StandardCharsets.UTF_8));
+        }
+        writers[lane].append(encoder.toString());
+        counts[lane] += pointCount;
+        encoder.reset();
+    }
+
+    /**
+     * @return the number of points written per priority, indexed by ordinal
+     */
+    public synchronized int[] getCounts() {
+        return counts.clone();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        IOException failure = null;
+        for (Writer writer : writers) {
+            if (writer == null) {
+                continue;
+            }
+            try {
+                writer.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
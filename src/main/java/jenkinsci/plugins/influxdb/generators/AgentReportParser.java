@@ -0,0 +1,20 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Parses report files in the workspace into points. Runs on the agent that holds the workspace, so
+ * it is serialized over remoting and must only refer to serializable state.
+ */
+public abstract class AgentReportParser implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param workspace the workspace, as a local directory of the agent
+     * @param writer    receives the encoded points; safe to use from several threads
+     */
+    public abstract void parse(File workspace, AgentPointWriter writer) throws IOException, InterruptedException;
+}
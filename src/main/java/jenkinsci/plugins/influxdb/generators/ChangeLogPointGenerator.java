@@ -5,6 +5,7 @@ import java.util.Iterator;
 
 import org.influxdb.dto.Point;
 
+import hudson.Extension;
 import hudson.model.AbstractBuild;
 import hudson.model.Run;
 import hudson.scm.ChangeLogSet;
@@ -33,17 +34,13 @@ public class ChangeLogPointGenerator extends AbstractPointGenerator {
 	}
 
 	public boolean hasReport() {
-		if (build instanceof AbstractBuild) {
-			getChangeLog(build);
-			if (this.getCommitCount() > 0) {
-				return true;
-			}
-		}
-		return false;
+		// the change log itself is only read in generate()
+		return build instanceof AbstractBuild && !((AbstractBuild<?, ?>) build).getChangeSet().isEmptySet();
 	}
 
 	public Point[] generate() {
-		
+		getChangeLog(build);
+
 		Point.Builder point = buildPoint(measurementName("changelog_data"), customPrefix, build);
 
 		point.addField(BUILD_DISPLAY_NAME, build.getDisplayName())
@@ -62,6 +59,8 @@ public class ChangeLogPointGenerator extends AbstractPointGenerator {
 
 		this.culprits = new StringBuilder();
 
+		this.commitCount = 0;
+
 		AbstractBuild<?,?> abstractBuild = (AbstractBuild<?,?>) run;
 		ChangeLogSet<? extends ChangeLogSet.Entry> changeset = abstractBuild.getChangeSet();
 		Iterator<? extends ChangeLogSet.Entry> itrChangeSet = changeset.iterator();
@@ -99,4 +98,23 @@ public class ChangeLogPointGenerator extends AbstractPointGenerator {
 	private int getCommitCount() {
         return this.commitCount;
 	}
+
+	@Extension(ordinal = 20)
+	public static final class Factory extends PointGeneratorFactory {
+
+		@Override
+		public String getName() {
+			return "changeLog";
+		}
+
+		@Override
+		public String getLabel() {
+			return "Git ChangeLog data";
+		}
+
+		@Override
+		public PointGenerator create(GeneratorContext context) {
+			return new ChangeLogPointGenerator(context.getMeasurementRenderer(), context.getCustomPrefix(), context.getBuild());
+		}
+	}
 }
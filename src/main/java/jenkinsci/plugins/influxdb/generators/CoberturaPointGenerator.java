@@ -4,6 +4,7 @@ import jenkinsci.plugins.influxdb.renderer.MeasurementRenderer;
 import jenkinsci.plugins.influxdb.renderer.ProjectNameRenderer;
 import org.influxdb.dto.Point;
 
+import hudson.Extension;
 import hudson.model.Run;
 import hudson.plugins.cobertura.CoberturaBuildAction;
 import hudson.plugins.cobertura.Ratio;
@@ -53,4 +54,28 @@ public class CoberturaPointGenerator extends AbstractPointGenerator {
             .build();
         return new Point[] {point};
     }
+
+    @Extension(optional = true, ordinal = 70)
+    public static final class Factory extends PointGeneratorFactory {
+
+        public Factory() {
+            // fails without the Cobertura plugin, Jenkins then leaves this optional extension out
+            CoberturaBuildAction.class.getName();
+        }
+
+        @Override
+        public String getName() {
+            return "cobertura";
+        }
+
+        @Override
+        public String getLabel() {
+            return "Cobertura data";
+        }
+
+        @Override
+        public PointGenerator create(GeneratorContext context) {
+            return new CoberturaPointGenerator(context.getMeasurementRenderer(), context.getCustomPrefix(), context.getBuild());
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package jenkinsci.plugins.influxdb.generators;
 
+import hudson.Extension;
 import hudson.model.Run;
 import jenkinsci.plugins.influxdb.renderer.MeasurementRenderer;
 import org.influxdb.dto.Point;
@@ -37,4 +38,22 @@ public class CustomDataMapPointGenerator extends AbstractPointGenerator {
         return customPoints.toArray(new Point[customPoints.size()]);
     }
 
+    @Extension(ordinal = 80)
+    public static final class Factory extends PointGeneratorFactory {
+
+        @Override
+        public String getName() {
+            return "customDataMap";
+        }
+
+        @Override
+        public String getLabel() {
+            return "Custom data map";
+        }
+
+        @Override
+        public PointGenerator create(GeneratorContext context) {
+            return new CustomDataMapPointGenerator(context.getMeasurementRenderer(), context.getCustomPrefix(), context.getBuild(), context.getCustomDataMap());
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package jenkinsci.plugins.influxdb.generators;
 
+import hudson.Extension;
 import hudson.model.Run;
 import jenkinsci.plugins.influxdb.renderer.MeasurementRenderer;
 import org.influxdb.dto.Point;
@@ -36,4 +37,22 @@ public class CustomDataPointGenerator extends AbstractPointGenerator {
         return new Point[] {point};
     }
 
+    @Extension(ordinal = 90)
+    public static final class Factory extends PointGeneratorFactory {
+
+        @Override
+        public String getName() {
+            return "customData";
+        }
+
+        @Override
+        public String getLabel() {
+            return "Custom data";
+        }
+
+        @Override
+        public PointGenerator create(GeneratorContext context) {
+            return new CustomDataPointGenerator(context.getMeasurementRenderer(), context.getCustomPrefix(), context.getBuild(), context.getCustomData());
+        }
+    }
 }
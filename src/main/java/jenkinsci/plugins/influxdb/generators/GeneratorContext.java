@@ -0,0 +1,81 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.FilePath;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import jenkinsci.plugins.influxdb.renderer.MeasurementRenderer;
+
+import java.util.Map;
+
+/**
+ * The build and publisher settings a {@link PointGeneratorFactory} creates its generator for.
+ */
+public final class GeneratorContext {
+
+    private final MeasurementRenderer<Run<?, ?>> measurementRenderer;
+    private final String customPrefix;
+    private final Run<?, ?> build;
+    private final TaskListener listener;
+    private final Map<String, Object> customData;
+    private final Map<String, Map<String, Object>> customDataMap;
+    private final FilePath workspace;
+    private final String junitReports;
+    private final boolean junitCasePoints;
+
+    public GeneratorContext(MeasurementRenderer<Run<?, ?>> measurementRenderer, String customPrefix, Run<?, ?> build,
+                            TaskListener listener, Map<String, Object> customData,
+                            Map<String, Map<String, Object>> customDataMap, FilePath workspace,
+                            String junitReports, boolean junitCasePoints) {
+        this.measurementRenderer = measurementRenderer;
+        this.customPrefix = customPrefix;
+        this.build = build;
+        this.listener = listener;
+        this.customData = customData;
+        this.customDataMap = customDataMap;
+        this.workspace = workspace;
+        this.junitReports = junitReports;
+        this.junitCasePoints = junitCasePoints;
+    }
+
+    public MeasurementRenderer<Run<?, ?>> getMeasurementRenderer() {
+        return measurementRenderer;
+    }
+
+    public String getCustomPrefix() {
+        return customPrefix;
+    }
+
+    public Run<?, ?> getBuild() {
+        return build;
+    }
+
+    public TaskListener getListener() {
+        return listener;
+    }
+
+    public Map<String, Object> getCustomData() {
+        return customData;
+    }
+
+    public Map<String, Map<String, Object>> getCustomDataMap() {
+        return customDataMap;
+    }
+
+    /**
+     * @return the workspace of the build, on the agent it ran on, or null if it has none
+     */
+    public FilePath getWorkspace() {
+        return workspace;
+    }
+
+    /**
+     * @return Ant pattern of the JUnit reports in the workspace, or null
+     */
+    public String getJunitReports() {
+        return junitReports;
+    }
+
+    public boolean isJunitCasePoints() {
+        return junitCasePoints;
+    }
+}
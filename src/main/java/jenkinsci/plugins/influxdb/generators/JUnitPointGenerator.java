@@ -0,0 +1,57 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.Run;
+import jenkinsci.plugins.influxdb.renderer.MeasurementRenderer;
+
+/**
+ * Emits the suites and, optionally, the cases of the JUnit XML reports in the workspace. Unlike
+ * the test totals of {@link JenkinsBasePointGenerator}, the reports are read on the agent with
+ * {@link JUnitReportParser}, so no test result of the build is loaded on the controller.
+ */
+public class JUnitPointGenerator extends AgentPointGenerator {
+
+    private final String reports;
+    private final boolean casePoints;
+
+    /**
+     * @param reports    Ant pattern of the reports, relative to the workspace
+     * @param casePoints whether to emit a point per case
+     */
+    public JUnitPointGenerator(MeasurementRenderer<Run<?, ?>> projectNameRenderer, String customPrefix, Run<?, ?> build,
+                               FilePath workspace, String reports, boolean casePoints) {
+        super(projectNameRenderer, customPrefix, build, workspace);
+        this.reports = reports;
+        this.casePoints = casePoints;
+    }
+
+    public boolean hasReport() {
+        return workspace != null && reports != null && !reports.trim().isEmpty();
+    }
+
+    @Override
+    protected AgentReportParser createParser() {
+        return new JUnitReportParser(reports.trim(), casePoints);
+    }
+
+    @Extension(ordinal = 25)
+    public static final class Factory extends PointGeneratorFactory {
+
+        @Override
+        public String getName() {
+            return "junit";
+        }
+
+        @Override
+        public String getLabel() {
+            return "JUnit reports";
+        }
+
+        @Override
+        public PointGenerator create(GeneratorContext context) {
+            return new JUnitPointGenerator(context.getMeasurementRenderer(), context.getCustomPrefix(), context.getBuild(),
+                    context.getWorkspace(), context.getJunitReports(), context.isJunitCasePoints());
+        }
+    }
+}
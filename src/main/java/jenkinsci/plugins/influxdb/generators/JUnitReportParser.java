@@ -0,0 +1,334 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.Util;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkinsci.plugins.influxdb.writer.LineProtocolEncoder;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads JUnit XML reports with StAX, one event at a time, so that no DOM or test result graph of a
+ * report is ever built. Only the suites that are open at the current position of a report are kept,
+ * the messages and output of the cases are skipped. Reports are read in parallel by a few threads,
+ * each with its own encoders.
+ *
+ * Every suite with cases becomes a point with its totals and the duration of its slowest case.
+ * Optionally, every case becomes a bulk point with its result and duration.
+ */
+public class JUnitReportParser extends AgentReportParser {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The logger. **/
+    private static final Logger logger = Logger.getLogger(JUnitReportParser.class.getName());
+
+    public static final String SUITE_MEASUREMENT = "junit_suite";
+    public static final String CASE_MEASUREMENT = "junit_case";
+
+    public static final String JUNIT_SUITE_NAME = "junit_suite_name";
+    public static final String JUNIT_CLASS_NAME = "junit_class_name";
+    public static final String JUNIT_CASE_NAME = "junit_case_name";
+    public static final String JUNIT_TESTS = "junit_tests";
+    public static final String JUNIT_FAILURES = "junit_failures";
+    public static final String JUNIT_ERRORS = "junit_errors";
+    public static final String JUNIT_SKIPPED = "junit_skipped";
+    public static final String JUNIT_DURATION = "junit_duration";
+    public static final String JUNIT_MAX_CASE_DURATION = "junit_max_case_duration";
+    public static final String JUNIT_RESULT = "junit_result";
+
+    private static final int MAX_THREADS = 4;
+    // case lines are handed to the writer in blocks of about this many chars
+    private static final int CASE_BLOCK_CHARS = 64 * 1024;
+
+    private final String includes;
+    private final boolean casePoints;
+
+    /**
+     * @param includes   Ant pattern of the reports, relative to the workspace
+     * @param casePoints whether to emit a point per case
+     */
+    public JUnitReportParser(String includes, boolean casePoints) {
+        this.includes = includes;
+        this.casePoints = casePoints;
+    }
+
+    @Override
+    public void parse(File workspace, AgentPointWriter writer) throws IOException, InterruptedException {
+        if (!workspace.isDirectory()) {
+            return;
+        }
+        String[] reports = Util.createFileSet(workspace, includes).getDirectoryScanner().getIncludedFiles();
+        if (reports.length == 0) {
+            return;
+        }
+        int threads = Math.min(reports.length, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger next = new AtomicInteger();
+        List<Callable<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(new Worker(workspace, reports, next, writer));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new NamingThreadFactory(new DaemonThreadFactory(), "InfluxDB JUnit report parser"));
+        try {
+            for (Future<Void> worker : executor.invokeAll(workers)) {
+                try {
+                    worker.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new IOException(e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static XMLInputFactory newInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // reports are untrusted input
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    private static double seconds(String time) {
+        if (time == null || time.isEmpty()) {
+            return 0;
+        }
+        try {
+            // some tools format durations with grouping separators
+            return Double.parseDouble(time.replace(",", ""));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Results of a case, in increasing precedence.
+     */
+    private enum Result {
+        PASSED, SKIPPED, FAILED, ERROR;
+
+        String field() {
+            return name().toLowerCase(Locale.ENGLISH);
+        }
+    }
+
+    /**
+     * The totals of a suite that is still open.
+     */
+    private static final class Suite {
+        private final String name;
+        private final String time;
+        private int tests;
+        private int failures;
+        private int errors;
+        private int skipped;
+        private double caseDuration;
+        private double maxCaseDuration;
+
+        Suite(String name, String time) {
+            this.name = name;
+            this.time = time;
+        }
+
+        void add(Result result, double duration) {
+            tests++;
+            switch (result) {
+                case FAILED:
+                    failures++;
+                    break;
+                case ERROR:
+                    errors++;
+                    break;
+                case SKIPPED:
+                    skipped++;
+                    break;
+                default:
+                    break;
+            }
+            caseDuration += duration;
+            maxCaseDuration = Math.max(maxCaseDuration, duration);
+        }
+
+        double duration() {
+            // the time of the suite includes its setup, the sum of its cases is only a fallback
+            return time != null ? seconds(time) : caseDuration;
+        }
+    }
+
+    /**
+     * Reads reports until none are left. Not shared between threads.
+     */
+    private final class Worker implements Callable<Void> {
+
+        private final File workspace;
+        private final String[] reports;
+        private final AtomicInteger next;
+        private final AgentPointWriter writer;
+        private final XMLInputFactory factory = newInputFactory();
+        private final LineProtocolEncoder suiteLines = new LineProtocolEncoder();
+        private final LineProtocolEncoder caseLines = new LineProtocolEncoder();
+        private int suiteCount;
+        private int caseCount;
+
+        Worker(File workspace, String[] reports, AtomicInteger next, AgentPointWriter writer) {
+            this.workspace = workspace;
+            this.reports = reports;
+            this.next = next;
+            this.writer = writer;
+        }
+
+        @Override
+        public Void call() throws IOException, InterruptedException {
+            for (int i = next.getAndIncrement(); i < reports.length; i = next.getAndIncrement()) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                File report = new File(workspace, reports[i]);
+                try {
+                    read(report);
+                } catch (XMLStreamException e) {
+                    // the points of the complete suites before the error are kept
+                    logger.log(Level.WARNING, "[InfluxDB Plugin] Could not read JUnit report " + report, e);
+                }
+                flushSuites();
+            }
+            flushCases();
+            return null;
+        }
+
+        private void read(File report) throws IOException, XMLStreamException {
+            Deque<Suite> suites = new ArrayDeque<>();
+            String className = null;
+            String caseName = null;
+            String caseTime = null;
+            Result result = null;
+            try (InputStream in = new BufferedInputStream(new FileInputStream(report))) {
+                XMLStreamReader reader = factory.createXMLStreamReader(in);
+                try {
+                    while (reader.hasNext()) {
+                        int event = reader.next();
+                        if (event == XMLStreamConstants.START_ELEMENT) {
+                            String element = reader.getLocalName();
+                            if ("testsuite".equals(element)) {
+                                suites.push(new Suite(reader.getAttributeValue(null, "name"),
+                                        reader.getAttributeValue(null, "time")));
+                            } else if ("testcase".equals(element) && !suites.isEmpty()) {
+                                className = reader.getAttributeValue(null, "classname");
+                                caseName = reader.getAttributeValue(null, "name");
+                                caseTime = reader.getAttributeValue(null, "time");
+                                result = Result.PASSED;
+                            } else if (result != null) {
+                                result = max(result, resultOf(element));
+                            }
+                        } else if (event == XMLStreamConstants.END_ELEMENT) {
+                            String element = reader.getLocalName();
+                            if ("testcase".equals(element) && result != null) {
+                                Suite suite = suites.peek();
+                                double duration = seconds(caseTime);
+                                suite.add(result, duration);
+                                if (casePoints) {
+                                    writeCase(suite, className, caseName, result, duration);
+                                }
+                                result = null;
+                            } else if ("testsuite".equals(element) && !suites.isEmpty()) {
+                                writeSuite(suites.pop());
+                            }
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+        }
+
+        private Result resultOf(String element) {
+            switch (element) {
+                case "failure":
+                    return Result.FAILED;
+                case "error":
+                    return Result.ERROR;
+                case "skipped":
+                    return Result.SKIPPED;
+                default:
+                    return Result.PASSED;
+            }
+        }
+
+        private Result max(Result a, Result b) {
+            return a.compareTo(b) >= 0 ? a : b;
+        }
+
+        private void writeSuite(Suite suite) {
+            if (suite.tests == 0) {
+                // only groups other suites, which have their own points
+                return;
+            }
+            writer.start(suiteLines, SUITE_MEASUREMENT)
+                    .field(JUNIT_SUITE_NAME, suite.name)
+                    .field(JUNIT_TESTS, suite.tests)
+                    .field(JUNIT_FAILURES, suite.failures)
+                    .field(JUNIT_ERRORS, suite.errors)
+                    .field(JUNIT_SKIPPED, suite.skipped)
+                    .field(JUNIT_DURATION, suite.duration())
+                    .field(JUNIT_MAX_CASE_DURATION, suite.maxCaseDuration);
+            // suite points share their series, a unique time keeps them from overwriting each other
+            suiteLines.endLine(TimestampAllocator.nextTimeNanos());
+            suiteCount++;
+        }
+
+        private void writeCase(Suite suite, String className, String caseName, Result result, double duration)
+                throws IOException {
+            writer.start(caseLines, CASE_MEASUREMENT)
+                    .field(JUNIT_SUITE_NAME, suite.name)
+                    .field(JUNIT_CLASS_NAME, className)
+                    .field(JUNIT_CASE_NAME, caseName)
+                    .field(JUNIT_RESULT, result.field())
+                    .field(JUNIT_DURATION, duration);
+            caseLines.endLine(TimestampAllocator.nextTimeNanos());
+            caseCount++;
+            if (caseLines.length() >= CASE_BLOCK_CHARS) {
+                flushCases();
+            }
+        }
+
+        private void flushSuites() throws IOException {
+            if (suiteCount > 0) {
+                writer.write(suiteLines, suiteCount, PointPriority.NORMAL);
+                suiteCount = 0;
+            }
+        }
+
+        private void flushCases() throws IOException {
+            if (caseCount > 0) {
+                writer.write(caseLines, caseCount, PointPriority.BULK);
+                caseCount = 0;
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package jenkinsci.plugins.influxdb.generators;
 import jenkinsci.plugins.influxdb.renderer.MeasurementRenderer;
 import org.influxdb.dto.Point;
 
+import hudson.Extension;
 import hudson.model.Run;
 import hudson.plugins.jacoco.JacocoBuildAction;
 
@@ -41,4 +42,27 @@ public class JacocoPointGenerator extends AbstractPointGenerator {
         return new Point[] {point};
     }
 
+    @Extension(optional = true, ordinal = 50)
+    public static final class Factory extends PointGeneratorFactory {
+
+        public Factory() {
+            // fails without the JaCoCo plugin, Jenkins then leaves this optional extension out
+            JacocoBuildAction.class.getName();
+        }
+
+        @Override
+        public String getName() {
+            return "jacoco";
+        }
+
+        @Override
+        public String getLabel() {
+            return "Jacoco data";
+        }
+
+        @Override
+        public PointGenerator create(GeneratorContext context) {
+            return new JacocoPointGenerator(context.getMeasurementRenderer(), context.getCustomPrefix(), context.getBuild());
+        }
+    }
 }
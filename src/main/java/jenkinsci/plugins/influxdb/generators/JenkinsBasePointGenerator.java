@@ -1,5 +1,6 @@
 package jenkinsci.plugins.influxdb.generators;
 
+import hudson.Extension;
 import hudson.model.Run;
 import hudson.tasks.test.AbstractTestResultAction;
 import jenkinsci.plugins.influxdb.renderer.MeasurementRenderer;
@@ -41,6 +42,11 @@ public class JenkinsBasePointGenerator extends AbstractPointGenerator {
         return true;
     }
 
+    @Override
+    protected PointPriority getPriority() {
+        return PointPriority.CRITICAL;
+    }
+
     public Point[] generate() {
         // Build is not finished when running with pipelines. Duration must be calculated manually
         long startTime = build.getTimeInMillis();
@@ -95,4 +101,18 @@ public class JenkinsBasePointGenerator extends AbstractPointGenerator {
         else
             return 0;
     }
+
+    @Extension(ordinal = 100)
+    public static final class Factory extends PointGeneratorFactory {
+
+        @Override
+        public String getName() {
+            return "jenkinsBase";
+        }
+
+        @Override
+        public PointGenerator create(GeneratorContext context) {
+            return new JenkinsBasePointGenerator(context.getMeasurementRenderer(), context.getCustomPrefix(), context.getBuild());
+        }
+    }
 }
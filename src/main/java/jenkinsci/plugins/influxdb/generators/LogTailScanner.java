@@ -0,0 +1,93 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Finds the last occurrence of a literal marker in a log file by reading the file backwards in
+ * fixed-size blocks, up to a byte limit. Builds that never printed the marker therefore only cost
+ * a bounded read from the end of their log, no matter how large it is.
+ *
+ * Blocks are searched with Boyer-Moore-Horspool, so no per-line strings or regular expressions
+ * are involved.
+ */
+public class LogTailScanner {
+
+    private static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    private static final int MAX_LINE_BYTES = 8 * 1024;
+
+    private final byte[] marker;
+    private final int[] shift = new int[256];
+    private final int blockSize;
+
+    public LogTailScanner(String marker) {
+        this(marker, DEFAULT_BLOCK_SIZE);
+    }
+
+    LogTailScanner(String marker, int blockSize) {
+        this.marker = marker.getBytes(StandardCharsets.UTF_8);
+        this.blockSize = blockSize;
+        // bad character table of Horspool's algorithm
+        Arrays.fill(shift, this.marker.length);
+        for (int i = 0; i < this.marker.length - 1; i++) {
+            shift[this.marker[i] & 0xff] = this.marker.length - 1 - i;
+        }
+    }
+
+    /**
+     * @return the rest of the line following the last occurrence of the marker within the last
+     *         {@code maxBytes} of the file, or null if there is none
+     */
+    public String findLast(File file, long maxBytes) throws IOException {
+        try (RandomAccessFile log = new RandomAccessFile(file, "r")) {
+            long length = log.length();
+            long limit = Math.max(0, length - maxBytes);
+            // blocks overlap by the marker length, so a marker crossing a block boundary is found
+            byte[] block = new byte[blockSize + marker.length - 1];
+            long end = length;
+            while (end > limit) {
+                long start = Math.max(limit, end - blockSize);
+                int count = (int) (Math.min(length, end + marker.length - 1) - start);
+                log.seek(start);
+                log.readFully(block, 0, count);
+                int match = lastIndexOf(block, count);
+                if (match >= 0) {
+                    return readLine(log, start + match + marker.length);
+                }
+                end = start;
+            }
+        }
+        return null;
+    }
+
+    int lastIndexOf(byte[] data, int count) {
+        int m = marker.length;
+        int last = -1;
+        int i = 0;
+        while (i <= count - m) {
+            int j = m - 1;
+            while (j >= 0 && data[i + j] == marker[j]) {
+                j--;
+            }
+            if (j < 0) {
+                last = i;
+            }
+            i += shift[data[i + m - 1] & 0xff];
+        }
+        return last;
+    }
+
+    private static String readLine(RandomAccessFile log, long position) throws IOException {
+        byte[] line = new byte[(int) Math.min(MAX_LINE_BYTES, log.length() - position)];
+        log.seek(position);
+        log.readFully(line);
+        int end = 0;
+        while (end < line.length && line[end] != '\n' && line[end] != '\r') {
+            end++;
+        }
+        return new String(line, 0, end, StandardCharsets.UTF_8);
+    }
+}
@@ -1,174 +1,177 @@
 package jenkinsci.plugins.influxdb.generators;
 
+import hudson.Extension;
 import hudson.model.Run;
 import hudson.plugins.PerfPublisher.PerfPublisherBuildAction;
 import hudson.plugins.PerfPublisher.Report.Metric;
 import hudson.plugins.PerfPublisher.Report.ReportContainer;
 import hudson.plugins.PerfPublisher.Report.Test;
 import jenkinsci.plugins.influxdb.renderer.MeasurementRenderer;
+import jenkinsci.plugins.influxdb.writer.LineProtocolEncoder;
 import org.influxdb.dto.Point;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
 public class PerfPublisherPointGenerator extends AbstractPointGenerator {
     private final Run<?, ?> build;
     private final String customPrefix;
     private final PerfPublisherBuildAction performanceBuildAction;
-    private final TimeGenerator timeGenerator;
 
     public PerfPublisherPointGenerator(MeasurementRenderer<Run<?,?>> measurementRenderer, String customPrefix, Run<?, ?> build) {
         super(measurementRenderer);
         this.build = build;
         this.customPrefix = customPrefix;
         performanceBuildAction = build.getAction(PerfPublisherBuildAction.class);
-        timeGenerator = new TimeGenerator();
     }
 
     public boolean hasReport() {
         return performanceBuildAction != null && performanceBuildAction.getReport() != null;
     }
 
-    @Override
-    public Point.Builder buildPoint(String name, String customPrefix, Run<?, ?> build) {
-        // add unique time to guarantee correct point adding to DB
-        return super.buildPoint(name, customPrefix, build)
-                .time(timeGenerator.getTimeNanos(), TimeUnit.NANOSECONDS);
+    public Point[] generate() {
+        PointCollector collector = new PointCollector();
+        generate(collector);
+        return collector.toArray();
     }
 
-    public Point[] generate() {
+    /**
+     * Encodes the points straight into line protocol, a report has a point per test and metric.
+     * Every point gets a unique time to guarantee correct point adding to DB.
+     */
+    @Override
+    public void generate(PointSink sink) {
         ReportContainer reports = performanceBuildAction.getReports();
+        PointTemplate template = pointTemplate(customPrefix, build);
+        LineProtocolEncoder lines = new LineProtocolEncoder();
 
-        List<Point> pointsList = new ArrayList<>();
-
-        pointsList.add(generateSummaryPoint(reports));
-        pointsList.addAll(generateMetricsPoints(reports));
+        generateSummaryPoint(reports, template, lines);
+        generateMetricsPoints(reports, template, lines);
+        addLines(sink, lines, PointPriority.NORMAL, true);
 
         for (Test test : reports.getTests()) {
-            pointsList.add(generateTestPoint(test));
-            pointsList.addAll(generateTestMetricsPoints(test));
+            generateTestPoint(test, template, lines);
+            generateTestMetricsPoints(test, template, lines);
+            addLines(sink, lines, PointPriority.BULK, false);
         }
-
-        return pointsList.toArray(new Point[pointsList.size()]);
+        addLines(sink, lines, PointPriority.BULK, true);
     }
 
-    private Point generateSummaryPoint(ReportContainer reports) {
-        Point.Builder builder = buildPoint(measurementName("perfpublisher_summary"), customPrefix, build)
-                .addField("number_of_tests", reports.getNumberOfTest())
-                .addField("number_of_executed_tests", reports.getNumberOfExecutedTest())
-                .addField("number_of_not_executed_tests", reports.getNumberOfNotExecutedTest())
-                .addField("number_of_passed_tests", reports.getNumberOfPassedTest())
-                .addField("number_of_failed_tests", reports.getNumberOfFailedTest())
-                .addField("number_of_success_tests", reports.getNumberOfSuccessTests())
-                .addField("number_of_true_false_tests", reports.getNumberOfTrueFalseTest());
+    private void generateSummaryPoint(ReportContainer reports, PointTemplate template, LineProtocolEncoder lines) {
+        template.start(lines, measurementName("perfpublisher_summary"))
+                .field("number_of_tests", reports.getNumberOfTest())
+                .field("number_of_executed_tests", reports.getNumberOfExecutedTest())
+                .field("number_of_not_executed_tests", reports.getNumberOfNotExecutedTest())
+                .field("number_of_passed_tests", reports.getNumberOfPassedTest())
+                .field("number_of_failed_tests", reports.getNumberOfFailedTest())
+                .field("number_of_success_tests", reports.getNumberOfSuccessTests())
+                .field("number_of_true_false_tests", reports.getNumberOfTrueFalseTest());
 
         // compile time
         if (reports.getBestCompileTimeTest().isCompileTime()) {
-            builder.addField("best_compile_time_test_value", reports.getBestCompileTimeTestValue())
-                    .addField("best_compile_time_test_name", reports.getBestCompileTimeTestName())
-                    .addField("worst_compile_time_test_value", reports.getWorstCompileTimeTestValue())
-                    .addField("worst_compile_time_test_name", reports.getWorstCompileTimeTestName())
-                    .addField("avg_compile_time", reports.getAverageOfCompileTime());
+            lines.field("best_compile_time_test_value", reports.getBestCompileTimeTestValue())
+                    .field("best_compile_time_test_name", reports.getBestCompileTimeTestName())
+                    .field("worst_compile_time_test_value", reports.getWorstCompileTimeTestValue())
+                    .field("worst_compile_time_test_name", reports.getWorstCompileTimeTestName())
+                    .field("avg_compile_time", reports.getAverageOfCompileTime());
         }
 
         // performance
         if (reports.getBestPerformanceTest().isPerformance()) {
-                builder.addField("best_performance_test_value", reports.getBestPerformanceTestValue())
-                    .addField("best_performance_test_name", reports.getBestPerformanceTestName())
-                    .addField("worst_performance_test_value", reports.getWorstPerformanceTestValue())
-                    .addField("worst_performance_test_name", reports.getWorstPerformanceTestName())
-                    .addField("average_performance", reports.getAverageOfPerformance());
+            lines.field("best_performance_test_value", reports.getBestPerformanceTestValue())
+                    .field("best_performance_test_name", reports.getBestPerformanceTestName())
+                    .field("worst_performance_test_value", reports.getWorstPerformanceTestValue())
+                    .field("worst_performance_test_name", reports.getWorstPerformanceTestName())
+                    .field("average_performance", reports.getAverageOfPerformance());
         }
 
         // execution time
         if (reports.getBestExecutionTimeTest().isExecutionTime()) {
-            builder.addField("best_execution_time_test_value", reports.getBestExecutionTimeTestValue())
-                    .addField("best_execution_time_test_name", reports.getBestExecutionTimeTestName())
-                    .addField("worst_execution_time_test_value", reports.getWorstExecutionTimeTestValue())
-                    .addField("worst_execution_time_test_name", reports.getWorstExecutionTimeTestName())
-                    .addField("avg_execution_time", reports.getAverageOfExecutionTime());
+            lines.field("best_execution_time_test_value", reports.getBestExecutionTimeTestValue())
+                    .field("best_execution_time_test_name", reports.getBestExecutionTimeTestName())
+                    .field("worst_execution_time_test_value", reports.getWorstExecutionTimeTestValue())
+                    .field("worst_execution_time_test_name", reports.getWorstExecutionTimeTestName())
+                    .field("avg_execution_time", reports.getAverageOfExecutionTime());
         }
 
-        return builder.build();
+        lines.endLine(TimestampAllocator.nextTimeNanos());
     }
 
-    private List<Point> generateMetricsPoints(ReportContainer reports) {
-
-        List<Point> pointsList = new ArrayList<>();
+    private void generateMetricsPoints(ReportContainer reports, PointTemplate template, LineProtocolEncoder lines) {
 
         for (Map.Entry<String, Double> entry : reports.getAverageValuePerMetrics().entrySet())
         {
             String metricName = entry.getKey();
-            Point point = buildPoint(measurementName("perfpublisher_metric"), customPrefix, build)
-                    .addField("metric_name", metricName)
-                    .addField("average", entry.getValue())
-                    .addField("worst", reports.getWorstValuePerMetrics().get(metricName))
-                    .addField("best", reports.getBestValuePerMetrics().get(metricName))
-                    .build();
-            pointsList.add(point);
+            template.start(lines, measurementName("perfpublisher_metric"))
+                    .field("metric_name", metricName);
+            field(lines, "average", entry.getValue());
+            field(lines, "worst", reports.getWorstValuePerMetrics().get(metricName));
+            field(lines, "best", reports.getBestValuePerMetrics().get(metricName));
+            lines.endLine(TimestampAllocator.nextTimeNanos());
         }
-        return pointsList;
     }
 
-    private Point generateTestPoint(Test test) {
-        Point.Builder builder = buildPoint(measurementName("perfpublisher_test"), customPrefix, build)
-                .addField("test_name", test.getName())
-                .addField("successful", test.isSuccessfull())
-                .addField("executed", test.isExecuted());
-
-        if (test.getMessage() != null)
-            builder.addField("message", test.getMessage());
+    private void generateTestPoint(Test test, PointTemplate template, LineProtocolEncoder lines) {
+        template.start(lines, measurementName("perfpublisher_test"))
+                .field("test_name", test.getName())
+                .field("successful", test.isSuccessfull())
+                .field("executed", test.isExecuted())
+                .field("message", test.getMessage());
 
         if (test.isCompileTime())
-            builder.addField("compile_time", test.getCompileTime().getMeasure());
+            lines.field("compile_time", test.getCompileTime().getMeasure());
 
         if (test.isExecutionTime())
-            builder.addField("execution_time", test.getExecutionTime().getMeasure());
+            lines.field("execution_time", test.getExecutionTime().getMeasure());
 
         if (test.isPerformance())
-            builder.addField("performance", test.getPerformance().getMeasure());
+            lines.field("performance", test.getPerformance().getMeasure());
 
-        return builder.build();
+        lines.endLine(TimestampAllocator.nextTimeNanos());
     }
 
-    private List<Point> generateTestMetricsPoints(Test test) {
-        List<Point> pointsList = new ArrayList<>();
-
+    private void generateTestMetricsPoints(Test test, PointTemplate template, LineProtocolEncoder lines) {
         for (Map.Entry<String, Metric> entry : test.getMetrics().entrySet()) {
             String metricName = entry.getKey();
             Metric metric = entry.getValue();
 
-            Point point = buildPoint(measurementName("perfpublisher_test_metric"), customPrefix, build)
-                    .addField("test_name", test.getName())
-                    .addField("metric_name", metricName)
-                    .addField("value", metric.getMeasure())
-                    .addField("unit", metric.getUnit())
-                    .addField("relevant", metric.isRelevant())
-                    .build();
+            template.start(lines, measurementName("perfpublisher_test_metric"))
+                    .field("test_name", test.getName())
+                    .field("metric_name", metricName)
+                    .field("value", metric.getMeasure())
+                    .field("unit", metric.getUnit())
+                    .field("relevant", metric.isRelevant())
+                    .endLine(TimestampAllocator.nextTimeNanos());
+        }
+    }
 
-            pointsList.add(point);
+    // metrics missing from a map have no value
+    private static void field(LineProtocolEncoder lines, String key, Double value) {
+        if (value != null) {
+            lines.field(key, value.doubleValue());
         }
-        return pointsList;
     }
 
-    // generates unique nano timestamps
-    private static class TimeGenerator {
-        private final long nanoTimeShift;
-        private long lastReportedTime = 0;
+    @Extension(optional = true, ordinal = 10)
+    public static final class Factory extends PointGeneratorFactory {
+
+        public Factory() {
+            // fails without the Performance Publisher plugin, Jenkins then leaves this optional extension out
+            PerfPublisherBuildAction.class.getName();
+        }
+
+        @Override
+        public String getName() {
+            return "perfPublisher";
+        }
 
-        TimeGenerator() {
-            nanoTimeShift = System.currentTimeMillis() * 1000000 - System.nanoTime();
+        @Override
+        public String getLabel() {
+            return "PerfPublisher data";
         }
 
-        long getTimeNanos() {
-            long timeToReport = System.nanoTime() + nanoTimeShift;
-            if (timeToReport <= lastReportedTime) {
-                timeToReport = lastReportedTime + 1;
-            }
-            lastReportedTime = timeToReport;
-            return timeToReport;
+        @Override
+        public PointGenerator create(GeneratorContext context) {
+            return new PerfPublisherPointGenerator(context.getMeasurementRenderer(), context.getCustomPrefix(), context.getBuild());
         }
     }
 }
@@ -3,6 +3,7 @@ package jenkinsci.plugins.influxdb.generators;
 import jenkinsci.plugins.influxdb.renderer.MeasurementRenderer;
 import org.influxdb.dto.Point;
 
+import hudson.Extension;
 import hudson.model.Run;
 import hudson.plugins.performance.actions.PerformanceBuildAction;
 import hudson.plugins.performance.PerformanceReportMap;
@@ -38,15 +39,18 @@ public class PerformancePointGenerator extends AbstractPointGenerator {
     }
 
     public Point[] generate() {
-        Map<String, PerformanceReport> reportMap = performanceBuildAction.getPerformanceReportMap().getPerformanceReportMap();
+        PointCollector collector = new PointCollector();
+        generate(collector);
+        return collector.toArray();
+    }
 
-        List<Point> pointsList = new ArrayList<Point>();
+    @Override
+    public void generate(PointSink sink) {
+        Map<String, PerformanceReport> reportMap = performanceBuildAction.getPerformanceReportMap().getPerformanceReportMap();
 
-        for (String key : reportMap.keySet()) {
-            pointsList.add(generateReportPoint(reportMap.get(key)));
+        for (PerformanceReport report : reportMap.values()) {
+            sink.add(generateReportPoint(report));
         }
-
-        return pointsList.toArray(new Point[pointsList.size()]);
     }
 
     private Point generateReportPoint(PerformanceReport performanceReport) {
@@ -65,4 +69,27 @@ public class PerformancePointGenerator extends AbstractPointGenerator {
         return point;
     }
 
+    @Extension(optional = true, ordinal = 40)
+    public static final class Factory extends PointGeneratorFactory {
+
+        public Factory() {
+            // fails without the Performance plugin, Jenkins then leaves this optional extension out
+            PerformanceBuildAction.class.getName();
+        }
+
+        @Override
+        public String getName() {
+            return "performance";
+        }
+
+        @Override
+        public String getLabel() {
+            return "Performance data";
+        }
+
+        @Override
+        public PointGenerator create(GeneratorContext context) {
+            return new PerformancePointGenerator(context.getMeasurementRenderer(), context.getCustomPrefix(), context.getBuild());
+        }
+    }
 }
@@ -0,0 +1,94 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.model.Run;
+import jenkinsci.plugins.influxdb.renderer.MeasurementRenderer;
+import jenkinsci.plugins.influxdb.stats.BuildStatistics;
+import org.influxdb.dto.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports what publishing the build cost the plugin: one point per generator and one per target,
+ * both in the influxdb_plugin_stats measurement.
+ */
+public class PluginStatsPointGenerator extends AbstractPointGenerator {
+
+    public static final String GENERATOR = "generator";
+    public static final String TARGET = "target";
+    public static final String HAS_REPORT_MS = "has_report_ms";
+    public static final String GENERATE_MS = "generate_ms";
+    public static final String POINTS = "points";
+    public static final String OUTCOME = "outcome";
+    public static final String ENCODED_BYTES = "encoded_bytes";
+    public static final String COMPRESSED_BYTES = "compressed_bytes";
+    public static final String CHUNKS = "chunks";
+    public static final String FAILED_CHUNKS = "failed_chunks";
+    public static final String RETRIES = "retries";
+    public static final String WRITE_MS = "write_ms";
+    public static final String WRITE_MAX_MS = "write_max_ms";
+    public static final String QUEUE_SIZE = "queue_size";
+    public static final String CARDINALITY_WARNED = "cardinality_warned";
+    public static final String CARDINALITY_REJECTED = "cardinality_rejected";
+    public static final String CARDINALITY_REROUTED = "cardinality_rerouted";
+
+    private final Run<?, ?> build;
+    private final String customPrefix;
+    private final BuildStatistics statistics;
+
+    public PluginStatsPointGenerator(MeasurementRenderer<Run<?,?>> projectNameRenderer, String customPrefix, Run<?, ?> build, BuildStatistics statistics) {
+        super(projectNameRenderer);
+        this.build = build;
+        this.customPrefix = customPrefix;
+        this.statistics = statistics;
+    }
+
+    public boolean hasReport() {
+        return !statistics.getGenerators().isEmpty() || !statistics.getTargets().isEmpty();
+    }
+
+    public Point[] generate() {
+        List<Point> points = new ArrayList<>();
+        for (BuildStatistics.GeneratorRun run : statistics.getGenerators()) {
+            if (run.getOutcome() == null) {
+                continue;
+            }
+            Point.Builder builder = buildPoint(measurementName("influxdb_plugin_stats"), customPrefix, build)
+                    .tag(GENERATOR, run.getName())
+                    .addField(POINTS, run.getPoints())
+                    .addField(OUTCOME, run.getOutcome().name().toLowerCase(Locale.ENGLISH));
+            if (run.getHasReportNanos() >= 0) {
+                builder.addField(HAS_REPORT_MS, millis(run.getHasReportNanos()));
+            }
+            if (run.getGenerateNanos() >= 0) {
+                builder.addField(GENERATE_MS, millis(run.getGenerateNanos()));
+            }
+            points.add(builder.build());
+        }
+        for (BuildStatistics.TargetWrite write : statistics.getTargets()) {
+            Point.Builder builder = buildPoint(measurementName("influxdb_plugin_stats"), customPrefix, build)
+                    .tag(TARGET, write.getTarget())
+                    .addField(ENCODED_BYTES, statistics.getEncodedBytes())
+                    .addField(COMPRESSED_BYTES, write.getCompressedBytes())
+                    .addField(CHUNKS, write.getChunks())
+                    .addField(FAILED_CHUNKS, write.getFailedChunks())
+                    .addField(RETRIES, write.getRetries())
+                    .addField(WRITE_MS, millis(write.getWriteNanos()))
+                    .addField(WRITE_MAX_MS, millis(write.getMaxWriteNanos()))
+                    .addField(CARDINALITY_WARNED, statistics.getCardinalityWarned())
+                    .addField(CARDINALITY_REJECTED, statistics.getCardinalityRejected())
+                    .addField(CARDINALITY_REROUTED, statistics.getCardinalityRerouted());
+            if (write.getQueueSize() >= 0) {
+                builder.addField(QUEUE_SIZE, write.getQueueSize());
+            }
+            points.add(builder.build());
+        }
+        return points.toArray(new Point[points.size()]);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
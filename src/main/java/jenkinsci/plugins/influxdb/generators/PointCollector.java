@@ -0,0 +1,27 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import org.influxdb.dto.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sink that keeps the points in memory, for callers that need them as an array.
+ */
+public class PointCollector extends PointSink {
+
+    private final List<Point> points = new ArrayList<>();
+
+    @Override
+    public synchronized void add(Point point) {
+        points.add(point);
+    }
+
+    public synchronized List<Point> getPoints() {
+        return new ArrayList<>(points);
+    }
+
+    public synchronized Point[] toArray() {
+        return points.toArray(new Point[points.size()]);
+    }
+}
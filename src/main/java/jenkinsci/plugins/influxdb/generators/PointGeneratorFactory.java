@@ -0,0 +1,41 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+import jenkins.model.Jenkins;
+
+/**
+ * Contributes a {@link PointGenerator} to every build that publishes to InfluxDB. Implementations
+ * are registered with {@link hudson.Extension}; the ordinal determines the order in which the
+ * generators are added to a build, higher ordinals first.
+ *
+ * Factories of generators that depend on an optional plugin are marked with
+ * {@code @Extension(optional = true)} and reference a class of that plugin in their constructor.
+ * Without the plugin the factory cannot be instantiated and Jenkins leaves it out of the extension
+ * list, so the presence of optional plugins is checked once when extensions are loaded, not on
+ * every build.
+ */
+public abstract class PointGeneratorFactory implements ExtensionPoint {
+
+    /**
+     * @return a stable identifier of the generator, used to select generators per job
+     */
+    public abstract String getName();
+
+    /**
+     * @return what the generator collects, e.g. "Cobertura data"; announced in the console when the
+     *         build has such a report. Null for generators that always run.
+     */
+    public String getLabel() {
+        return null;
+    }
+
+    public abstract PointGenerator create(GeneratorContext context);
+
+    /**
+     * @return the available factories, in the order their generators are added to a build
+     */
+    public static ExtensionList<PointGeneratorFactory> all() {
+        return Jenkins.getActiveInstance().getExtensionList(PointGeneratorFactory.class);
+    }
+}
@@ -0,0 +1,406 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkinsci.plugins.influxdb.stats.BuildStatistics;
+import jenkinsci.plugins.influxdb.writer.LineProtocolEncoder;
+import org.acegisecurity.context.SecurityContext;
+import org.acegisecurity.context.SecurityContextHolder;
+import org.influxdb.dto.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the point generators of one build concurrently on pools shared by all builds. Generators
+ * that wait on the network or on an agent run on their own pool, so that they never hold up the
+ * generators that only read the build.
+ *
+ * Every generator has its own time budget, which starts when the generator starts running. Neither
+ * the time it waits for a thread nor the time it waits in the sink for chunks to be handed on
+ * counts. A generator that fails or runs out of time is reported with its elapsed time and loses
+ * all of its points, so that no half-built report is written. A generator that ignores the
+ * interrupt of its timeout keeps its thread, the pool makes up for it with an extra thread until
+ * the generator returns.
+ *
+ * {@link #run()} returns the points in the order the generators were added; {@link #run(PointSink)}
+ * encodes them as they are produced and adds the line protocol of each generator to a sink once
+ * the generator completed.
+ *
+ * The time each generator spends in {@code hasReport()} and {@code generate()} and the number of
+ * points it emits are recorded in the {@link #getStatistics() statistics} of the build.
+ */
+public class PointGeneratorRunner {
+
+    public static final long DEFAULT_TIMEOUT_SECONDS = 60;
+
+    private static final int POOL_SIZE = Integer.getInteger(PointGeneratorRunner.class.getName() + ".threads",
+            Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+    // how often the budget of a generator that waits in the sink is checked
+    private static final long SINK_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final int IO_POOL_SIZE = Integer.getInteger(PointGeneratorRunner.class.getName() + ".ioThreads",
+            POOL_SIZE);
+
+    private static final Pool pool = new Pool(POOL_SIZE, "InfluxDB point generator");
+    private static final Pool ioPool = new Pool(IO_POOL_SIZE, "InfluxDB I/O point generator");
+
+    private final TaskListener listener;
+    private final long timeoutNanos;
+    private final List<GeneratorTask> tasks = new ArrayList<>();
+    private final BuildStatistics statistics = new BuildStatistics();
+
+    public PointGeneratorRunner(TaskListener listener, long timeoutSeconds) {
+        this.listener = listener;
+        this.timeoutNanos = TimeUnit.SECONDS.toNanos(timeoutSeconds > 0 ? timeoutSeconds : DEFAULT_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * @param generator the generator to run
+     * @param label     what the generator collects, e.g. "Cobertura data"; announced in the console
+     *                  when the build has such a report. May be null for generators that always run.
+     */
+    public void add(PointGenerator generator, String label) {
+        tasks.add(new GeneratorTask(generator, label));
+    }
+
+    public BuildStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Runs the generators and returns their points. A generator that fails or runs out of time
+     * loses only its own points.
+     */
+    public List<Point> run() throws InterruptedException {
+        List<PointCollector> collectors = new ArrayList<>();
+        for (GeneratorTask task : tasks) {
+            PointCollector collector = new PointCollector();
+            collectors.add(collector);
+            task.sink = collector;
+        }
+        execute();
+        List<Point> points = new ArrayList<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            if (tasks.get(i).succeeded) {
+                points.addAll(collectors.get(i).getPoints());
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Runs the generators and adds the points of each generator to the sink once it completed. A
+     * generator that fails or runs out of time adds nothing.
+     *
+     * @param sink a thread-safe sink
+     */
+    public void run(PointSink sink) throws InterruptedException {
+        for (GeneratorTask task : tasks) {
+            task.sink = sink;
+            task.staged = new LineProtocolEncoder[PointPriority.values().length];
+        }
+        execute();
+    }
+
+    private void execute() throws InterruptedException {
+        // generators run with the permissions of the build
+        SecurityContext context = SecurityContextHolder.getContext();
+        for (GeneratorTask task : tasks) {
+            task.submit(context);
+        }
+        try {
+            for (GeneratorTask task : tasks) {
+                task.await();
+            }
+        } catch (InterruptedException e) {
+            // the build was aborted, its generators must not keep the pools busy
+            for (GeneratorTask task : tasks) {
+                task.future.cancel(true);
+            }
+            throw e;
+        }
+    }
+
+    private static boolean isIoBound(PointGenerator generator) {
+        return generator instanceof AbstractPointGenerator && ((AbstractPointGenerator) generator).isIoBound();
+    }
+
+    /**
+     * A pool of generator threads. For every generator that keeps its thread after its timeout, the
+     * pool gets an extra thread until the generator returns; it grows to at most twice its size.
+     */
+    private static final class Pool {
+        private final ThreadPoolExecutor executor;
+        private final int size;
+        // guarded by this
+        private int abandoned;
+
+        Pool(int size, String name) {
+            this.size = size;
+            this.executor = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new NamingThreadFactory(new DaemonThreadFactory(), name));
+            this.executor.allowCoreThreadTimeOut(true);
+        }
+
+        synchronized void abandoned(int delta) {
+            abandoned += delta;
+            int target = size + Math.min(size, abandoned);
+            // the core size may never exceed the maximum size
+            if (target > executor.getMaximumPoolSize()) {
+                executor.setMaximumPoolSize(target);
+                executor.setCorePoolSize(target);
+            } else {
+                executor.setCorePoolSize(target);
+                executor.setMaximumPoolSize(target);
+            }
+        }
+    }
+
+    private final class GeneratorTask extends PointSink implements Callable<Void> {
+        private final PointGenerator generator;
+        private final String label;
+        private final BuildStatistics.GeneratorRun stats;
+        private final CountDownLatch running = new CountDownLatch(1);
+        private final AtomicInteger inSink = new AtomicInteger();
+        private final AtomicLong sinkNanos = new AtomicLong();
+        private final Pool pool;
+        private PointSink sink;
+        // the encoded points of the generator by priority, added to the sink once it completed; null to add them directly
+        private LineProtocolEncoder[] staged;
+        private SecurityContext context;
+        private Future<Void> future;
+        private long submitted;
+        private volatile long started;
+        private boolean succeeded;
+        // guarded by this
+        private boolean returned;
+        private boolean abandoned;
+        private boolean committing;
+        private boolean timedOut;
+
+        GeneratorTask(PointGenerator generator, String label) {
+            this.generator = generator;
+            this.label = label;
+            this.stats = statistics.generator(describe());
+            this.pool = isIoBound(generator) ? ioPool : PointGeneratorRunner.pool;
+        }
+
+        void submit(SecurityContext context) {
+            this.context = context;
+            this.submitted = System.nanoTime();
+            this.future = pool.executor.submit(this);
+        }
+
+        @Override
+        public Void call() {
+            started = System.nanoTime();
+            running.countDown();
+            SecurityContext previous = SecurityContextHolder.getContext();
+            SecurityContextHolder.setContext(context);
+            try {
+                boolean hasReport = generator.hasReport();
+                long generating = System.nanoTime();
+                stats.setHasReportNanos(generating - started);
+                if (!hasReport) {
+                    return null;
+                }
+                if (label != null) {
+                    listener.getLogger().println("[InfluxDB Plugin] " + label + " found. Writing to InfluxDB...");
+                }
+                if (generator instanceof AbstractPointGenerator) {
+                    ((AbstractPointGenerator) generator).generate(this);
+                } else {
+                    // generators that only implement the interface emit all of their points at once
+                    for (Point point : generator.generate()) {
+                        add(point);
+                    }
+                }
+                stats.setGenerateNanos(System.nanoTime() - generating);
+                commit();
+                return null;
+            } finally {
+                SecurityContextHolder.setContext(previous);
+                synchronized (this) {
+                    returned = true;
+                    if (abandoned) {
+                        pool.abandoned(-1);
+                    }
+                }
+            }
+        }
+
+        // counts the points on their way to the sink
+        @Override
+        public void add(Point point) {
+            add(point, PointPriority.NORMAL);
+        }
+
+        @Override
+        public void add(Point point, PointPriority priority) {
+            stats.addPoint();
+            if (staged != null) {
+                synchronized (staged) {
+                    stage(priority).encode(point);
+                }
+                return;
+            }
+            long entered = enterSink();
+            try {
+                sink.add(point, priority);
+            } finally {
+                leaveSink(entered);
+            }
+        }
+
+        @Override
+        public void addLines(String lines, PointPriority priority) {
+            int count = 0;
+            for (int i = 0; i < lines.length(); i++) {
+                if (lines.charAt(i) == '\n') {
+                    count++;
+                }
+            }
+            stats.addPoints(count);
+            if (staged != null) {
+                synchronized (staged) {
+                    LineProtocolEncoder encoder = stage(priority);
+                    int start = 0;
+                    while (start < lines.length()) {
+                        int end = lines.indexOf('\n', start);
+                        if (end < 0) {
+                            end = lines.length();
+                        }
+                        if (end > start) {
+                            encoder.appendLine(lines, start, end);
+                        }
+                        start = end + 1;
+                    }
+                }
+                return;
+            }
+            long entered = enterSink();
+            try {
+                sink.addLines(lines, priority);
+            } finally {
+                leaveSink(entered);
+            }
+        }
+
+        // must hold the lock of staged
+        private LineProtocolEncoder stage(PointPriority priority) {
+            LineProtocolEncoder encoder = staged[priority.ordinal()];
+            if (encoder == null) {
+                encoder = new LineProtocolEncoder();
+                staged[priority.ordinal()] = encoder;
+            }
+            return encoder;
+        }
+
+        // adds the staged points to the sink, unless the generator ran out of time meanwhile
+        private void commit() {
+            if (staged == null) {
+                return;
+            }
+            synchronized (this) {
+                if (timedOut) {
+                    return;
+                }
+                committing = true;
+            }
+            long entered = enterSink();
+            try {
+                synchronized (staged) {
+                    for (int i = 0; i < staged.length; i++) {
+                        if (staged[i] != null) {
+                            sink.addLines(staged[i].toString(), PointPriority.values()[i]);
+                            staged[i] = null;
+                        }
+                    }
+                }
+            } finally {
+                leaveSink(entered);
+            }
+        }
+
+        // a generator that started adding its points to the sink is given the time to finish
+        private synchronized boolean timeOut() {
+            if (committing) {
+                return false;
+            }
+            timedOut = true;
+            return true;
+        }
+
+        // the sink may wait for a slow target, that time does not count against the budget
+        private long enterSink() {
+            inSink.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        private void leaveSink(long entered) {
+            sinkNanos.addAndGet(System.nanoTime() - entered);
+            inSink.decrementAndGet();
+        }
+
+        void await() throws InterruptedException {
+            // the time in the queue does not count, a busy pool must not skip generators that never ran
+            running.await();
+            try {
+                for (;;) {
+                    long remaining = started + timeoutNanos + sinkNanos.get() - System.nanoTime();
+                    if (remaining <= 0 && inSink.get() == 0 && !future.isDone() && timeOut()) {
+                        future.cancel(true);
+                        abandon();
+                        stats.complete(BuildStatistics.Outcome.TIMED_OUT);
+                        listener.getLogger().println("[InfluxDB Plugin] Collecting " + describe() + " timed out after "
+                                + elapsedMillis() + " ms. Skipping.");
+                        return;
+                    }
+                    try {
+                        future.get(Math.max(remaining, SINK_POLL_NANOS), TimeUnit.NANOSECONDS);
+                        succeeded = true;
+                        stats.complete(stats.getGenerateNanos() >= 0
+                                ? BuildStatistics.Outcome.GENERATED : BuildStatistics.Outcome.NO_REPORT);
+                        return;
+                    } catch (TimeoutException e) {
+                        // re-evaluate: the time the generator spent in the sink extends its budget
+                    }
+                }
+            } catch (ExecutionException e) {
+                stats.complete(BuildStatistics.Outcome.FAILED);
+                listener.getLogger().println("[InfluxDB Plugin] Failed to collect " + describe() + " after "
+                        + elapsedMillis() + " ms. Ignoring Exception:" + e.getCause());
+            }
+        }
+
+        // the interrupt may not stop the generator, until it returns the pool runs with an extra thread
+        private synchronized void abandon() {
+            if (!returned && !abandoned) {
+                abandoned = true;
+                pool.abandoned(1);
+            }
+        }
+
+        private String describe() {
+            return label != null ? label : generator.getClass().getSimpleName();
+        }
+
+        private long elapsedMillis() {
+            long start = started;
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - (start != 0 ? start : submitted));
+        }
+    }
+}
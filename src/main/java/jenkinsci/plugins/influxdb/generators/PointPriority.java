@@ -0,0 +1,15 @@
+package jenkinsci.plugins.influxdb.generators;
+
+/**
+ * How important points are when InfluxDB or the publish queue cannot keep up, in decreasing
+ * importance. Bulk points are shed or delayed first, critical points are never dropped to make
+ * room for others.
+ */
+public enum PointPriority {
+    /** The build itself, which dashboards of build health depend on. */
+    CRITICAL,
+    /** Summaries of reports, such as coverage, performance and code quality. */
+    NORMAL,
+    /** Points per test case, tag or test metric, which large reports produce in great numbers. */
+    BULK
+}
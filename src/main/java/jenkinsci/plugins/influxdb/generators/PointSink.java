@@ -0,0 +1,48 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import jenkinsci.plugins.influxdb.writer.LineProtocolDecoder;
+import org.influxdb.dto.Point;
+
+/**
+ * Receives points as a generator produces them, so that large reports do not have to be held in
+ * memory as a whole.
+ *
+ * Only {@link #add(Point)} has to be implemented; sinks that tell priorities apart or take encoded
+ * points override the other methods.
+ */
+public abstract class PointSink {
+
+    /**
+     * Adds a point of {@link PointPriority#NORMAL} priority.
+     */
+    public abstract void add(Point point);
+
+    /**
+     * Adds a point of the given priority. Sinks that do not tell priorities apart add it like any
+     * other point.
+     */
+    public void add(Point point, PointPriority priority) {
+        add(point);
+    }
+
+    /**
+     * Adds points that are already encoded, such as the points of generators that run on the build
+     * agent. Sinks that do not write line protocol themselves add the decoded points.
+     *
+     * @param lines line protocol, one point per line; newlines within a point are escaped, as
+     *              {@link jenkinsci.plugins.influxdb.writer.LineProtocolEncoder} does
+     */
+    public void addLines(String lines, PointPriority priority) {
+        int start = 0;
+        while (start < lines.length()) {
+            int end = lines.indexOf('\n', start);
+            if (end < 0) {
+                end = lines.length();
+            }
+            if (end > start) {
+                add(LineProtocolDecoder.decode(lines.substring(start, end)), priority);
+            }
+            start = end + 1;
+        }
+    }
+}
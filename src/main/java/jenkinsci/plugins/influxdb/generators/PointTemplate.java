@@ -0,0 +1,39 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import jenkinsci.plugins.influxdb.writer.LineProtocolEncoder;
+
+import java.io.Serializable;
+
+/**
+ * The tags and fields {@link AbstractPointGenerator#buildPoint} gives every point, rendered on the
+ * controller so that points encoded on an agent get the same ones.
+ */
+public final class PointTemplate implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String projectName;
+    private final int buildNumber;
+    private final String prefix;
+
+    /**
+     * @param prefix the rendered custom prefix, or null
+     */
+    public PointTemplate(String projectName, int buildNumber, String prefix) {
+        this.projectName = projectName;
+        this.buildNumber = buildNumber;
+        this.prefix = prefix;
+    }
+
+    /**
+     * Starts a line with the measurement, the tags and the fields every point has, in the order
+     * {@link org.influxdb.dto.Point} sorts them. Points can not have further tags.
+     */
+    public LineProtocolEncoder start(LineProtocolEncoder encoder, String measurement) {
+        return encoder.measurement(measurement)
+                .tag(AbstractPointGenerator.CUSTOM_PREFIX, prefix)
+                .tag(AbstractPointGenerator.PROJECT_NAME, projectName)
+                .field(AbstractPointGenerator.BUILD_NUMBER, buildNumber)
+                .field(AbstractPointGenerator.PROJECT_NAME, projectName);
+    }
+}
@@ -1,17 +1,20 @@
 package jenkinsci.plugins.influxdb.generators;
 
+import hudson.Extension;
 import hudson.model.Run;
 import hudson.plugins.robot.RobotBuildAction;
 import hudson.plugins.robot.model.RobotCaseResult;
 import hudson.plugins.robot.model.RobotResult;
 import hudson.plugins.robot.model.RobotSuiteResult;
 import jenkinsci.plugins.influxdb.renderer.MeasurementRenderer;
+import jenkinsci.plugins.influxdb.writer.LineProtocolEncoder;
 import org.influxdb.dto.Point;
 
-import java.util.ArrayList;
-import java.util.Hashtable;
-import java.util.List;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 public class RobotFrameworkPointGenerator extends AbstractPointGenerator {
 
@@ -32,7 +35,6 @@ public class RobotFrameworkPointGenerator extends AbstractPointGenerator {
 
     private final Run<?, ?> build;
     private final String customPrefix;
-    private final Map<String, RobotTagResult> tagResults;
     private MeasurementRenderer<Run<?,?>> projectNameRenderer;
 
     public RobotFrameworkPointGenerator(MeasurementRenderer<Run<?,?>> projectNameRenderer, String customPrefix, Run<?, ?> build) {
@@ -40,7 +42,6 @@ public class RobotFrameworkPointGenerator extends AbstractPointGenerator {
         this.projectNameRenderer = projectNameRenderer;
         this.build = build;
         this.customPrefix = customPrefix;
-        tagResults = new Hashtable<String, RobotTagResult>();
     }
 
     public boolean hasReport() {
@@ -49,82 +50,72 @@ public class RobotFrameworkPointGenerator extends AbstractPointGenerator {
     }
 
     public Point[] generate() {
-        RobotBuildAction robotBuildAction = build.getAction(RobotBuildAction.class);
+        PointCollector collector = new PointCollector();
+        generate(collector);
+        return collector.toArray();
+    }
 
-        List<Point> pointsList = new ArrayList<Point>();
-        
-        pointsList.add(generateOverviewPoint(robotBuildAction));
-        pointsList.addAll(generateSubPoints(robotBuildAction.getResult()));
-        
-        return pointsList.toArray(new Point[pointsList.size()]);
+    /**
+     * Encodes the points straight into line protocol, a report has a point per case and tag. Case
+     * and tag points share their series, a unique time keeps them from overwriting each other.
+     */
+    @Override
+    public void generate(PointSink sink) {
+        RobotBuildAction robotBuildAction = build.getAction(RobotBuildAction.class);
+        PointTemplate template = pointTemplate(customPrefix, build);
+        LineProtocolEncoder lines = new LineProtocolEncoder();
+        LineProtocolEncoder bulkLines = new LineProtocolEncoder();
+
+        generateOverviewPoint(robotBuildAction, template, lines);
+        generateSubPoints(robotBuildAction.getResult(), template, lines, bulkLines, sink);
+        addLines(sink, lines, PointPriority.NORMAL, true);
+        addLines(sink, bulkLines, PointPriority.BULK, true);
     }
 
-    private Point generateOverviewPoint(RobotBuildAction robotBuildAction) {
-        Point point = buildPoint(measurementName("rf_results"), customPrefix, build)
-            .addField(RF_FAILED, robotBuildAction.getResult().getOverallFailed())
-            .addField(RF_PASSED, robotBuildAction.getResult().getOverallPassed())
-            .addField(RF_TOTAL, robotBuildAction.getResult().getOverallTotal())
-            .addField(RF_CRITICAL_FAILED, robotBuildAction.getResult().getCriticalFailed())
-            .addField(RF_CRITICAL_PASSED, robotBuildAction.getResult().getCriticalPassed())
-            .addField(RF_CRITICAL_TOTAL, robotBuildAction.getResult().getCriticalTotal())
-            .addField(RF_CRITICAL_PASS_PERCENTAGE, robotBuildAction.getCriticalPassPercentage())
-            .addField(RF_PASS_PERCENTAGE, robotBuildAction.getOverallPassPercentage())
-            .addField(RF_DURATION, robotBuildAction.getResult().getDuration())
-            .addField(RF_SUITES, robotBuildAction.getResult().getAllSuites().size())
-            .build();
-
-        return point;
+    private void generateOverviewPoint(RobotBuildAction robotBuildAction, PointTemplate template, LineProtocolEncoder lines) {
+        RobotResult result = robotBuildAction.getResult();
+        template.start(lines, measurementName("rf_results"))
+            .field(RF_FAILED, result.getOverallFailed())
+            .field(RF_PASSED, result.getOverallPassed())
+            .field(RF_TOTAL, result.getOverallTotal())
+            .field(RF_CRITICAL_FAILED, result.getCriticalFailed())
+            .field(RF_CRITICAL_PASSED, result.getCriticalPassed())
+            .field(RF_CRITICAL_TOTAL, result.getCriticalTotal())
+            .field(RF_CRITICAL_PASS_PERCENTAGE, robotBuildAction.getCriticalPassPercentage())
+            .field(RF_PASS_PERCENTAGE, robotBuildAction.getOverallPassPercentage())
+            .field(RF_DURATION, result.getDuration())
+            .field(RF_SUITES, result.getAllSuites().size())
+            .endLine(TimestampAllocator.nextTimeNanos());
     }
 
-    private List<Point> generateSubPoints(RobotResult robotResult) {
-        List<Point> subPoints = new ArrayList<Point>();
+    private void generateSubPoints(RobotResult robotResult, PointTemplate template, LineProtocolEncoder lines,
+                                   LineProtocolEncoder bulkLines, PointSink sink) {
+        Set<CaseKey> generatedCases = new HashSet<CaseKey>();
+        Map<String, RobotTagResult> tagResults = new LinkedHashMap<String, RobotTagResult>();
         for(RobotSuiteResult suiteResult : robotResult.getAllSuites()) {
-            subPoints.add(generateSuitePoint(suiteResult));
+            generateSuitePoint(suiteResult, template, lines);
 
             for(RobotCaseResult caseResult : suiteResult.getAllCases()) {
-                Point casePoint = generateCasePoint(caseResult);
-                if (casePointExists(subPoints, casePoint)) {
-                    continue;
+                // CasePoints are the same if all the fields are equal
+                if (generatedCases.add(new CaseKey(caseResult))) {
+                    generateCasePoint(caseResult, template, bulkLines);
+                    addLines(sink, bulkLines, PointPriority.BULK, false);
                 }
-                subPoints.add(generateCasePoint(caseResult));
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException ie) {
-                    // handle
+                for(String tag : caseResult.getTags()) {
+                    markTagResult(tagResults, tag, caseResult);
                 }
             }
 
         }
 
-        for(Map.Entry<String, RobotTagResult> entry : tagResults.entrySet()) {
-            subPoints.add(generateTagPoint(entry.getValue()));
-            try {
-                Thread.sleep(100);
-            } catch (InterruptedException ie) {
-                // handle
-            }
-        }
-        return subPoints;
-    }
-
-    private boolean casePointExists(List<Point> subPoints, Point point) {
-        for (Point p : subPoints) {
-            try {
-                // CasePoints are the same if all the fields are equal
-                String pFields = p.toString().substring(p.toString().indexOf("fields="));
-                String pointFields = point.toString().substring(point.toString().indexOf("fields="));
-                if (pFields.equals(pointFields)) {
-                    return true;
-                }
-            } catch (StringIndexOutOfBoundsException e) {
-                // Handle exception
-            }
+        for(RobotTagResult tagResult : tagResults.values()) {
+            generateTagPoint(tagResult, template, bulkLines);
+            addLines(sink, bulkLines, PointPriority.BULK, false);
         }
-        return false;
     }
 
-    private Point generateCasePoint(RobotCaseResult caseResult) {
-        Point point = buildPoint(measurementName("testcase_point"), customPrefix, build)
+    private void generateCasePoint(RobotCaseResult caseResult, PointTemplate template, LineProtocolEncoder lines) {
+        template.start(lines, measurementName("testcase_point"))
             .field(RF_NAME, caseResult.getName())
             .field(RF_SUITE_NAME, caseResult.getParent().getName())
             .field(RF_CRITICAL_FAILED, caseResult.getCriticalFailed())
@@ -132,20 +123,57 @@ public class RobotFrameworkPointGenerator extends AbstractPointGenerator {
             .field(RF_FAILED, caseResult.getFailed())
             .field(RF_PASSED, caseResult.getPassed())
             .field(RF_DURATION, caseResult.getDuration())
-            .build();
+            .endLine(TimestampAllocator.nextTimeNanos());
+    }
 
-        for(String tag : caseResult.getTags()) {
-            markTagResult(tag, caseResult);
+    /**
+     * The fields of a case point, which identify duplicate cases.
+     */
+    private static final class CaseKey {
+        private final String name;
+        private final String suiteName;
+        private final long criticalFailed;
+        private final long criticalPassed;
+        private final long failed;
+        private final long passed;
+        private final long duration;
+
+        CaseKey(RobotCaseResult caseResult) {
+            this.name = caseResult.getName();
+            this.suiteName = caseResult.getParent().getName();
+            this.criticalFailed = caseResult.getCriticalFailed();
+            this.criticalPassed = caseResult.getCriticalPassed();
+            this.failed = caseResult.getFailed();
+            this.passed = caseResult.getPassed();
+            this.duration = caseResult.getDuration();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CaseKey)) {
+                return false;
+            }
+            CaseKey other = (CaseKey) o;
+            return criticalFailed == other.criticalFailed && criticalPassed == other.criticalPassed
+                    && failed == other.failed && passed == other.passed && duration == other.duration
+                    && Objects.equals(name, other.name) && Objects.equals(suiteName, other.suiteName);
         }
 
-        return point;
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, suiteName, criticalFailed, criticalPassed, failed, passed, duration);
+        }
     }
+
     private static final class RobotTagResult {
         protected final String name;
         protected RobotTagResult(String name) {
             this.name = name;
         }
-        protected final List<String> testCases = new ArrayList<String>();
+        protected final Set<String> testCases = new HashSet<String>();
         protected int failed = 0;
         protected int passed = 0;
         protected int criticalFailed = 0;
@@ -154,23 +182,24 @@ public class RobotFrameworkPointGenerator extends AbstractPointGenerator {
     }
 
 
-    private void markTagResult(String tag, RobotCaseResult caseResult) {
-        if(tagResults.get(tag) == null)
-            tagResults.put(tag, new RobotTagResult(tag));
-
+    private void markTagResult(Map<String, RobotTagResult> tagResults, String tag, RobotCaseResult caseResult) {
         RobotTagResult tagResult = tagResults.get(tag);
-        if(!tagResult.testCases.contains(caseResult.getDuplicateSafeName())) {
+        if(tagResult == null) {
+            tagResult = new RobotTagResult(tag);
+            tagResults.put(tag, tagResult);
+        }
+
+        if(tagResult.testCases.add(caseResult.getDuplicateSafeName())) {
             tagResult.failed += caseResult.getFailed();
             tagResult.passed += caseResult.getPassed();
             tagResult.criticalFailed += caseResult.getCriticalFailed();
             tagResult.criticalPassed += caseResult.getCriticalPassed();
             tagResult.duration += caseResult.getDuration();
-            tagResult.testCases.add(caseResult.getDuplicateSafeName());
         }
     }
 
-    private Point generateTagPoint(RobotTagResult tagResult) {
-        Point point = buildPoint(measurementName("tag_point"), customPrefix, build)
+    private void generateTagPoint(RobotTagResult tagResult, PointTemplate template, LineProtocolEncoder lines) {
+        template.start(lines, measurementName("tag_point"))
             .field(RF_TAG_NAME, tagResult.name)
             .field(RF_CRITICAL_FAILED, tagResult.criticalFailed)
             .field(RF_CRITICAL_PASSED, tagResult.criticalPassed)
@@ -179,13 +208,11 @@ public class RobotFrameworkPointGenerator extends AbstractPointGenerator {
             .field(RF_PASSED, tagResult.passed)
             .field(RF_TOTAL, tagResult.passed + tagResult.failed)
             .field(RF_DURATION, tagResult.duration)
-            .build();
-
-        return point;
+            .endLine(TimestampAllocator.nextTimeNanos());
     }
 
-    private Point generateSuitePoint(RobotSuiteResult suiteResult) {
-        Point point = buildPoint(measurementName("suite_result"), customPrefix, build)
+    private void generateSuitePoint(RobotSuiteResult suiteResult, PointTemplate template, LineProtocolEncoder lines) {
+        template.start(lines, measurementName("suite_result"))
             .field(RF_SUITE_NAME, suiteResult.getName())
             .field(RF_TESTCASES, suiteResult.getAllCases().size())
             .field(RF_CRITICAL_FAILED, suiteResult.getCriticalFailed())
@@ -195,9 +222,30 @@ public class RobotFrameworkPointGenerator extends AbstractPointGenerator {
             .field(RF_PASSED, suiteResult.getPassed())
             .field(RF_TOTAL, suiteResult.getTotal())
             .field(RF_DURATION, suiteResult.getDuration())
-            .build();
-
-        return point;
+            .endLine(TimestampAllocator.nextTimeNanos());
     }
 
+    @Extension(optional = true, ordinal = 60)
+    public static final class Factory extends PointGeneratorFactory {
+
+        public Factory() {
+            // fails without the Robot Framework plugin, Jenkins then leaves this optional extension out
+            RobotBuildAction.class.getName();
+        }
+
+        @Override
+        public String getName() {
+            return "robotFramework";
+        }
+
+        @Override
+        public String getLabel() {
+            return "Robot Framework data";
+        }
+
+        @Override
+        public PointGenerator create(GeneratorContext context) {
+            return new RobotFrameworkPointGenerator(context.getMeasurementRenderer(), context.getCustomPrefix(), context.getBuild());
+        }
+    }
 }
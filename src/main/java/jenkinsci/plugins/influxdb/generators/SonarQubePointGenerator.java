@@ -1,27 +1,35 @@
 package jenkinsci.plugins.influxdb.generators;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.regex.Matcher;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
-import java.net.HttpURLConnection;
 import java.lang.InterruptedException;
-import java.net.MalformedURLException;
-import java.net.URL;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang3.StringUtils;
 import org.influxdb.dto.Point;
 
+import hudson.Extension;
+import hudson.model.Action;
 import hudson.model.Run;
 import hudson.model.TaskListener;
-import hudson.EnvVars;
+import hudson.util.DaemonThreadFactory;
 import hudson.util.IOUtils;
+import hudson.util.NamingThreadFactory;
 import jenkinsci.plugins.influxdb.renderer.MeasurementRenderer;
 import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
 
 public class SonarQubePointGenerator extends AbstractPointGenerator {
 
@@ -33,18 +41,55 @@ public class SonarQubePointGenerator extends AbstractPointGenerator {
 	public static final String SONARQUBE_MINOR_ISSUES = "minor_issues";
 	public static final String SONARQUBE_INFO_ISSUES = "info_issues";
 	public static final String SONARQUBE_BLOCKER_ISSUES = "blocker_issues";
+	public static final String SONARQUBE_COVERAGE = "coverage";
+	public static final String SONARQUBE_DUPLICATED_LINES_DENSITY = "duplicated_lines_density";
+	public static final String SONARQUBE_CODE_SMELLS = "code_smells";
+	public static final String SONARQUBE_TECHNICAL_DEBT = "technical_debt";
 
-	public static final String URL_PATTERN_IN_LOGS = ".*" + Pattern.quote("ANALYSIS SUCCESSFUL, you can browse ")
-			+ "(.*)";
+	public static final String URL_MARKER_IN_LOGS = "ANALYSIS SUCCESSFUL, you can browse ";
 
-	public static final String SONAR_ISSUES_BASE_URL = "/api/issues/search?ps=500&projectKeys=";
+	/**
+	 * @deprecated the log is searched for {@link #URL_MARKER_IN_LOGS} from its tail
+	 */
+	@Deprecated
+	public static final String URL_PATTERN_IN_LOGS = ".*" + Pattern.quote(URL_MARKER_IN_LOGS) + "(.*)";
 
-	public static final String SONAR_METRICS_BASE_URL = "/api/measures/component?metricKeys=ncloc,complexity,violations&componentKey=";
+	// dashboard of a project before SonarQube 6: <server>/dashboard/index/<key>
+	private static final String DASHBOARD_INDEX_PATH = "/dashboard/index/";
+	// dashboard of a project since SonarQube 6: <server>/dashboard?id=<key>
+	private static final String DASHBOARD_PATH = "/dashboard";
+
+	// the analysis is reported close to the end of the build, so only the tail of the log is searched
+	private static final long LOG_SCAN_LIMIT_BYTES = Long.getLong(SonarQubePointGenerator.class.getName() + ".logScanLimit",
+			16 * 1024 * 1024);
+
+	// actions of the SonarQube plugin that know the URL of the analysis of their build
+	private static final String SONAR_PLUGIN_ACTION_PACKAGE = "hudson.plugins.sonar.action.";
+
+	private static final LogTailScanner logScanner = new LogTailScanner(URL_MARKER_IN_LOGS);
+
+	// one request returns the open issue count of every severity
+	public static final String SONAR_ISSUES_BASE_URL = "/api/issues/search?ps=1&facets=severities&resolved=false&projectKeys=";
+
+	public static final String SONAR_METRICS_BASE_URL = "/api/measures/component?metricKeys=ncloc,complexity,coverage,duplicated_lines_density,code_smells,sqale_index&componentKey=";
+
+	private static final long CONNECT_TIMEOUT_SECONDS = 10;
+	private static final long READ_TIMEOUT_SECONDS = 30;
+
+	// shared by all builds so that requests to the same SonarQube server reuse keep-alive connections
+	private static final OkHttpClient httpClient = new OkHttpClient.Builder()
+			.dispatcher(new Dispatcher(Executors.newCachedThreadPool(
+					new NamingThreadFactory(new DaemonThreadFactory(), "InfluxDB SonarQube client"))))
+			.connectTimeout(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+			.readTimeout(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+			.build();
 
 	private String SONAR_ISSUES_URL;
 	private String SONAR_METRICS_URL;
 	private String sonarServer;
 	private String sonarProjectName;
+	private String authorization;
+	private String sonarBuildLink;
 
 	private final Run<?, ?> build;
 	private final String customPrefix;
@@ -59,12 +104,15 @@ public class SonarQubePointGenerator extends AbstractPointGenerator {
 	}
 
 	public boolean hasReport() {
-		String sonarBuildLink = null;
 		try {
-			sonarBuildLink = getSonarProjectURLFromBuildLogs(build);
+			// only locates the analysis, the server is contacted in generate()
+			sonarBuildLink = getSonarProjectURLFromBuildAction(build);
+			if (StringUtils.isEmpty(sonarBuildLink)) {
+				sonarBuildLink = getSonarProjectURLFromBuildLogs(build);
+			}
 			if (!StringUtils.isEmpty(sonarBuildLink)) {
 				setSonarDetails(sonarBuildLink);
-				return true;
+				return sonarServer != null;
 			}
 		} catch (IOException e) {
 			//
@@ -75,94 +123,161 @@ public class SonarQubePointGenerator extends AbstractPointGenerator {
 
 	public void setSonarDetails(String sonarBuildLink) {
 		try {
-			this.sonarProjectName = getSonarProjectName(sonarBuildLink);
-			this.sonarServer = sonarBuildLink.substring(0,
-					sonarBuildLink.indexOf("/dashboard/index/" + this.sonarProjectName));
-			this.SONAR_ISSUES_URL = sonarServer + SONAR_ISSUES_BASE_URL + sonarProjectName + "&resolved=false&severities=";
+			String projectName = getSonarProjectName(sonarBuildLink);
+			int dashboard = sonarBuildLink.lastIndexOf(DASHBOARD_PATH);
+			if (projectName.isEmpty() || dashboard < 0) {
+				listener.getLogger().println("[InfluxDB Plugin] Unsupported SonarQube dashboard URL " + sonarBuildLink + ". Skipping.");
+				return;
+			}
+			this.sonarProjectName = projectName;
+			this.sonarServer = sonarBuildLink.substring(0, dashboard);
+			this.SONAR_ISSUES_URL = sonarServer + SONAR_ISSUES_BASE_URL + sonarProjectName;
 			this.SONAR_METRICS_URL = sonarServer + SONAR_METRICS_BASE_URL + sonarProjectName;
 		} catch (URISyntaxException e) {
-			//
+			listener.getLogger().println("[InfluxDB Plugin] Invalid SonarQube dashboard URL " + sonarBuildLink + ". Skipping.");
 		}
 
 	}
 
+	@Override
+	protected boolean isIoBound() {
+		return true;
+	}
+
 	public Point[] generate() {
-		Point point = null;
+		String auth = getAuthorization();
+		// the issue facets and the measures are fetched concurrently, this thread only waits for them
+		// so that the interrupt of a timeout is noticed
+		Call issuesCall = httpClient.newCall(request(this.SONAR_ISSUES_URL, auth));
+		Call measuresCall = httpClient.newCall(request(this.SONAR_METRICS_URL, auth));
+		PendingResponse issues = new PendingResponse();
+		PendingResponse measuresResponse = new PendingResponse();
+		issuesCall.enqueue(issues);
+		measuresCall.enqueue(measuresResponse);
 		try {
-			point = buildPoint(measurementName("sonarqube_data"), customPrefix, build)
-					.addField(BUILD_DISPLAY_NAME, build.getDisplayName())
-					.addField(SONARQUBE_CRTITCAL_ISSUES, getSonarIssues(this.SONAR_ISSUES_URL, "CRITICAL"))
-					.addField(SONARQUBE_BLOCKER_ISSUES, getSonarIssues(this.SONAR_ISSUES_URL, "BLOCKER"))
-					.addField(SONARQUBE_MAJOR_ISSUES, getSonarIssues(this.SONAR_ISSUES_URL, "MAJOR"))
-					.addField(SONARQUBE_MINOR_ISSUES, getSonarIssues(this.SONAR_ISSUES_URL, "MINOR"))
-					.addField(SONARQUBE_INFO_ISSUES, getSonarIssues(this.SONAR_ISSUES_URL, "INFO"))
-					.addField(SONARQUBE_LINES_OF_CODE, getLinesofCode(this.SONAR_METRICS_URL)).build();
+			JSONObject measures = JSONObject.fromObject(measuresResponse.get());
+			JSONObject issueSearch = JSONObject.fromObject(issues.get());
+
+			Point.Builder point = buildPoint(measurementName("sonarqube_data"), customPrefix, build)
+					.addField(BUILD_DISPLAY_NAME, build.getDisplayName());
+			addIssueCounts(point, issueSearch);
+			addMeasures(point, measures);
+			return new Point[] { point.build() };
 		} catch (IOException e) {
-			// handle
+			throw new IllegalStateException("Could not read SonarQube data of " + sonarProjectName, e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while reading SonarQube data of " + sonarProjectName, e);
+		} finally {
+			// a timed out generator must not leave its requests running on the dispatcher
+			issuesCall.cancel();
+			measuresCall.cancel();
 		}
-		return new Point[] { point };
 	}
 
 	public String getResult(String request) throws IOException {
-		StringBuffer result = new StringBuffer();
-		
-		try 
-		{
-			String auth = "";
+		return execute(request(request, getAuthorization()));
+	}
+
+	/**
+	 * @deprecated the lines of code are read together with the other measures in {@link #generate()}
+	 */
+	@Deprecated
+	public int getLinesofCode(String url) throws IOException {
+		int linesofcodeCount = 0;
+		JSONArray array = JSONObject.fromObject(getResult(url)).getJSONObject("component").getJSONArray("measures");
+		for (int i = 0; i < array.size(); i++) {
+			JSONObject metricsObject = array.getJSONObject(i);
+			if (metricsObject.get("metric").equals("ncloc")) {
+				linesofcodeCount = metricsObject.getInt("value");
+			}
+		}
+		return linesofcodeCount;
+	}
+
+	/**
+	 * @deprecated the issue counts of all severities are read with one request in {@link #generate()}
+	 */
+	@Deprecated
+	public int getSonarIssues(String url, String severity) throws IOException {
+		return JSONObject.fromObject(getResult(url + severity)).getInt("total");
+	}
+
+	private String getAuthorization() {
+		if (authorization == null) {
+			authorization = "";
 			try {
 				String token = build.getEnvironment(listener).get("SONAR_AUTH_TOKEN");
 				if (token != null) {
 					token = token + ":";
 					String encoding = Base64.encodeBase64String(token.getBytes("UTF-8"));
-					auth = "Basic " + encoding;
+					authorization = "Basic " + encoding;
 				}
 			} catch (InterruptedException|IOException e) {
 				// handle
 			}
-			URL url = new URL(request);
-			HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-			if (auth != "")
-				conn.setRequestProperty("Authorization", auth);
-			conn.setRequestMethod("GET");
-			conn.setRequestProperty("Accept", "application/json");
-
-			if (conn.getResponseCode() != 200) {
-				throw new RuntimeException("Failed : HTTP error code : " + conn.getResponseCode());
-			}
-
-			BufferedReader rd = new BufferedReader(new InputStreamReader((conn.getInputStream())));
-			String line = "";
-			while ((line = rd.readLine()) != null) {
-				result.append(line);
-			}
-
-			conn.disconnect();
-
-		} catch (MalformedURLException e) {
-
-			e.printStackTrace();
+		}
+		return authorization.isEmpty() ? null : authorization;
+	}
 
-		} catch (IOException e) {
+	private static Request request(String url, String auth) {
+		Request.Builder request = new Request.Builder()
+				.url(url)
+				.header("Accept", "application/json");
+		if (auth != null)
+			request.header("Authorization", auth);
+		return request.build();
+	}
 
-			e.printStackTrace();
+	private static String execute(Request request) throws IOException {
+		return readBody(httpClient.newCall(request).execute());
+	}
 
+	private static String readBody(Response response) throws IOException {
+		try {
+			if (response.code() != 200) {
+				throw new IOException("Failed : HTTP error code : " + response.code() + " for " + response.request().url());
+			}
+			return response.body().string();
+		} finally {
+			response.body().close();
 		}
+	}
 
-		return result.toString();
+	private String getSonarProjectURLFromBuildAction(Run<?, ?> build) {
+		// the SonarQube plugin is not a dependency, so its actions are only known by name
+		for (Action action : build.getActions()) {
+			if (!action.getClass().getName().startsWith(SONAR_PLUGIN_ACTION_PACKAGE)) {
+				continue;
+			}
+			try {
+				Object url = action.getClass().getMethod("getUrl").invoke(action);
+				if (url instanceof String && !StringUtils.isEmpty((String) url)) {
+					return (String) url;
+				}
+			} catch (ReflectiveOperationException e) {
+				// not an action that carries the analysis URL
+			}
+		}
+		return null;
 	}
 
 	@SuppressWarnings("deprecation")
 	private String getSonarProjectURLFromBuildLogs(Run<?, ?> build) throws IOException {
+		File logFile = build.getLogFile();
+		if (logFile.isFile() && !logFile.getName().endsWith(".gz")) {
+			return logScanner.findLast(logFile, LOG_SCAN_LIMIT_BYTES);
+		}
+		// compressed logs can only be read from the start
 		BufferedReader br = null;
 		String url = null;
 		try {
 			br = new BufferedReader(build.getLogReader());
 			String strLine;
-			Pattern p = Pattern.compile(URL_PATTERN_IN_LOGS);
 			while ((strLine = br.readLine()) != null) {
-				Matcher match = p.matcher(strLine);
-				if (match.matches()) {
-					url = match.group(1);
+				int index = strLine.lastIndexOf(URL_MARKER_IN_LOGS);
+				if (index >= 0) {
+					url = strLine.substring(index + URL_MARKER_IN_LOGS.length());
 				}
 			}
 		} finally {
@@ -173,31 +288,134 @@ public class SonarQubePointGenerator extends AbstractPointGenerator {
 
 	private String getSonarProjectName(String url) throws URISyntaxException {
 		URI uri = new URI(url);
-		String[] projectUrl = uri.getPath().split("/");
-		if (projectUrl.length > 1) {
-			return projectUrl[projectUrl.length - 1];
-		} else
-			return "";
+		String path = uri.getPath() != null ? uri.getPath() : "";
+		int index = path.lastIndexOf(DASHBOARD_INDEX_PATH);
+		if (index >= 0) {
+			return path.substring(index + DASHBOARD_INDEX_PATH.length());
+		}
+		if (path.endsWith(DASHBOARD_PATH) && uri.getQuery() != null) {
+			for (String parameter : uri.getQuery().split("&")) {
+				if (parameter.startsWith("id=")) {
+					return parameter.substring("id=".length());
+				}
+			}
+		}
+		return "";
 	}
 
-	public int getLinesofCode(String url) throws IOException {
-		String output = getResult(url);
-		JSONObject metricsObjects = JSONObject.fromObject(output);
+	private void addIssueCounts(Point.Builder point, JSONObject issueSearch) {
+		int blocker = 0, critical = 0, major = 0, minor = 0, info = 0;
+		JSONArray facets = issueSearch.getJSONArray("facets");
+		for (int i = 0; i < facets.size(); i++) {
+			JSONObject facet = facets.getJSONObject(i);
+			if (!"severities".equals(facet.getString("property"))) {
+				continue;
+			}
+			JSONArray values = facet.getJSONArray("values");
+			for (int j = 0; j < values.size(); j++) {
+				JSONObject value = values.getJSONObject(j);
+				String severity = value.getString("val");
+				int count = value.getInt("count");
+				if ("BLOCKER".equals(severity)) {
+					blocker = count;
+				} else if ("CRITICAL".equals(severity)) {
+					critical = count;
+				} else if ("MAJOR".equals(severity)) {
+					major = count;
+				} else if ("MINOR".equals(severity)) {
+					minor = count;
+				} else if ("INFO".equals(severity)) {
+					info = count;
+				}
+			}
+		}
+		point.addField(SONARQUBE_CRTITCAL_ISSUES, critical)
+				.addField(SONARQUBE_BLOCKER_ISSUES, blocker)
+				.addField(SONARQUBE_MAJOR_ISSUES, major)
+				.addField(SONARQUBE_MINOR_ISSUES, minor)
+				.addField(SONARQUBE_INFO_ISSUES, info);
+	}
+
+	private void addMeasures(Point.Builder point, JSONObject measures) {
 		int linesofcodeCount = 0;
-		JSONArray array = metricsObjects.getJSONObject("component").getJSONArray("measures");
+		JSONArray array = measures.getJSONObject("component").getJSONArray("measures");
 		for (int i = 0; i < array.size(); i++) {
 			JSONObject metricsObject = array.getJSONObject(i);
-			if (metricsObject.get("metric").equals("ncloc")) {
+			// measures without a value (e.g. no coverage report) are left out
+			if (!metricsObject.has("value")) {
+				continue;
+			}
+			String metric = metricsObject.getString("metric");
+			if (metric.equals("ncloc")) {
 				linesofcodeCount = metricsObject.getInt("value");
+			} else if (metric.equals("complexity")) {
+				point.addField(SONARQUBE_COMPLEXITY, metricsObject.getLong("value"));
+			} else if (metric.equals("coverage")) {
+				point.addField(SONARQUBE_COVERAGE, metricsObject.getDouble("value"));
+			} else if (metric.equals("duplicated_lines_density")) {
+				point.addField(SONARQUBE_DUPLICATED_LINES_DENSITY, metricsObject.getDouble("value"));
+			} else if (metric.equals("code_smells")) {
+				point.addField(SONARQUBE_CODE_SMELLS, metricsObject.getLong("value"));
+			} else if (metric.equals("sqale_index")) {
+				// technical debt in minutes
+				point.addField(SONARQUBE_TECHNICAL_DEBT, metricsObject.getLong("value"));
 			}
 		}
-
-		return linesofcodeCount;
+		point.addField(SONARQUBE_LINES_OF_CODE, linesofcodeCount);
 	}
 
-	public int getSonarIssues(String url, String severity) throws IOException {
-		String output = getResult(url + severity);
-		return JSONObject.fromObject(output).getInt("total");
+	/**
+	 * Response of a request that is executed on the HTTP client's dispatcher.
+	 */
+	private static final class PendingResponse implements Callback {
+		private final CountDownLatch done = new CountDownLatch(1);
+		private volatile String body;
+		private volatile IOException failure;
+
+		@Override
+		public void onFailure(Call call, IOException e) {
+			failure = e;
+			done.countDown();
+		}
+
+		@Override
+		public void onResponse(Call call, Response response) {
+			try {
+				body = readBody(response);
+			} catch (IOException e) {
+				failure = e;
+			} finally {
+				done.countDown();
+			}
+		}
+
+		String get() throws IOException, InterruptedException {
+			if (!done.await(CONNECT_TIMEOUT_SECONDS + READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				throw new IOException("No response from SonarQube");
+			}
+			if (failure != null) {
+				throw failure;
+			}
+			return body;
+		}
 	}
 
+	@Extension(ordinal = 30)
+	public static final class Factory extends PointGeneratorFactory {
+
+		@Override
+		public String getName() {
+			return "sonarQube";
+		}
+
+		@Override
+		public String getLabel() {
+			return "SonarQube data";
+		}
+
+		@Override
+		public PointGenerator create(GeneratorContext context) {
+			return new SonarQubePointGenerator(context.getMeasurementRenderer(), context.getCustomPrefix(), context.getBuild(), context.getListener());
+		}
+	}
 }
@@ -0,0 +1,32 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out unique, strictly increasing point times in nanoseconds, shared by all generators.
+ *
+ * InfluxDB overwrites points with the same series and time, so generators that emit many points
+ * of one series give each point its own time from here instead of waiting for the clock to move.
+ * Times follow the wall clock; points allocated within the same millisecond are spaced one
+ * nanosecond apart.
+ */
+public final class TimestampAllocator {
+
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    private static final AtomicLong lastAllocated = new AtomicLong();
+
+    private TimestampAllocator() {
+    }
+
+    public static long nextTimeNanos() {
+        long now = System.currentTimeMillis() * NANOS_PER_MILLI;
+        for (;;) {
+            long last = lastAllocated.get();
+            long next = now > last ? now : last + 1;
+            if (lastAllocated.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+}
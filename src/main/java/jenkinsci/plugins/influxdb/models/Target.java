@@ -1,6 +1,8 @@
 package jenkinsci.plugins.influxdb.models;
  
 public class Target {
+
+    public static final int DEFAULT_GZIP_THRESHOLD = 4096;
  
     String description;
     String url;
@@ -9,6 +11,17 @@ public class Target {
     String database;
     String retentionPolicy;
     boolean exposeExceptions;
+    boolean asyncWrite;
+    boolean spoolWrites;
+    boolean coalesceWrites;
+    boolean gzipWrites;
+    int gzipThreshold = DEFAULT_GZIP_THRESHOLD;
+    boolean publishPluginStats;
+    int cardinalityMaxMeasurements;
+    int cardinalityMaxSeries;
+    String cardinalityAction;
+    int rateLimitPoints;
+    int rateLimitBytes;
 
     public Target(){
         //nop
@@ -70,6 +83,113 @@ public class Target {
         this.exposeExceptions = exposeExceptions;
     }
 
+    public boolean isAsyncWrite() {
+        return asyncWrite;
+    }
+
+    public void setAsyncWrite(boolean asyncWrite) {
+        this.asyncWrite = asyncWrite;
+    }
+
+    public boolean isSpoolWrites() {
+        return spoolWrites;
+    }
+
+    public void setSpoolWrites(boolean spoolWrites) {
+        this.spoolWrites = spoolWrites;
+    }
+
+    public boolean isCoalesceWrites() {
+        return coalesceWrites;
+    }
+
+    public void setCoalesceWrites(boolean coalesceWrites) {
+        this.coalesceWrites = coalesceWrites;
+    }
+
+    public boolean isGzipWrites() {
+        return gzipWrites;
+    }
+
+    public void setGzipWrites(boolean gzipWrites) {
+        this.gzipWrites = gzipWrites;
+    }
+
+    /**
+     * Minimum size in bytes of a write body to be compressed. Targets saved before the option
+     * existed have no threshold and use the default.
+     */
+    public int getGzipThreshold() {
+        return gzipThreshold > 0 ? gzipThreshold : DEFAULT_GZIP_THRESHOLD;
+    }
+
+    public void setGzipThreshold(int gzipThreshold) {
+        this.gzipThreshold = gzipThreshold;
+    }
+
+    public boolean isPublishPluginStats() {
+        return publishPluginStats;
+    }
+
+    public void setPublishPluginStats(boolean publishPluginStats) {
+        this.publishPluginStats = publishPluginStats;
+    }
+
+    /**
+     * Maximum number of measurements the plugin writes to the database, 0 for no limit.
+     */
+    public int getCardinalityMaxMeasurements() {
+        return cardinalityMaxMeasurements;
+    }
+
+    public void setCardinalityMaxMeasurements(int cardinalityMaxMeasurements) {
+        this.cardinalityMaxMeasurements = cardinalityMaxMeasurements;
+    }
+
+    /**
+     * Maximum number of series per measurement the plugin writes to the database, 0 for no limit.
+     */
+    public int getCardinalityMaxSeries() {
+        return cardinalityMaxSeries;
+    }
+
+    public void setCardinalityMaxSeries(int cardinalityMaxSeries) {
+        this.cardinalityMaxSeries = cardinalityMaxSeries;
+    }
+
+    /**
+     * Name of the {@link jenkinsci.plugins.influxdb.writer.CardinalityAction} applied to points beyond the limits.
+     */
+    public String getCardinalityAction() {
+        return cardinalityAction;
+    }
+
+    public void setCardinalityAction(String cardinalityAction) {
+        this.cardinalityAction = cardinalityAction;
+    }
+
+    /**
+     * Points per second written to this target by all builds together, 0 for no limit.
+     */
+    public int getRateLimitPoints() {
+        return rateLimitPoints;
+    }
+
+    public void setRateLimitPoints(int rateLimitPoints) {
+        this.rateLimitPoints = rateLimitPoints;
+    }
+
+    /**
+     * Bytes of line protocol per second written to this target by all builds together, 0 for no limit.
+     */
+    public int getRateLimitBytes() {
+        return rateLimitBytes;
+    }
+
+    public void setRateLimitBytes(int rateLimitBytes) {
+        this.rateLimitBytes = rateLimitBytes;
+    }
+
     @Override
     public String toString() {
         return "[url=" + this.url + ", description=" + this.description + ", username=" + this.username
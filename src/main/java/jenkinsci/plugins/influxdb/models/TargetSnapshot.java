@@ -0,0 +1,111 @@
+package jenkinsci.plugins.influxdb.models;
+
+import com.google.common.base.Strings;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable view of the configured targets, indexed by description. A new snapshot is built and
+ * validated whenever the configuration changes, so that builds look targets up without copying or
+ * scanning the list.
+ *
+ * The targets themselves must not be modified once they are part of a snapshot.
+ */
+public final class TargetSnapshot {
+
+    public static final TargetSnapshot EMPTY = of(Collections.<Target>emptyList());
+
+    private final Target[] targets;
+    private final Map<String, Target> index;
+    private final List<String> problems;
+
+    private TargetSnapshot(Target[] targets, Map<String, Target> index, List<String> problems) {
+        this.targets = targets;
+        this.index = index;
+        this.problems = problems;
+    }
+
+    /**
+     * Indexes and validates the targets. Invalid targets are kept, so that a configuration saved by
+     * an older version still loads, and are described by {@link #getProblems()}.
+     */
+    public static TargetSnapshot of(Iterable<Target> targets) {
+        List<Target> list = new ArrayList<>();
+        Map<String, Target> index = new HashMap<>();
+        List<String> problems = new ArrayList<>();
+        for (Target target : targets) {
+            list.add(target);
+            String description = target.getDescription();
+            if (Strings.isNullOrEmpty(description)) {
+                problems.add("A target has no description");
+            } else if (index.containsKey(description)) {
+                // lookups have always returned the first target of a description
+                problems.add("There is more than one target named " + description);
+            } else {
+                index.put(description, target);
+            }
+            validate(target, problems);
+        }
+        return new TargetSnapshot(list.toArray(new Target[list.size()]), Collections.unmodifiableMap(index),
+                Collections.unmodifiableList(problems));
+    }
+
+    private static void validate(Target target, List<String> problems) {
+        String name = Strings.isNullOrEmpty(target.getDescription()) ? target.getUrl() : target.getDescription();
+        if (Strings.isNullOrEmpty(target.getUrl())) {
+            problems.add("Target " + name + " has no URL");
+        } else {
+            try {
+                URL url = new URL(target.getUrl());
+                if (!"http".equals(url.getProtocol()) && !"https".equals(url.getProtocol())) {
+                    problems.add("The URL of target " + name + " is neither http nor https: " + target.getUrl());
+                } else if (Strings.isNullOrEmpty(url.getHost())) {
+                    problems.add("The URL of target " + name + " has no host: " + target.getUrl());
+                }
+            } catch (MalformedURLException e) {
+                problems.add("The URL of target " + name + " is invalid: " + e.getMessage());
+            }
+        }
+        if (Strings.isNullOrEmpty(target.getDatabase())) {
+            problems.add("Target " + name + " has no database");
+        }
+    }
+
+    /**
+     * @return the target with the description, or null
+     */
+    public Target get(String description) {
+        return description == null ? null : index.get(description);
+    }
+
+    /**
+     * @return the first target, used by publishers that did not select one, or null
+     */
+    public Target getDefault() {
+        return targets.length > 0 ? targets[0] : null;
+    }
+
+    public int size() {
+        return targets.length;
+    }
+
+    /**
+     * @return a copy of the targets in configuration order
+     */
+    public Target[] toArray() {
+        return targets.clone();
+    }
+
+    /**
+     * @return what is wrong with the configured targets, empty if they are valid
+     */
+    public List<String> getProblems() {
+        return problems;
+    }
+}
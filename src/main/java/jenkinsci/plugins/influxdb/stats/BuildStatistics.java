@@ -0,0 +1,209 @@
+package jenkinsci.plugins.influxdb.stats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * What publishing the points of one build cost: the timings and point counts of every generator
+ * and the write statistics of every target. Completed generator runs are also added to the
+ * plugin-wide {@link PluginStatistics}.
+ *
+ * Generator runs are updated by the thread that runs the generator and read after it finished.
+ */
+public final class BuildStatistics {
+
+    /**
+     * How a generator run ended.
+     */
+    public enum Outcome {
+        /** the build has no report for the generator */
+        NO_REPORT,
+        GENERATED,
+        FAILED,
+        TIMED_OUT
+    }
+
+    private final List<GeneratorRun> generators = new ArrayList<>();
+    private final List<TargetWrite> targets = new ArrayList<>();
+    private volatile long encodedBytes;
+    private volatile int cardinalityWarned;
+    private volatile int cardinalityRejected;
+    private volatile int cardinalityRerouted;
+
+    public synchronized GeneratorRun generator(String name) {
+        GeneratorRun run = new GeneratorRun(name);
+        generators.add(run);
+        return run;
+    }
+
+    public synchronized List<GeneratorRun> getGenerators() {
+        return new ArrayList<>(generators);
+    }
+
+    public synchronized void addTarget(TargetWrite target) {
+        targets.add(target);
+    }
+
+    public synchronized List<TargetWrite> getTargets() {
+        return new ArrayList<>(targets);
+    }
+
+    /**
+     * @return characters of line protocol the points of the build were encoded to
+     */
+    public long getEncodedBytes() {
+        return encodedBytes;
+    }
+
+    public void setEncodedBytes(long encodedBytes) {
+        this.encodedBytes = encodedBytes;
+    }
+
+    /**
+     * Records the points that exceeded the cardinality limits of a target.
+     */
+    public void setCardinalityViolations(int warned, int rejected, int rerouted) {
+        this.cardinalityWarned = warned;
+        this.cardinalityRejected = rejected;
+        this.cardinalityRerouted = rerouted;
+    }
+
+    public int getCardinalityWarned() {
+        return cardinalityWarned;
+    }
+
+    public int getCardinalityRejected() {
+        return cardinalityRejected;
+    }
+
+    public int getCardinalityRerouted() {
+        return cardinalityRerouted;
+    }
+
+    /**
+     * One run of a point generator. Times are -1 for the phases the generator did not reach.
+     */
+    public static final class GeneratorRun {
+        private final String name;
+        private final AtomicInteger points = new AtomicInteger();
+        private volatile long hasReportNanos = -1;
+        private volatile long generateNanos = -1;
+        private volatile Outcome outcome;
+
+        GeneratorRun(String name) {
+            this.name = name;
+        }
+
+        public void setHasReportNanos(long hasReportNanos) {
+            this.hasReportNanos = hasReportNanos;
+        }
+
+        public void setGenerateNanos(long generateNanos) {
+            this.generateNanos = generateNanos;
+        }
+
+        public void addPoint() {
+            points.incrementAndGet();
+        }
+
+        public void addPoints(int count) {
+            points.addAndGet(count);
+        }
+
+        /**
+         * Records the end of the run, also in the plugin-wide statistics.
+         */
+        public void complete(Outcome outcome) {
+            this.outcome = outcome;
+            PluginStatistics.get().generator(name).record(this);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getPoints() {
+            return points.get();
+        }
+
+        public long getHasReportNanos() {
+            return hasReportNanos;
+        }
+
+        public long getGenerateNanos() {
+            return generateNanos;
+        }
+
+        /**
+         * @return null while the run is not complete
+         */
+        public Outcome getOutcome() {
+            return outcome;
+        }
+    }
+
+    /**
+     * The synchronous writes of the build to one target.
+     */
+    public static final class TargetWrite {
+        private final String target;
+        private final int chunks;
+        private final int failedChunks;
+        private final int retries;
+        private final long writeNanos;
+        private final long maxWriteNanos;
+        private final long compressedBytes;
+        private final int queueSize;
+
+        /**
+         * @param queueSize batches waiting in the publish queue, -1 for targets that write synchronously
+         */
+        public TargetWrite(String target, int chunks, int failedChunks, int retries, long writeNanos,
+                           long maxWriteNanos, long compressedBytes, int queueSize) {
+            this.target = target;
+            this.chunks = chunks;
+            this.failedChunks = failedChunks;
+            this.retries = retries;
+            this.writeNanos = writeNanos;
+            this.maxWriteNanos = maxWriteNanos;
+            this.compressedBytes = compressedBytes;
+            this.queueSize = queueSize;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        public int getChunks() {
+            return chunks;
+        }
+
+        public int getFailedChunks() {
+            return failedChunks;
+        }
+
+        public int getRetries() {
+            return retries;
+        }
+
+        /**
+         * @return summed duration of the successful writes
+         */
+        public long getWriteNanos() {
+            return writeNanos;
+        }
+
+        public long getMaxWriteNanos() {
+            return maxWriteNanos;
+        }
+
+        public long getCompressedBytes() {
+            return compressedBytes;
+        }
+
+        public int getQueueSize() {
+            return queueSize;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package jenkinsci.plugins.influxdb.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and latency histograms of one point generator across all builds.
+ */
+public final class GeneratorStatistics implements GeneratorStatisticsMXBean {
+
+    private final String name;
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong reports = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong points = new AtomicLong();
+    private final LatencyHistogram hasReportTime = new LatencyHistogram();
+    private final LatencyHistogram generateTime = new LatencyHistogram();
+
+    GeneratorStatistics(String name) {
+        this.name = name;
+    }
+
+    void record(BuildStatistics.GeneratorRun run) {
+        runs.incrementAndGet();
+        if (run.getHasReportNanos() >= 0) {
+            hasReportTime.record(run.getHasReportNanos());
+        }
+        if (run.getGenerateNanos() >= 0) {
+            generateTime.record(run.getGenerateNanos());
+        }
+        points.addAndGet(run.getPoints());
+        switch (run.getOutcome()) {
+            case GENERATED:
+                reports.incrementAndGet();
+                break;
+            case FAILED:
+                failures.incrementAndGet();
+                break;
+            case TIMED_OUT:
+                timeouts.incrementAndGet();
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getRuns() {
+        return runs.get();
+    }
+
+    @Override
+    public long getReports() {
+        return reports.get();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.get();
+    }
+
+    @Override
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    @Override
+    public long getPoints() {
+        return points.get();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getHasReportTime() {
+        return hasReportTime.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getGenerateTime() {
+        return generateTime.snapshot();
+    }
+}
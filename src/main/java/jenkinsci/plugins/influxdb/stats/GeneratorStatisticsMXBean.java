@@ -0,0 +1,23 @@
+package jenkinsci.plugins.influxdb.stats;
+
+/**
+ * JMX view of the runs of one point generator across all builds.
+ */
+public interface GeneratorStatisticsMXBean {
+
+    String getName();
+
+    long getRuns();
+
+    long getReports();
+
+    long getFailures();
+
+    long getTimeouts();
+
+    long getPoints();
+
+    LatencyHistogram.Snapshot getHasReportTime();
+
+    LatencyHistogram.Snapshot getGenerateTime();
+}
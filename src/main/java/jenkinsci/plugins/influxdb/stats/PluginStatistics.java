@@ -0,0 +1,268 @@
+package jenkinsci.plugins.influxdb.stats;
+
+import hudson.init.Terminator;
+import jenkinsci.plugins.influxdb.writer.PublishQueue;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Plugin-wide counters and latency histograms, registered as MXBeans under the
+ * {@code jenkinsci.plugins.influxdb} domain: one for the plugin and one per point generator.
+ */
+public final class PluginStatistics implements PluginStatisticsMXBean {
+
+    /** The logger. **/
+    private static final Logger logger = Logger.getLogger(PluginStatistics.class.getName());
+
+    static final String DOMAIN = "jenkinsci.plugins.influxdb";
+
+    private static final PluginStatistics INSTANCE = new PluginStatistics();
+
+    static {
+        INSTANCE.register(INSTANCE, "type=PluginStatistics");
+    }
+
+    private final ConcurrentMap<String, GeneratorStatistics> generators = new ConcurrentHashMap<>();
+    private final AtomicLong builds = new AtomicLong();
+    private final AtomicLong points = new AtomicLong();
+    private final AtomicLong encodedBytes = new AtomicLong();
+    private final AtomicLong compressedRawBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong writtenPoints = new AtomicLong();
+    private final AtomicLong writeFailures = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong breakerTrips = new AtomicLong();
+    private final AtomicLong shedPoints = new AtomicLong();
+    private final AtomicLong throttledWrites = new AtomicLong();
+    private final AtomicLong cardinalityWarned = new AtomicLong();
+    private final AtomicLong cardinalityRejected = new AtomicLong();
+    private final AtomicLong cardinalityRerouted = new AtomicLong();
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+    private final LatencyHistogram publishTime = new LatencyHistogram();
+    private final LatencyHistogram throttleTime = new LatencyHistogram();
+
+    PluginStatistics() {
+    }
+
+    public static PluginStatistics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the statistics of the generator, registered with JMX on first use
+     */
+    public GeneratorStatistics generator(String name) {
+        GeneratorStatistics statistics = generators.get(name);
+        if (statistics == null) {
+            GeneratorStatistics created = new GeneratorStatistics(name);
+            statistics = generators.putIfAbsent(name, created);
+            if (statistics == null) {
+                statistics = created;
+                register(created, "type=GeneratorStatistics,name=" + ObjectName.quote(name));
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Records a publisher run of a build.
+     */
+    public void recordBuild(BuildStatistics build, long nanos) {
+        builds.incrementAndGet();
+        for (BuildStatistics.GeneratorRun run : build.getGenerators()) {
+            points.addAndGet(run.getPoints());
+        }
+        encodedBytes.addAndGet(build.getEncodedBytes());
+        cardinalityWarned.addAndGet(build.getCardinalityWarned());
+        cardinalityRejected.addAndGet(build.getCardinalityRejected());
+        cardinalityRerouted.addAndGet(build.getCardinalityRerouted());
+        publishTime.record(nanos);
+    }
+
+    /**
+     * Records a write request to InfluxDB, whichever path it took.
+     */
+    public void recordWrite(int pointCount, long nanos, boolean written) {
+        writes.incrementAndGet();
+        writeLatency.record(nanos);
+        if (written) {
+            writtenPoints.addAndGet(pointCount);
+        } else {
+            writeFailures.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records a write whose body was compressed, whichever path it took.
+     */
+    public void recordCompression(long rawBytes, long compressedBytes) {
+        compressedRawBytes.addAndGet(rawBytes);
+        this.compressedBytes.addAndGet(compressedBytes);
+    }
+
+    public void recordRetry() {
+        retries.incrementAndGet();
+    }
+
+    public void recordBreakerTrip() {
+        breakerTrips.incrementAndGet();
+    }
+
+    /**
+     * Records bulk points that were given up on to relieve a full queue or a struggling target.
+     */
+    public void recordShed(int pointCount) {
+        shedPoints.addAndGet(pointCount);
+    }
+
+    /**
+     * Records how long a write to a rate limited target waited for its turn, which may be 0.
+     */
+    public void recordThrottle(long nanos) {
+        if (nanos > 0) {
+            throttledWrites.incrementAndGet();
+        }
+        throttleTime.record(nanos);
+    }
+
+    @Override
+    public long getBuilds() {
+        return builds.get();
+    }
+
+    @Override
+    public long getPoints() {
+        return points.get();
+    }
+
+    @Override
+    public long getEncodedBytes() {
+        return encodedBytes.get();
+    }
+
+    @Override
+    public long getCompressedRawBytes() {
+        return compressedRawBytes.get();
+    }
+
+    @Override
+    public long getCompressedBytes() {
+        return compressedBytes.get();
+    }
+
+    @Override
+    public long getWrites() {
+        return writes.get();
+    }
+
+    @Override
+    public long getWrittenPoints() {
+        return writtenPoints.get();
+    }
+
+    @Override
+    public long getWriteFailures() {
+        return writeFailures.get();
+    }
+
+    @Override
+    public long getRetries() {
+        return retries.get();
+    }
+
+    @Override
+    public long getBreakerTrips() {
+        return breakerTrips.get();
+    }
+
+    @Override
+    public long getShedPoints() {
+        return shedPoints.get();
+    }
+
+    @Override
+    public long getThrottledWrites() {
+        return throttledWrites.get();
+    }
+
+    @Override
+    public long getCardinalityWarned() {
+        return cardinalityWarned.get();
+    }
+
+    @Override
+    public long getCardinalityRejected() {
+        return cardinalityRejected.get();
+    }
+
+    @Override
+    public long getCardinalityRerouted() {
+        return cardinalityRerouted.get();
+    }
+
+    @Override
+    public int getQueueSize() {
+        return PublishQueue.get().size();
+    }
+
+    @Override
+    public long getQueueDropped() {
+        return PublishQueue.get().getDroppedCount();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getWriteLatency() {
+        return writeLatency.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getPublishTime() {
+        return publishTime.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getThrottleTime() {
+        return throttleTime.snapshot();
+    }
+
+    @Terminator
+    public static void shutdown() {
+        INSTANCE.unregister("type=PluginStatistics");
+        for (String name : INSTANCE.generators.keySet()) {
+            INSTANCE.unregister("type=GeneratorStatistics,name=" + ObjectName.quote(name));
+        }
+    }
+
+    private void register(Object bean, String properties) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(DOMAIN + ":" + properties);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(bean, name);
+            }
+        } catch (JMException | RuntimeException e) {
+            logger.log(Level.FINE, "Could not register " + properties + " with JMX", e);
+        }
+    }
+
+    private void unregister(String properties) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(DOMAIN + ":" + properties);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException | RuntimeException e) {
+            logger.log(Level.FINE, "Could not unregister " + properties + " from JMX", e);
+        }
+    }
+}
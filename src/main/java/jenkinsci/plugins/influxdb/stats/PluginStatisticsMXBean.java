@@ -0,0 +1,53 @@
+package jenkinsci.plugins.influxdb.stats;
+
+/**
+ * JMX view of the work the plugin did since Jenkins started.
+ */
+public interface PluginStatisticsMXBean {
+
+    long getBuilds();
+
+    long getPoints();
+
+    long getEncodedBytes();
+
+    /**
+     * @return line protocol bytes of the writes that were compressed
+     */
+    long getCompressedRawBytes();
+
+    /**
+     * @return bytes sent for the writes that were compressed
+     */
+    long getCompressedBytes();
+
+    long getWrites();
+
+    long getWrittenPoints();
+
+    long getWriteFailures();
+
+    long getRetries();
+
+    long getBreakerTrips();
+
+    long getShedPoints();
+
+    long getThrottledWrites();
+
+    long getCardinalityWarned();
+
+    long getCardinalityRejected();
+
+    long getCardinalityRerouted();
+
+    int getQueueSize();
+
+    long getQueueDropped();
+
+    LatencyHistogram.Snapshot getWriteLatency();
+
+    LatencyHistogram.Snapshot getPublishTime();
+
+    LatencyHistogram.Snapshot getThrottleTime();
+}
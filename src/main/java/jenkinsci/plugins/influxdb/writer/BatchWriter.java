@@ -0,0 +1,74 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import jenkinsci.plugins.influxdb.models.Target;
+import jenkinsci.plugins.influxdb.stats.PluginStatistics;
+import org.influxdb.InfluxDB;
+import org.influxdb.InfluxDB.ConsistencyLevel;
+
+/**
+ * Synchronously writes a {@link WriteBatch} to its target using the shared client. Every write,
+ * whether it comes from a build, the publish queue or the spool, is recorded in the
+ * {@link PluginStatistics}, counts towards the {@link CircuitBreaker} of the target's server and
+ * waits for the {@link RateLimiter} of the target, if it has one.
+ *
+ * A write InfluxDB rejects as malformed fails with a {@link WriteRejectedException}. It does not
+ * count as a failure of the server, which answered. Any other failure, including missing
+ * permissions or a missing database, counts against the server.
+ */
+public class BatchWriter {
+
+    /**
+     * @return the sizes of what was sent
+     */
+    public WriteResult write(WriteBatch batch) {
+        Target target = batch.getTarget();
+        CircuitBreaker breaker = CircuitBreaker.forTarget(target);
+        breaker.acquire();
+        throttle(batch, breaker);
+        long start = System.nanoTime();
+        boolean written = false;
+        boolean rejected = false;
+        try {
+            InfluxDB influxDB = InfluxDbClientRegistry.get().getClient(target);
+            influxDB.write(batch.getDatabase(), batch.getRetentionPolicy(), ConsistencyLevel.ANY, batch.getPayload());
+            written = true;
+            // the client ran the compression on this thread
+            WriteResult compression = GzipRequestInterceptor.takeLastCompression();
+            if (compression == null) {
+                return WriteResult.uncompressed(batch);
+            }
+            PluginStatistics.get().recordCompression(compression.getRawBytes(), compression.getCompressedBytes());
+            return compression;
+        } catch (RuntimeException e) {
+            int status = ResponseStatusInterceptor.takeLastStatus();
+            if (ResponseStatusInterceptor.isMalformed(status)) {
+                rejected = true;
+                throw new WriteRejectedException(status, e);
+            }
+            throw e;
+        } finally {
+            PluginStatistics.get().recordWrite(batch.getPointCount(), System.nanoTime() - start, written);
+            if (written || rejected) {
+                breaker.recordSuccess();
+            } else {
+                breaker.recordFailure();
+            }
+        }
+    }
+
+    private static void throttle(WriteBatch batch, CircuitBreaker breaker) {
+        RateLimiter limiter = RateLimiter.forTarget(batch.getTarget());
+        if (limiter == null) {
+            return;
+        }
+        try {
+            limiter.acquire(batch);
+        } catch (InterruptedException e) {
+            // the write was never sent, it says nothing about the server
+            breaker.release();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the rate limit of "
+                    + batch.getTarget().getDescription(), e);
+        }
+    }
+}
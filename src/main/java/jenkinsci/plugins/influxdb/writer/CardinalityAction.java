@@ -0,0 +1,30 @@
+package jenkinsci.plugins.influxdb.writer;
+
+/**
+ * What a {@link CardinalityGuard} does with points beyond the limits of its target.
+ */
+public enum CardinalityAction {
+
+    /** Write the points anyway and report them in the console. */
+    WARN,
+
+    /** Drop the points. */
+    REJECT,
+
+    /**
+     * Write the points to {@link CardinalityGuard#FALLBACK_MEASUREMENT}, without their tags and with
+     * their fields prefixed by their measurement.
+     */
+    FALLBACK;
+
+    public static CardinalityAction parse(String name) {
+        if (name != null) {
+            for (CardinalityAction action : values()) {
+                if (action.name().equalsIgnoreCase(name.trim())) {
+                    return action;
+                }
+            }
+        }
+        return WARN;
+    }
+}
@@ -0,0 +1,137 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import jenkinsci.plugins.influxdb.models.Target;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the measurements and series the plugin writes to a database within limits.
+ *
+ * The distinct series of every measurement are estimated with a {@link HyperLogLog} of 1 KB. The
+ * measurements themselves are counted exactly, up to the limit, so that the measurements that
+ * were written before the limit was reached can still be written afterwards. A measurement over
+ * its series limit is treated as a whole, as the sketch cannot tell new series from known ones.
+ *
+ * The estimates cover everything written since Jenkins started.
+ */
+public final class CardinalityGuard {
+
+    public static final String FALLBACK_MEASUREMENT = "jenkins_cardinality_overflow";
+
+    /**
+     * The outcome of a check, in increasing severity.
+     */
+    public enum Verdict {
+        ACCEPT,
+        WARN,
+        FALLBACK,
+        REJECT
+    }
+
+    static final int PRECISION = 10;
+    // series are not tracked for further measurements when no measurement limit is set
+    static final int MAX_TRACKED_MEASUREMENTS = 1000;
+
+    private static final ConcurrentMap<String, CardinalityGuard> guards = new ConcurrentHashMap<>();
+
+    private volatile int maxMeasurements;
+    private volatile int maxSeries;
+    private volatile CardinalityAction action = CardinalityAction.WARN;
+
+    // guarded by this
+    private final HyperLogLog measurements = new HyperLogLog(PRECISION);
+    private final Map<String, HyperLogLog> series = new HashMap<>();
+
+    CardinalityGuard() {
+    }
+
+    /**
+     * Returns the guard of the target's database with the target's current limits.
+     *
+     * @return null if the target has no limits
+     */
+    public static CardinalityGuard forTarget(Target target) {
+        if (target.getCardinalityMaxMeasurements() <= 0 && target.getCardinalityMaxSeries() <= 0) {
+            return null;
+        }
+        String key = target.getUrl() + '|' + target.getDatabase();
+        CardinalityGuard guard = guards.get(key);
+        if (guard == null) {
+            CardinalityGuard created = new CardinalityGuard();
+            guard = guards.putIfAbsent(key, created);
+            if (guard == null) {
+                guard = created;
+            }
+        }
+        guard.configure(target.getCardinalityMaxMeasurements(), target.getCardinalityMaxSeries(),
+                CardinalityAction.parse(target.getCardinalityAction()));
+        return guard;
+    }
+
+    void configure(int maxMeasurements, int maxSeries, CardinalityAction action) {
+        this.maxMeasurements = maxMeasurements;
+        this.maxSeries = maxSeries;
+        this.action = action;
+    }
+
+    /**
+     * Records a point and checks it against the limits.
+     *
+     * @param measurement the escaped measurement of the point
+     * @param seriesKey   the escaped measurement and tags of the point, as in line protocol
+     */
+    public synchronized Verdict check(String measurement, String seriesKey) {
+        if (FALLBACK_MEASUREMENT.equals(measurement)) {
+            return Verdict.ACCEPT;
+        }
+        measurements.offer(measurement);
+        HyperLogLog measurementSeries = series.get(measurement);
+        if (measurementSeries == null) {
+            int limit = maxMeasurements;
+            if (limit > 0 && series.size() >= limit) {
+                return violation();
+            }
+            if (series.size() >= Math.max(limit, MAX_TRACKED_MEASUREMENTS)) {
+                return Verdict.ACCEPT;
+            }
+            measurementSeries = new HyperLogLog(PRECISION);
+            series.put(measurement, measurementSeries);
+        }
+        measurementSeries.offer(seriesKey);
+        int limit = maxSeries;
+        if (limit > 0 && measurementSeries.estimate() > limit) {
+            return violation();
+        }
+        return Verdict.ACCEPT;
+    }
+
+    /**
+     * @return estimated number of distinct measurements checked, including those over the limit
+     */
+    public synchronized long getMeasurementEstimate() {
+        return measurements.estimate();
+    }
+
+    /**
+     * @return estimated number of distinct series of the measurement, 0 if it is not tracked
+     */
+    public synchronized long getSeriesEstimate(String measurement) {
+        HyperLogLog measurementSeries = series.get(measurement);
+        return measurementSeries != null ? measurementSeries.estimate() : 0;
+    }
+
+    private Verdict violation() {
+        switch (action) {
+            case REJECT:
+                return Verdict.REJECT;
+            case FALLBACK:
+                return Verdict.FALLBACK;
+            case WARN:
+            default:
+                return Verdict.WARN;
+        }
+    }
+}
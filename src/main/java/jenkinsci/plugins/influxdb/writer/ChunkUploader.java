@@ -0,0 +1,344 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkinsci.plugins.influxdb.generators.PointPriority;
+import jenkinsci.plugins.influxdb.stats.PluginStatistics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Uploads the chunks of one build concurrently, with a bounded number of requests in flight.
+ *
+ * Every chunk is retried on its own with the delays of a {@link RetryPolicy}; chunks that still fail
+ * are collected so that only they are reported, spooled or rethrown once {@link #await()} returns.
+ * Chunks that InfluxDB rejects as malformed are not retried, nor are chunks while the
+ * {@link CircuitBreaker} of their server is open, and bulk chunks are not even sent while the
+ * target struggles, i.e. while a chunk waits to be retried or the breaker is not closed: they fail
+ * with a {@link LoadShedException} so that the target can catch up on the more important chunks.
+ * A target that is only busy with the uploads of this build does not shed anything.
+ *
+ * Chunks are either submitted, which waits for a free upload, or offered, which never waits: an
+ * offered chunk that finds every upload busy is kept in the backlog until an upload is free.
+ *
+ * An uploader that outlives a build, such as the one of a {@link CoalescingWriter}, tells a
+ * {@link Listener} about every chunk instead of collecting the failures.
+ */
+public final class ChunkUploader {
+
+    /** The logger. **/
+    private static final Logger logger = Logger.getLogger(ChunkUploader.class.getName());
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+    private static final ExecutorService executor = Executors.newCachedThreadPool(
+            new NamingThreadFactory(new DaemonThreadFactory(), "InfluxDB chunk upload"));
+
+    private final BatchWriter writer;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    // the chunks are encoded already, the backlog only keeps them until an upload is free
+    private final BlockingQueue<Pending> backlog = new LinkedBlockingQueue<>();
+    private final RetryPolicy retryPolicy;
+    private final AtomicInteger chunks = new AtomicInteger();
+    private final AtomicLong rawBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+    private final AtomicInteger retries = new AtomicInteger();
+    private final AtomicInteger backingOff = new AtomicInteger();
+    private final AtomicLong writeNanos = new AtomicLong();
+    private final AtomicLong maxWriteNanos = new AtomicLong();
+    private final List<Failure> failures = new ArrayList<>();
+    private final Listener listener;
+
+    public ChunkUploader(BatchWriter writer, int maxInFlight) {
+        this(writer, maxInFlight, RetryPolicy.DEFAULT);
+    }
+
+    public ChunkUploader(BatchWriter writer, int maxInFlight, RetryPolicy retryPolicy) {
+        this(writer, maxInFlight, retryPolicy, null);
+    }
+
+    /**
+     * @param listener told about every chunk, in which case {@link #await()} returns no failures
+     */
+    ChunkUploader(BatchWriter writer, int maxInFlight, RetryPolicy retryPolicy, Listener listener) {
+        this.writer = writer;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.inFlight = new Semaphore(this.maxInFlight);
+        this.retryPolicy = retryPolicy;
+        this.listener = listener;
+    }
+
+    /**
+     * Starts uploading the chunk, waiting while the maximum number of uploads is in flight.
+     */
+    public void submit(final WriteBatch chunk) throws InterruptedException {
+        final int number = chunks.incrementAndGet();
+        if (chunk.getPriority() == PointPriority.BULK && isStruggling(chunk)) {
+            fail(number, chunk, 0, new LoadShedException("Target is struggling, bulk points are shed"));
+            return;
+        }
+        inFlight.acquire();
+        start(new Pending(number, chunk));
+    }
+
+    /**
+     * Starts uploading the chunk, or keeps it in the backlog while the maximum number of uploads is
+     * in flight. Never waits.
+     */
+    public void offer(WriteBatch chunk) {
+        int number = chunks.incrementAndGet();
+        if (chunk.getPriority() == PointPriority.BULK && isStruggling(chunk)) {
+            fail(number, chunk, 0, new LoadShedException("Target is struggling, bulk points are shed"));
+            return;
+        }
+        if (inFlight.tryAcquire()) {
+            start(new Pending(number, chunk));
+            return;
+        }
+        backlog.add(new Pending(number, chunk));
+        // the uploads may all have finished before the chunk was added to the backlog
+        startBacklog();
+    }
+
+    /**
+     * Waits until every submitted or offered chunk has been uploaded or has failed.
+     *
+     * @return the chunks that could not be written, in no particular order
+     */
+    public List<Failure> await() throws InterruptedException {
+        inFlight.acquire(maxInFlight);
+        // an upload that finished just now may have left the backlog to the permits taken here
+        for (Pending next = backlog.poll(); next != null; next = backlog.poll()) {
+            inFlight.release(maxInFlight - 1);
+            start(next);
+            inFlight.acquire(maxInFlight);
+        }
+        inFlight.release(maxInFlight);
+        synchronized (failures) {
+            return new ArrayList<>(failures);
+        }
+    }
+
+    /**
+     * @return true if no chunk is uploading or waiting in the backlog
+     */
+    public boolean isDone() {
+        return inFlight.availablePermits() == maxInFlight && backlog.isEmpty();
+    }
+
+    public int getChunkCount() {
+        return chunks.get();
+    }
+
+    /**
+     * @return line protocol bytes of the compressed chunks
+     */
+    public long getRawBytes() {
+        return rawBytes.get();
+    }
+
+    /**
+     * @return bytes sent for the compressed chunks
+     */
+    public long getCompressedBytes() {
+        return compressedBytes.get();
+    }
+
+    public int getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * @return summed duration of the successful writes
+     */
+    public long getWriteNanos() {
+        return writeNanos.get();
+    }
+
+    public long getMaxWriteNanos() {
+        return maxWriteNanos.get();
+    }
+
+    // holds a permit, which is released once the backlog is empty
+    private void start(Pending first) {
+        try {
+            executor.execute(new Drain(first));
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    private void startBacklog() {
+        if (backlog.isEmpty() || !inFlight.tryAcquire()) {
+            return;
+        }
+        Pending next = backlog.poll();
+        if (next == null) {
+            inFlight.release();
+        } else {
+            start(next);
+        }
+    }
+
+    private void upload(int number, WriteBatch chunk) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                long start = System.nanoTime();
+                WriteResult result = writer.write(chunk);
+                recordWrite(System.nanoTime() - start);
+                if (result.isCompressed()) {
+                    rawBytes.addAndGet(result.getRawBytes());
+                    compressedBytes.addAndGet(result.getCompressedBytes());
+                }
+                if (listener != null) {
+                    listener.written(chunk, result);
+                }
+                return;
+            } catch (CircuitOpenException e) {
+                // the server is known to be down, waiting for it would only delay the build
+                fail(number, chunk, attempt, e);
+                return;
+            } catch (WriteRejectedException e) {
+                // the server answered, it would reject the chunk again
+                fail(number, chunk, attempt, e);
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= retryPolicy.getMaxAttempts()) {
+                    fail(number, chunk, attempt, e);
+                    return;
+                }
+                retries.incrementAndGet();
+                PluginStatistics.get().recordRetry();
+                logger.log(Level.FINE, "Retrying chunk " + number + " of " + chunk.getSource() + " after attempt " + attempt, e);
+                backingOff.incrementAndGet();
+                try {
+                    Thread.sleep(retryPolicy.delayMillis(attempt));
+                } catch (InterruptedException ie) {
+                    // the upload was cancelled, the chunk fails with its last error and is not retried
+                    Thread.currentThread().interrupt();
+                    fail(number, chunk, attempt, e);
+                    return;
+                } finally {
+                    backingOff.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    // the current state of the target, earlier retries and failures do not count once it caught up
+    private boolean isStruggling(WriteBatch chunk) {
+        return backingOff.get() > 0
+                || CircuitBreaker.forTarget(chunk.getTarget()).getState() != CircuitBreaker.State.CLOSED;
+    }
+
+    private void recordWrite(long nanos) {
+        writeNanos.addAndGet(nanos);
+        long max;
+        while (nanos > (max = maxWriteNanos.get()) && !maxWriteNanos.compareAndSet(max, nanos)) {
+            // lost the race against another upload, retry
+        }
+    }
+
+    private void fail(int number, WriteBatch chunk, int attempts, Exception cause) {
+        Failure failure = new Failure(number, chunk, attempts, cause);
+        if (listener != null) {
+            listener.failed(failure);
+            return;
+        }
+        synchronized (failures) {
+            failures.add(failure);
+        }
+    }
+
+    /**
+     * Told about every chunk once it has been written or has failed, on the thread that uploaded,
+     * submitted or offered it.
+     */
+    interface Listener {
+
+        void written(WriteBatch chunk, WriteResult result);
+
+        void failed(Failure failure);
+    }
+
+    private static final class Pending {
+        private final int number;
+        private final WriteBatch chunk;
+
+        Pending(int number, WriteBatch chunk) {
+            this.number = number;
+            this.chunk = chunk;
+        }
+    }
+
+    /**
+     * Uploads a chunk and then the backlog, holding one permit.
+     */
+    private final class Drain implements Runnable {
+        private final Pending first;
+
+        Drain(Pending first) {
+            this.first = first;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (Pending next = first; next != null; next = backlog.poll()) {
+                    upload(next.number, next.chunk);
+                }
+            } finally {
+                inFlight.release();
+            }
+            startBacklog();
+        }
+    }
+
+    /**
+     * A chunk that could not be written.
+     */
+    public static final class Failure {
+        private final int number;
+        private final WriteBatch chunk;
+        private final int attempts;
+        private final Exception cause;
+
+        Failure(int number, WriteBatch chunk, int attempts, Exception cause) {
+            this.number = number;
+            this.chunk = chunk;
+            this.attempts = attempts;
+            this.cause = cause;
+        }
+
+        /**
+         * @return the position of the chunk among the chunks of the build, starting at 1
+         */
+        public int getNumber() {
+            return number;
+        }
+
+        public WriteBatch getChunk() {
+            return chunk;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public Exception getCause() {
+            return cause;
+        }
+    }
+}
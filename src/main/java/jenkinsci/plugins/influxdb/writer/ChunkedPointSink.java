@@ -0,0 +1,400 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import jenkinsci.plugins.influxdb.generators.PointPriority;
+import jenkinsci.plugins.influxdb.generators.PointSink;
+import jenkinsci.plugins.influxdb.generators.TimestampAllocator;
+import jenkinsci.plugins.influxdb.models.Target;
+import org.influxdb.dto.Point;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Encodes points to line protocol as generators emit them and hands the result on in chunks, so
+ * that a build never holds its points as objects, only their line protocol.
+ *
+ * Generators of one build add points concurrently. A chunk is handed on by the thread whose point
+ * filled it, the last one by {@link #close()}. With a {@link #setDispatcher(Executor, int) dispatcher},
+ * the chunks are handed on by a dispatcher thread instead, one at a time and in order, so that the
+ * generators never wait on the network; they only wait while the backlog of chunks is full.
+ * Failures of the handler are kept and thrown by {@link #close()}, which waits for the backlog.
+ *
+ * Points of each {@link PointPriority} are collected in chunks of their own, so that the write path
+ * can shed or delay bulk points without touching the others. The last chunks are handed on in
+ * decreasing priority.
+ *
+ * Points go to one or more {@link #setTargets(List, List) targets}, each checked by the
+ * {@link CardinalityGuard} of its target. A point is encoded once; the targets without a guard, and
+ * those sharing a guard, share their chunks, while the line is copied to the chunks of every other
+ * guard so that each verdict only applies to its own targets. Every chunk is handed on once per
+ * target.
+ */
+public class ChunkedPointSink extends PointSink {
+
+    public static final int DEFAULT_MAX_POINTS = 5000;
+    public static final int DEFAULT_MAX_BYTES = 1024 * 1024;
+
+    // measurements named in the console when they exceed a limit
+    private static final int MAX_REPORTED_MEASUREMENTS = 10;
+
+    private static final PointPriority[] PRIORITIES = PointPriority.values();
+
+    /**
+     * Receives the chunks of a sink.
+     */
+    public interface Handler {
+
+        void handle(WriteBatch chunk) throws InterruptedException;
+    }
+
+    private final String source;
+    private final int maxPoints;
+    private final int maxBytes;
+    private final Handler handler;
+    private List<Route> routes = new ArrayList<>();
+    private Executor dispatcher;
+    private int maxBacklog;
+    private final Runnable dispatchTask = new Runnable() {
+        @Override
+        public void run() {
+            dispatch();
+        }
+    };
+
+    // guarded by this
+    private int totalPoints;
+    private long totalBytes;
+    private int cardinalityWarned;
+    private int cardinalityRejected;
+    private int cardinalityRerouted;
+    private final Set<String> exceededMeasurements = new LinkedHashSet<>();
+    private boolean closed;
+    private RuntimeException failure;
+    private boolean interrupted;
+    private final Deque<WriteBatch> backlog = new ArrayDeque<>();
+    private boolean dispatching;
+
+    public ChunkedPointSink(Target target, String source, Handler handler) {
+        this(target, source, DEFAULT_MAX_POINTS, DEFAULT_MAX_BYTES, handler);
+    }
+
+    public ChunkedPointSink(Target target, String source, int maxPoints, int maxBytes, Handler handler) {
+        this.source = source;
+        this.maxPoints = Math.max(1, maxPoints);
+        this.maxBytes = Math.max(1, maxBytes);
+        this.handler = handler;
+        setTargets(Collections.singletonList(target), Collections.<CardinalityGuard>singletonList(null));
+    }
+
+    /**
+     * Sets the targets to hand the chunks to, instead of the target of the constructor, before the
+     * first point is added. The chunks of the first target are handed on first.
+     *
+     * @param guards the guard of each target, null for a target without limits
+     */
+    public void setTargets(List<Target> targets, List<CardinalityGuard> guards) {
+        List<Route> routes = new ArrayList<>();
+        for (int i = 0; i < targets.size(); i++) {
+            CardinalityGuard guard = guards.get(i);
+            Route route = null;
+            for (Route existing : routes) {
+                if (existing.guard == guard) {
+                    route = existing;
+                    break;
+                }
+            }
+            if (route == null) {
+                route = new Route(guard);
+                routes.add(route);
+            }
+            route.targets.add(targets.get(i));
+        }
+        this.routes = routes;
+    }
+
+    /**
+     * Hands the chunks to the handler on the dispatcher instead of the adding thread. Set before the
+     * first point is added.
+     *
+     * @param maxBacklog chunks that may wait for the handler before adding points waits
+     */
+    public void setDispatcher(Executor dispatcher, int maxBacklog) {
+        this.dispatcher = dispatcher;
+        this.maxBacklog = Math.max(1, maxBacklog);
+    }
+
+    @Override
+    public void add(Point point) {
+        add(point, PointPriority.NORMAL);
+    }
+
+    @Override
+    public void add(Point point, PointPriority priority) {
+        List<WriteBatch> chunks = new ArrayList<>();
+        synchronized (this) {
+            if (closed) {
+                // a generator that ran out of time may still be emitting
+                return;
+            }
+            if (!routes.get(0).encoders[priority.ordinal()].encode(point)) {
+                return;
+            }
+            route(priority, chunks);
+        }
+        handle(chunks);
+    }
+
+    @Override
+    public void addLines(String lines, PointPriority priority) {
+        List<WriteBatch> chunks = new ArrayList<>();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            LineProtocolEncoder encoder = routes.get(0).encoders[priority.ordinal()];
+            int start = 0;
+            while (start < lines.length()) {
+                int end = lines.indexOf('\n', start);
+                if (end < 0) {
+                    end = lines.length();
+                }
+                if (end > start) {
+                    encoder.appendLine(lines, start, end);
+                    route(priority, chunks);
+                }
+                start = end + 1;
+            }
+        }
+        handle(chunks);
+    }
+
+    /**
+     * Hands on the last chunk and rethrows the first failure of the handler.
+     */
+    public void close() throws InterruptedException {
+        List<WriteBatch> chunks = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            for (PointPriority priority : PRIORITIES) {
+                for (Route route : routes) {
+                    drain(route, priority, chunks);
+                }
+            }
+        }
+        handle(chunks);
+        synchronized (this) {
+            try {
+                while (dispatching) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                // the build was aborted, the chunks that wait are dropped
+                backlog.clear();
+                throw e;
+            }
+            if (interrupted) {
+                throw new InterruptedException("Interrupted while publishing points of " + source);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    public synchronized int getPointCount() {
+        return totalPoints;
+    }
+
+    /**
+     * @return characters of line protocol handed on so far
+     */
+    public synchronized long getByteCount() {
+        return totalBytes;
+    }
+
+    public synchronized int getCardinalityWarned() {
+        return cardinalityWarned;
+    }
+
+    public synchronized int getCardinalityRejected() {
+        return cardinalityRejected;
+    }
+
+    public synchronized int getCardinalityRerouted() {
+        return cardinalityRerouted;
+    }
+
+    /**
+     * @return the first measurements that exceeded a limit
+     */
+    public synchronized List<String> getExceededMeasurements() {
+        return new ArrayList<>(exceededMeasurements);
+    }
+
+    // must hold the lock; copies the line just encoded by the first route to the others and checks it
+    private void route(PointPriority priority, List<WriteBatch> chunks) {
+        int lane = priority.ordinal();
+        if (routes.size() > 1) {
+            String line = routes.get(0).encoders[lane].lastLine();
+            for (int i = 1; i < routes.size(); i++) {
+                routes.get(i).encoders[lane].appendLine(line, 0, line.length());
+            }
+        }
+        boolean kept = false;
+        for (Route route : routes) {
+            LineProtocolEncoder encoder = route.encoders[lane];
+            if (!guard(route.guard, encoder)) {
+                continue;
+            }
+            kept = true;
+            route.points[lane]++;
+            // line protocol is almost entirely ASCII, so chars are a close estimate of bytes
+            if (route.points[lane] >= maxPoints || encoder.length() >= maxBytes) {
+                drain(route, priority, chunks);
+            }
+        }
+        if (kept) {
+            totalPoints++;
+        }
+    }
+
+    // must hold the lock; returns false if the last line was rejected
+    private boolean guard(CardinalityGuard guard, LineProtocolEncoder encoder) {
+        if (guard == null) {
+            return true;
+        }
+        String measurement = encoder.lastMeasurement();
+        CardinalityGuard.Verdict verdict = guard.check(measurement, encoder.lastSeriesKey());
+        if (verdict == CardinalityGuard.Verdict.ACCEPT) {
+            return true;
+        }
+        if (exceededMeasurements.size() < MAX_REPORTED_MEASUREMENTS) {
+            exceededMeasurements.add(measurement);
+        }
+        switch (verdict) {
+            case REJECT:
+                encoder.discardLastLine();
+                cardinalityRejected++;
+                return false;
+            case FALLBACK:
+                encoder.moveLastLineTo(CardinalityGuard.FALLBACK_MEASUREMENT, TimestampAllocator.nextTimeNanos());
+                cardinalityRerouted++;
+                return true;
+            default:
+                cardinalityWarned++;
+                return true;
+        }
+    }
+
+    // must hold the lock; adds the chunk of the route to the chunks, once per target
+    private void drain(Route route, PointPriority priority, List<WriteBatch> chunks) {
+        int lane = priority.ordinal();
+        if (route.points[lane] == 0) {
+            return;
+        }
+        LineProtocolEncoder encoder = route.encoders[lane];
+        String payload = encoder.toString();
+        for (Target target : route.targets) {
+            chunks.add(new WriteBatch(target, payload, route.points[lane], source, priority));
+        }
+        totalBytes += encoder.length();
+        // the buffer keeps its capacity, which is bounded by the chunk size
+        encoder.reset();
+        route.points[lane] = 0;
+    }
+
+    private void handle(List<WriteBatch> chunks) {
+        for (WriteBatch chunk : chunks) {
+            handle(chunk);
+        }
+    }
+
+    private void handle(WriteBatch chunk) {
+        if (dispatcher == null) {
+            deliver(chunk);
+            return;
+        }
+        boolean start = false;
+        boolean interruptedWhileWaiting = false;
+        synchronized (this) {
+            try {
+                while (dispatching && backlog.size() >= maxBacklog) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                // e.g. a generator that ran out of time, its chunk is still published
+                interruptedWhileWaiting = true;
+            }
+            backlog.add(chunk);
+            if (!dispatching) {
+                dispatching = true;
+                start = true;
+            }
+        }
+        if (start) {
+            dispatcher.execute(dispatchTask);
+        }
+        if (interruptedWhileWaiting) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void dispatch() {
+        for (;;) {
+            WriteBatch chunk;
+            synchronized (this) {
+                chunk = backlog.poll();
+                if (chunk == null) {
+                    dispatching = false;
+                }
+                // wakes up adders waiting for room and close() waiting for the end
+                notifyAll();
+            }
+            if (chunk == null) {
+                return;
+            }
+            deliver(chunk);
+        }
+    }
+
+    private void deliver(WriteBatch chunk) {
+        try {
+            handler.handle(chunk);
+        } catch (InterruptedException e) {
+            synchronized (this) {
+                interrupted = true;
+            }
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+    }
+
+    /**
+     * The targets that share a guard, or have none, with their chunks.
+     */
+    private static final class Route {
+        private final CardinalityGuard guard;
+        private final List<Target> targets = new ArrayList<>();
+        // indexed by priority
+        private final LineProtocolEncoder[] encoders = new LineProtocolEncoder[PRIORITIES.length];
+        private final int[] points = new int[PRIORITIES.length];
+
+        Route(CardinalityGuard guard) {
+            this.guard = guard;
+            for (int i = 0; i < encoders.length; i++) {
+                encoders[i] = new LineProtocolEncoder();
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import jenkinsci.plugins.influxdb.models.Target;
+import jenkinsci.plugins.influxdb.stats.PluginStatistics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stops writing to an InfluxDB server after consecutive failed writes, so that builds do not all
+ * wait for the timeout of a server that is down or overloaded.
+ *
+ * After {@code failureThreshold} consecutive failures the breaker opens and writes fail at once
+ * with a {@link CircuitOpenException}. Once {@code openMillis} have passed, a single write is let
+ * through as a probe: if it succeeds the breaker closes, otherwise it opens again.
+ *
+ * Only failures of the server count: connection errors, timeouts and server errors. A write the
+ * server rejects, e.g. for a missing database, shows that the server is up.
+ */
+public final class CircuitBreaker {
+
+    /** The logger. **/
+    private static final Logger logger = Logger.getLogger(CircuitBreaker.class.getName());
+
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final int DEFAULT_OPEN_SECONDS = 30;
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private static final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    private static volatile int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+    private static volatile long openMillis = DEFAULT_OPEN_SECONDS * 1000L;
+
+    private final String url;
+
+    // guarded by this
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private long trips;
+
+    CircuitBreaker(String url) {
+        this.url = url;
+    }
+
+    /**
+     * Returns the breaker of the server the target writes to. Targets sharing a server share it,
+     * whatever their databases, as only failures of the whole server count.
+     */
+    public static CircuitBreaker forTarget(Target target) {
+        String key = target.getUrl();
+        CircuitBreaker breaker = breakers.get(key);
+        if (breaker == null) {
+            CircuitBreaker created = new CircuitBreaker(key);
+            breaker = breakers.putIfAbsent(key, created);
+            if (breaker == null) {
+                breaker = created;
+            }
+        }
+        return breaker;
+    }
+
+    public static void configure(int threshold, int openSeconds) {
+        failureThreshold = Math.max(1, threshold);
+        openMillis = Math.max(1, openSeconds) * 1000L;
+    }
+
+    /**
+     * Checks whether a write may be sent. Must be followed by {@link #recordSuccess()} or
+     * {@link #recordFailure()} once the write has been sent, or by {@link #release()} if it was not.
+     *
+     * @throws CircuitOpenException if the breaker is open, or half open with a probe in flight
+     */
+    public void acquire() {
+        synchronized (this) {
+            switch (state) {
+                case CLOSED:
+                    return;
+                case OPEN:
+                    if (System.currentTimeMillis() - openedAt >= openMillis) {
+                        // let this write through as the probe
+                        state = State.HALF_OPEN;
+                        return;
+                    }
+                    break;
+                case HALF_OPEN:
+                default:
+                    break;
+            }
+        }
+        throw new CircuitOpenException(url, getRetryInMillis());
+    }
+
+    public synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            logger.log(Level.INFO, "[InfluxDB Plugin] Writes to {0} succeed again, closing the circuit breaker", url);
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    public void recordFailure() {
+        synchronized (this) {
+            consecutiveFailures++;
+            if (state == State.OPEN || (state == State.CLOSED && consecutiveFailures < failureThreshold)) {
+                return;
+            }
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            trips++;
+        }
+        PluginStatistics.get().recordBreakerTrip();
+        logger.log(Level.WARNING, "[InfluxDB Plugin] Opening the circuit breaker of {0} after {1} consecutive failed writes",
+                new Object[] {url, getConsecutiveFailures()});
+    }
+
+    /**
+     * Gives up a write that was let through but not sent. A probe is let through again at once.
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * @return how often the breaker opened since Jenkins started
+     */
+    public synchronized long getTrips() {
+        return trips;
+    }
+
+    /**
+     * @return milliseconds until the next probe is let through, 0 if the breaker is not open
+     */
+    public synchronized long getRetryInMillis() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, openedAt + openMillis - System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,13 @@
+package jenkinsci.plugins.influxdb.writer;
+
+/**
+ * Thrown instead of sending a write while the {@link CircuitBreaker} of the server is open.
+ */
+public class CircuitOpenException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CircuitOpenException(String url, long retryInMillis) {
+        super("Circuit breaker of " + url + " is open, next attempt in " + (retryInMillis + 999) / 1000 + " s");
+    }
+}
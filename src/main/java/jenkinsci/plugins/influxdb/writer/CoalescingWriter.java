@@ -0,0 +1,310 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import hudson.init.Terminator;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkinsci.plugins.influxdb.generators.PointPriority;
+import jenkinsci.plugins.influxdb.models.Target;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Merges the batches of concurrently finishing builds into one write per target, retention policy
+ * and priority, so that merged batches keep the priority of their points. The merged batch is
+ * handed to the writer's own {@link ChunkUploader} as soon as it reaches the point or size
+ * threshold, or when the flush interval has passed since its first batch arrived. The shared
+ * flusher threads only hand batches over, so a slow target never holds up the other targets.
+ *
+ * The bytes a writer has buffered or is still sending are bounded. Once a slow target lets them
+ * reach the bound, {@link #add(WriteBatch)} refuses further batches, and the builds write them
+ * through their own, bounded path instead. Every batch that is added gets a {@link Ticket}, which
+ * tells its build whether the merged write succeeded.
+ */
+public final class CoalescingWriter {
+
+    /** The logger. **/
+    private static final Logger logger = Logger.getLogger(CoalescingWriter.class.getName());
+
+    public static final int DEFAULT_MAX_POINTS = 5000;
+    public static final int DEFAULT_MAX_BYTES = 1024 * 1024;
+    public static final int DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+
+    // merged batches a writer may have buffered or in flight before it refuses batches
+    private static final int MAX_PENDING_FLUSHES = 4;
+    // one write at a time per writer keeps the merged batches of a target in order
+    private static final int MAX_IN_FLIGHT = 1;
+    // a failed merged write is spooled right away rather than holding up the builds in it
+    private static final RetryPolicy SINGLE_ATTEMPT = new RetryPolicy(1, 1, 1);
+
+    private static final ScheduledExecutorService flusher = Executors.newScheduledThreadPool(2,
+            new NamingThreadFactory(new DaemonThreadFactory(), "InfluxDB coalescing writer"));
+    private static final ConcurrentMap<String, CoalescingWriter> writers = new ConcurrentHashMap<>();
+    private static final BatchWriter batchWriter = new BatchWriter();
+
+    private static volatile int maxPoints = DEFAULT_MAX_POINTS;
+    private static volatile int maxBytes = DEFAULT_MAX_BYTES;
+    private static volatile int flushIntervalMillis = DEFAULT_FLUSH_INTERVAL_MILLIS;
+
+    private final ChunkUploader uploader;
+    private final ScheduledExecutorService executor;
+    private final String database;
+    private final String retentionPolicy;
+    private final PointPriority priority;
+    // the merged batches handed to the uploader, by identity
+    private final ConcurrentMap<WriteBatch, Flush> sending = new ConcurrentHashMap<>();
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            Flush ready;
+            synchronized (CoalescingWriter.this) {
+                scheduledFlush = null;
+                ready = drain();
+            }
+            send(ready);
+        }
+    };
+
+    // guarded by this
+    private final StringBuilder buffer = new StringBuilder();
+    private final List<Ticket> tickets = new ArrayList<>();
+    private Target target;
+    private int points;
+    private ScheduledFuture<?> scheduledFlush;
+    // chars buffered or drained but not yet written
+    private long pendingChars;
+
+    CoalescingWriter(BatchWriter writer, ScheduledExecutorService executor, String database, String retentionPolicy,
+                     PointPriority priority) {
+        this.uploader = new ChunkUploader(writer, MAX_IN_FLIGHT, SINGLE_ATTEMPT, new ChunkUploader.Listener() {
+            @Override
+            public void written(WriteBatch chunk, WriteResult result) {
+                complete(sending.remove(chunk), null, result);
+            }
+
+            @Override
+            public void failed(ChunkUploader.Failure failure) {
+                complete(sending.remove(failure.getChunk()), failure.getCause(), null);
+            }
+        });
+        this.executor = executor;
+        this.database = database;
+        this.retentionPolicy = retentionPolicy;
+        this.priority = priority;
+    }
+
+    /**
+     * Returns the coalescing writer of the batch's target, database, retention policy and priority.
+     */
+    public static CoalescingWriter forBatch(WriteBatch batch) {
+        Target target = batch.getTarget();
+        String key = target.getDescription() + '|' + target.getUrl() + '|' + batch.getDatabase() + '|' + batch.getRetentionPolicy()
+                + '|' + batch.getPriority();
+        CoalescingWriter coalescingWriter = writers.get(key);
+        if (coalescingWriter == null) {
+            CoalescingWriter created = new CoalescingWriter(batchWriter, flusher, batch.getDatabase(), batch.getRetentionPolicy(),
+                    batch.getPriority());
+            coalescingWriter = writers.putIfAbsent(key, created);
+            if (coalescingWriter == null) {
+                coalescingWriter = created;
+            }
+        }
+        return coalescingWriter;
+    }
+
+    public static void configure(int points, int bytes, int intervalMillis) {
+        maxPoints = Math.max(1, points);
+        maxBytes = Math.max(1, bytes);
+        flushIntervalMillis = Math.max(1, intervalMillis);
+    }
+
+    /**
+     * Adds the batch to the pending write. Never blocks on InfluxDB.
+     *
+     * @return the ticket of the batch, or null if the writer has too much pending and the caller
+     *         has to write the batch itself
+     */
+    public Ticket add(WriteBatch batch) {
+        Flush ready = null;
+        Ticket ticket = new Ticket(batch);
+        synchronized (this) {
+            int chars = batch.getPayload().length();
+            if (pendingChars > 0 && pendingChars + chars > (long) maxBytes * MAX_PENDING_FLUSHES) {
+                return null;
+            }
+            pendingChars += chars;
+            target = batch.getTarget();
+            buffer.append(batch.getPayload());
+            points += batch.getPointCount();
+            tickets.add(ticket);
+            // line protocol is almost entirely ASCII, so chars are a close estimate of bytes
+            if (points >= maxPoints || buffer.length() >= maxBytes) {
+                ready = drain();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = executor.schedule(flushTask, flushIntervalMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        send(ready);
+        return ticket;
+    }
+
+    /**
+     * Hands whatever is pending to the uploader and waits until every merged batch was written or failed.
+     */
+    public void flush() throws InterruptedException {
+        Flush ready;
+        synchronized (this) {
+            ready = drain();
+        }
+        send(ready);
+        uploader.await();
+    }
+
+    @Terminator
+    public static void shutdown() throws InterruptedException {
+        for (CoalescingWriter coalescingWriter : writers.values()) {
+            coalescingWriter.flush();
+        }
+        flusher.shutdown();
+    }
+
+    // must hold the lock
+    private Flush drain() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        if (points == 0) {
+            return null;
+        }
+        WriteBatch merged = new WriteBatch(target, database, retentionPolicy, buffer.toString(), points,
+                tickets.size() + " coalesced batches", priority);
+        Flush flush = new Flush(merged, new ArrayList<>(tickets));
+        buffer.setLength(0);
+        points = 0;
+        tickets.clear();
+        return flush;
+    }
+
+    // never waits, the uploader writes the merged batch on a thread of its own
+    private void send(Flush flush) {
+        if (flush == null) {
+            return;
+        }
+        sending.put(flush.batch, flush);
+        uploader.offer(flush.batch);
+    }
+
+    private void complete(Flush flush, Exception failure, WriteResult result) {
+        WriteBatch merged = flush.batch;
+        boolean spooled = false;
+        if (failure != null) {
+            spooled = !(failure instanceof WriteRejectedException) && PointSpool.spoolIfEnabled(merged);
+            if (!spooled) {
+                logger.log(Level.WARNING, "[InfluxDB Plugin] Could not write " + merged.getPointCount() + " points from "
+                        + merged.getSource() + " to " + merged.getTarget().getDescription(), failure);
+            }
+        }
+        synchronized (this) {
+            pendingChars -= merged.getPayload().length();
+        }
+        for (Ticket ticket : flush.tickets) {
+            ticket.complete(failure, spooled, result, merged.getPayload().length());
+        }
+    }
+
+    /**
+     * A merged batch and the tickets of the batches it contains.
+     */
+    private static final class Flush {
+        private final WriteBatch batch;
+        private final List<Ticket> tickets;
+
+        Flush(WriteBatch batch, List<Ticket> tickets) {
+            this.batch = batch;
+            this.tickets = tickets;
+        }
+    }
+
+    /**
+     * The outcome of a batch that was added, known once the merged batch containing it was written.
+     */
+    public static final class Ticket {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final int pointCount;
+        private final PointPriority priority;
+        private final int chars;
+        private volatile Exception failure;
+        private volatile boolean spooled;
+        private volatile WriteResult result;
+
+        Ticket(WriteBatch batch) {
+            this.pointCount = batch.getPointCount();
+            this.priority = batch.getPriority();
+            this.chars = batch.getPayload().length();
+        }
+
+        void complete(Exception failure, boolean spooled, WriteResult merged, int mergedChars) {
+            this.failure = failure;
+            this.spooled = spooled;
+            if (merged != null) {
+                // the batch's share of the merged body, in proportion to its line protocol
+                this.result = new WriteResult(chars, merged.isCompressed()
+                        ? merged.getCompressedBytes() * chars / Math.max(1, mergedChars) : -1);
+            }
+            done.countDown();
+        }
+
+        /**
+         * Waits until the merged batch containing the batch has been written or has failed.
+         */
+        public void await() throws InterruptedException {
+            done.await();
+        }
+
+        /**
+         * @return true if the merged batch containing the batch has been written or has failed
+         */
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        public int getPointCount() {
+            return pointCount;
+        }
+
+        public PointPriority getPriority() {
+            return priority;
+        }
+
+        /**
+         * @return the failure of the merged write, or null if it succeeded
+         */
+        public Exception getFailure() {
+            return failure;
+        }
+
+        /**
+         * @return the share of the batch in the successful merged write, or null if it failed
+         */
+        public WriteResult getResult() {
+            return result;
+        }
+
+        /**
+         * @return true if the merged write failed and its points were spooled
+         */
+        public boolean isSpooled() {
+            return spooled;
+        }
+    }
+}
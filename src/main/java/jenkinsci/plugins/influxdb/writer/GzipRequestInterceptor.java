@@ -0,0 +1,84 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compresses the body of write requests with gzip once it reaches a threshold, so that small
+ * batches are not slowed down by compression.
+ *
+ * Synchronous calls run interceptors on the calling thread, so {@link BatchWriter} picks up the
+ * sizes of the body it just sent right after its write returns, and hands them on with the
+ * {@link WriteResult} of the write.
+ */
+public final class GzipRequestInterceptor implements Interceptor {
+
+    /** The logger. **/
+    private static final Logger logger = Logger.getLogger(GzipRequestInterceptor.class.getName());
+
+    private static final ThreadLocal<WriteResult> lastCompression = new ThreadLocal<>();
+
+    private final long thresholdBytes;
+
+    public GzipRequestInterceptor(long thresholdBytes) {
+        this.thresholdBytes = thresholdBytes;
+    }
+
+    /**
+     * Returns and clears the sizes of the last write this thread compressed.
+     *
+     * @return null if the last write of this thread was not compressed
+     */
+    static WriteResult takeLastCompression() {
+        WriteResult compression = lastCompression.get();
+        lastCompression.remove();
+        return compression;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        lastCompression.remove();
+        Request request = chain.request();
+        RequestBody body = request.body();
+        if (body == null || request.header("Content-Encoding") != null
+                || !request.url().encodedPath().endsWith("/write")) {
+            return chain.proceed(request);
+        }
+        long length = body.contentLength();
+        if (length >= 0 && length < thresholdBytes) {
+            return chain.proceed(request);
+        }
+
+        Buffer raw = new Buffer();
+        body.writeTo(raw);
+        long rawBytes = raw.size();
+        if (rawBytes < thresholdBytes) {
+            return chain.proceed(request.newBuilder()
+                    .method(request.method(), RequestBody.create(body.contentType(), raw.readByteString()))
+                    .build());
+        }
+        Buffer compressed = new Buffer();
+        BufferedSink gzip = Okio.buffer(new GzipSink(compressed));
+        gzip.writeAll(raw);
+        gzip.close();
+        long compressedBytes = compressed.size();
+
+        lastCompression.set(new WriteResult(rawBytes, compressedBytes));
+        logger.log(Level.FINE, "Compressed write to {0} from {1} to {2} bytes",
+                new Object[] {request.url().host(), rawBytes, compressedBytes});
+        return chain.proceed(request.newBuilder()
+                .header("Content-Encoding", "gzip")
+                .method(request.method(), RequestBody.create(body.contentType(), compressed.readByteString()))
+                .build());
+    }
+}
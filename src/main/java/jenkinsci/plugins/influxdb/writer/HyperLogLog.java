@@ -0,0 +1,80 @@
+package jenkinsci.plugins.influxdb.writer;
+
+/**
+ * A HyperLogLog sketch estimating the number of distinct strings offered to it, in 2^precision
+ * bytes of registers and with a standard error of about 1.04 / sqrt(2^precision).
+ *
+ * Not thread-safe.
+ */
+final class HyperLogLog {
+
+    private final int precision;
+    private final byte[] registers;
+    private long estimate;
+    private boolean stale;
+
+    HyperLogLog(int precision) {
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * @return true if the estimate may have changed
+     */
+    boolean offer(String value) {
+        long hash = hash(value);
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        // the guard bit caps the rank at the number of remaining hash bits
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+            stale = true;
+            return true;
+        }
+        return false;
+    }
+
+    long estimate() {
+        if (stale) {
+            estimate = computeEstimate();
+            stale = false;
+        }
+        return estimate;
+    }
+
+    private long computeEstimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double raw = alpha * m * m / sum;
+        if (raw <= 2.5 * m && zeros > 0) {
+            // linear counting is more accurate for small cardinalities
+            return Math.round(m * Math.log((double) m / zeros));
+        }
+        return Math.round(raw);
+    }
+
+    /**
+     * 64 bit FNV-1a, followed by the MurmurHash3 finalizer to spread the bits.
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
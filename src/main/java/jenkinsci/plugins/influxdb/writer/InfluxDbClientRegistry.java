@@ -0,0 +1,228 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import com.google.common.base.Strings;
+import hudson.Extension;
+import hudson.init.Terminator;
+import hudson.model.PeriodicWork;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkinsci.plugins.influxdb.models.Target;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.influxdb.InfluxDB;
+import org.influxdb.InfluxDBFactory;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps one long-lived InfluxDB client per target connection (url, credentials and compression), so that
+ * builds share keep-alive connections instead of creating a new OkHttp client on every publish.
+ *
+ * Clients are dropped when the global configuration changes their target, when they have been
+ * idle for {@link #IDLE_TIMEOUT_MILLIS}, and when Jenkins shuts down.
+ */
+public final class InfluxDbClientRegistry {
+
+    /** The logger. **/
+    private static final Logger logger = Logger.getLogger(InfluxDbClientRegistry.class.getName());
+
+    static final long IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(
+            Long.getLong(InfluxDbClientRegistry.class.getName() + ".idleTimeoutMinutes", 30));
+
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final long CONNECT_TIMEOUT_SECONDS = 10;
+    private static final long READ_WRITE_TIMEOUT_SECONDS = 30;
+
+    private static final InfluxDbClientRegistry INSTANCE = new InfluxDbClientRegistry();
+
+    private final ConcurrentMap<ClientKey, ClientEntry> clients = new ConcurrentHashMap<>();
+
+    InfluxDbClientRegistry() {
+    }
+
+    public static InfluxDbClientRegistry get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the shared client for the given target, connecting on first use.
+     */
+    public InfluxDB getClient(Target target) {
+        ClientKey key = new ClientKey(target);
+        for (;;) {
+            ClientEntry entry = clients.get(key);
+            if (entry == null) {
+                synchronized (this) {
+                    entry = clients.get(key);
+                    if (entry == null) {
+                        entry = new ClientEntry(target);
+                        clients.put(key, entry);
+                    }
+                }
+            }
+            synchronized (entry) {
+                if (!entry.closed) {
+                    entry.lastUsed = System.currentTimeMillis();
+                    return entry.influxDB;
+                }
+            }
+            // evicted since the lookup, and removed from the map before it was closed
+        }
+    }
+
+    /**
+     * Closes every client whose connection settings no longer match one of the given targets.
+     * Called when the global configuration is saved.
+     */
+    public void retainOnly(Target[] targets) {
+        Set<ClientKey> keep = new HashSet<>();
+        for (Target target : targets) {
+            keep.add(new ClientKey(target));
+        }
+        for (Map.Entry<ClientKey, ClientEntry> entry : clients.entrySet()) {
+            if (!keep.contains(entry.getKey())) {
+                remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Closes every client that has not been used within the given time.
+     */
+    void evictIdle(long idleMillis) {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<ClientKey, ClientEntry> entry : clients.entrySet()) {
+            ClientEntry client = entry.getValue();
+            // under the lock getClient refreshes lastUsed with, so a client in use is never evicted
+            synchronized (client) {
+                if (now - client.lastUsed > idleMillis) {
+                    remove(entry.getKey(), client);
+                }
+            }
+        }
+    }
+
+    public void closeAll() {
+        evictIdle(-1);
+    }
+
+    int size() {
+        return clients.size();
+    }
+
+    // removes the client from the map before closing it, a lookup that still found it looks up again
+    private void remove(ClientKey key, ClientEntry entry) {
+        synchronized (entry) {
+            if (clients.remove(key, entry)) {
+                entry.close();
+            }
+        }
+    }
+
+    @Terminator
+    public static void shutdown() {
+        INSTANCE.closeAll();
+    }
+
+    private static final class ClientKey {
+        private final String url;
+        private final String username;
+        private final String password;
+        private final int gzipThreshold;
+
+        ClientKey(Target target) {
+            this.url = target.getUrl();
+            this.username = Strings.emptyToNull(target.getUsername());
+            this.password = Strings.emptyToNull(target.getPassword());
+            this.gzipThreshold = target.isGzipWrites() ? target.getGzipThreshold() : -1;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ClientKey)) {
+                return false;
+            }
+            ClientKey other = (ClientKey) o;
+            return Objects.equals(url, other.url)
+                    && Objects.equals(username, other.username)
+                    && Objects.equals(password, other.password)
+                    && gzipThreshold == other.gzipThreshold;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(url, username, password, gzipThreshold);
+        }
+    }
+
+    private static final class ClientEntry {
+        private final String url;
+        private final ConnectionPool connectionPool;
+        private final Dispatcher dispatcher;
+        private final InfluxDB influxDB;
+        // guarded by this
+        private long lastUsed;
+        private boolean closed;
+
+        ClientEntry(Target target) {
+            this.url = target.getUrl();
+            this.connectionPool = new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES);
+            this.dispatcher = new Dispatcher(Executors.newCachedThreadPool(
+                    new NamingThreadFactory(new DaemonThreadFactory(), "InfluxDB client " + url)));
+            OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                    .connectionPool(connectionPool)
+                    .dispatcher(dispatcher)
+                    .connectTimeout(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                    .readTimeout(READ_WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                    .writeTimeout(READ_WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                    .addInterceptor(new ResponseStatusInterceptor());
+            if (target.isGzipWrites()) {
+                builder.addInterceptor(new GzipRequestInterceptor(target.getGzipThreshold()));
+            }
+            this.influxDB = Strings.isNullOrEmpty(target.getUsername())
+                    ? InfluxDBFactory.connect(url, builder)
+                    : InfluxDBFactory.connect(url, target.getUsername(), target.getPassword(), builder);
+            this.lastUsed = System.currentTimeMillis();
+            logger.log(Level.FINE, "Created InfluxDB client for {0}", url);
+        }
+
+        void close() {
+            closed = true;
+            // in-flight synchronous writes keep their connection; only idle ones are evicted
+            connectionPool.evictAll();
+            dispatcher.executorService().shutdown();
+            logger.log(Level.FINE, "Closed InfluxDB client for {0}", url);
+        }
+    }
+
+    /**
+     * Closes clients that have been idle for longer than {@link #IDLE_TIMEOUT_MILLIS}.
+     */
+    @Extension
+    public static final class IdleClientEviction extends PeriodicWork {
+
+        @Override
+        public long getRecurrencePeriod() {
+            return MIN * 5;
+        }
+
+        @Override
+        protected void doRun() {
+            get().evictIdle(IDLE_TIMEOUT_MILLIS);
+        }
+    }
+}
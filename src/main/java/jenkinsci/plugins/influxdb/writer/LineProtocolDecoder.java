@@ -0,0 +1,125 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import org.influxdb.dto.Point;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads lines of InfluxDB line protocol back into {@link Point}s, for sinks that take points
+ * rather than encoded lines. Reads what {@link LineProtocolEncoder} writes: escaped measurements,
+ * tags and field keys, quoted strings, integers with the i suffix, floats, booleans and an
+ * optional timestamp in nanoseconds. Escaped newlines are kept as written, like InfluxDB does.
+ */
+public final class LineProtocolDecoder {
+
+    private final String line;
+    private int position;
+
+    private LineProtocolDecoder(String line) {
+        this.line = line;
+    }
+
+    /**
+     * @param line one line of line protocol, without its newline
+     * @throws IllegalArgumentException if the line is not valid line protocol
+     */
+    public static Point decode(String line) {
+        return new LineProtocolDecoder(line).point();
+    }
+
+    private Point point() {
+        Point.Builder builder = Point.measurement(name(", "));
+        while (skip(',')) {
+            String key = name("=");
+            expect('=');
+            builder.tag(key, name(", "));
+        }
+        expect(' ');
+        do {
+            String key = name("=");
+            expect('=');
+            field(builder, key);
+        } while (skip(','));
+        if (skip(' ')) {
+            try {
+                builder.time(Long.parseLong(line.substring(position)), TimeUnit.NANOSECONDS);
+            } catch (NumberFormatException e) {
+                throw invalid("timestamp");
+            }
+            position = line.length();
+        }
+        if (position != line.length()) {
+            throw invalid("end of line");
+        }
+        return builder.build();
+    }
+
+    private void field(Point.Builder builder, String key) {
+        if (skip('"')) {
+            StringBuilder value = new StringBuilder();
+            while (position < line.length() && line.charAt(position) != '"') {
+                char c = line.charAt(position++);
+                if (c == '\\' && position < line.length()
+                        && (line.charAt(position) == '"' || line.charAt(position) == '\\')) {
+                    c = line.charAt(position++);
+                }
+                value.append(c);
+            }
+            expect('"');
+            builder.addField(key, value.toString());
+            return;
+        }
+        int start = position;
+        while (position < line.length() && line.charAt(position) != ',' && line.charAt(position) != ' ') {
+            position++;
+        }
+        String value = line.substring(start, position);
+        try {
+            if (value.endsWith("i")) {
+                builder.addField(key, Long.parseLong(value.substring(0, value.length() - 1)));
+            } else if (value.equals("t") || value.equals("T") || value.equalsIgnoreCase("true")) {
+                builder.addField(key, true);
+            } else if (value.equals("f") || value.equals("F") || value.equalsIgnoreCase("false")) {
+                builder.addField(key, false);
+            } else {
+                builder.addField(key, Double.parseDouble(value));
+            }
+        } catch (NumberFormatException e) {
+            throw invalid("value of " + key);
+        }
+    }
+
+    // reads up to the first unescaped stop char, unescaping the chars the encoder escapes
+    private String name(String stops) {
+        StringBuilder name = new StringBuilder();
+        while (position < line.length() && stops.indexOf(line.charAt(position)) < 0) {
+            char c = line.charAt(position++);
+            if (c == '\\' && position < line.length() && " ,=".indexOf(line.charAt(position)) >= 0) {
+                c = line.charAt(position++);
+            }
+            name.append(c);
+        }
+        if (name.length() == 0) {
+            throw invalid("name");
+        }
+        return name.toString();
+    }
+
+    private boolean skip(char c) {
+        if (position < line.length() && line.charAt(position) == c) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        if (!skip(c)) {
+            throw invalid("'" + c + "'");
+        }
+    }
+
+    private IllegalArgumentException invalid(String expected) {
+        return new IllegalArgumentException("Expected " + expected + " at " + position + " of line protocol: " + line);
+    }
+}
@@ -0,0 +1,322 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import org.influxdb.dto.Point;
+
+import java.math.BigDecimal;
+
+/**
+ * Writes InfluxDB line protocol straight into a reusable, growable char buffer.
+ *
+ * Lines are written field by field, with primitive overloads so that values are never boxed.
+ * Generators with many points write them this way; the few points that are still built as
+ * {@link Point}s are copied through {@link Point#lineProtocol()}.
+ *
+ * Lines are framed by newlines alone, so newlines and carriage returns within names, tags and
+ * string values are escaped as {@code \n} and {@code \r}, which InfluxDB stores as written.
+ *
+ * Not thread-safe.
+ */
+public class LineProtocolEncoder {
+
+    // plain decimal notation of StringBuilder.append(double) covers this range
+    private static final double MIN_PLAIN_DOUBLE = 1e-3;
+    private static final double MAX_PLAIN_DOUBLE = 1e7;
+
+    private final StringBuilder buffer;
+    private int lineStart;
+    private int fieldCount;
+
+    public LineProtocolEncoder() {
+        this(1024);
+    }
+
+    public LineProtocolEncoder(int initialCapacity) {
+        buffer = new StringBuilder(initialCapacity);
+    }
+
+    /**
+     * Starts a new line.
+     */
+    public LineProtocolEncoder measurement(String measurement) {
+        lineStart = buffer.length();
+        fieldCount = 0;
+        escape(measurement, false);
+        return this;
+    }
+
+    /**
+     * Adds a tag. Must be called before the first field; tags without a value are skipped.
+     */
+    public LineProtocolEncoder tag(String key, String value) {
+        if (value == null || value.isEmpty()) {
+            return this;
+        }
+        buffer.append(',');
+        escape(key, true);
+        buffer.append('=');
+        escape(value, true);
+        return this;
+    }
+
+    public LineProtocolEncoder field(String key, long value) {
+        fieldKey(key);
+        buffer.append(value).append('i');
+        return this;
+    }
+
+    public LineProtocolEncoder field(String key, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            // not representable in line protocol
+            return this;
+        }
+        fieldKey(key);
+        appendDouble(value);
+        return this;
+    }
+
+    public LineProtocolEncoder field(String key, boolean value) {
+        fieldKey(key);
+        buffer.append(value);
+        return this;
+    }
+
+    public LineProtocolEncoder field(String key, String value) {
+        if (value == null) {
+            return this;
+        }
+        fieldKey(key);
+        buffer.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                buffer.append('\\');
+            }
+            appendChar(c);
+        }
+        buffer.append('"');
+        return this;
+    }
+
+    /**
+     * Ends the line without a timestamp, InfluxDB uses the time the line is written.
+     *
+     * @return false if the line had no fields and was discarded
+     */
+    public boolean endLine() {
+        if (fieldCount == 0) {
+            buffer.setLength(lineStart);
+            return false;
+        }
+        buffer.append('\n');
+        return true;
+    }
+
+    /**
+     * Ends the line with a timestamp.
+     *
+     * @return false if the line had no fields and was discarded
+     */
+    public boolean endLine(long timeNanos) {
+        if (fieldCount == 0) {
+            buffer.setLength(lineStart);
+            return false;
+        }
+        buffer.append(' ').append(timeNanos).append('\n');
+        return true;
+    }
+
+    /**
+     * Appends the point as one line.
+     *
+     * @return true, a point always has a field
+     */
+    public boolean encode(Point point) {
+        lineStart = buffer.length();
+        fieldCount = 0;
+        // Point writes newlines within tags and strings as they are
+        String line = point.lineProtocol();
+        for (int i = 0; i < line.length(); i++) {
+            appendChar(line.charAt(i));
+        }
+        buffer.append('\n');
+        return true;
+    }
+
+    /**
+     * Appends a line that is already encoded.
+     *
+     * @param line  line protocol
+     * @param start index of the first char of the line
+     * @param end   index after the last char of the line, without its newline
+     */
+    public void appendLine(CharSequence line, int start, int end) {
+        lineStart = buffer.length();
+        fieldCount = 0;
+        buffer.append(line, start, end).append('\n');
+    }
+
+    /**
+     * @return the escaped measurement of the last line
+     */
+    public String lastMeasurement() {
+        return buffer.substring(lineStart, unescaped(lineStart, true));
+    }
+
+    /**
+     * @return the escaped measurement and tags of the last line, which identify its series
+     */
+    public String lastSeriesKey() {
+        return buffer.substring(lineStart, unescaped(lineStart, false));
+    }
+
+    /**
+     * @return the last line, without its newline
+     */
+    public String lastLine() {
+        return buffer.substring(lineStart, buffer.length() - 1);
+    }
+
+    /**
+     * Removes the last line.
+     */
+    public void discardLastLine() {
+        buffer.setLength(lineStart);
+    }
+
+    /**
+     * Moves the last line to another measurement without tags. Its series key is kept in the
+     * original_series field and its fields are prefixed with its measurement, so that the lines of
+     * different measurements neither conflict in the types of their fields nor overwrite each other.
+     *
+     * @param timeNanos the time of the line if it has none, as the lines of a series overwrite
+     *                  each other when InfluxDB gives them the same time
+     */
+    public void moveLastLineTo(String measurement, long timeNanos) {
+        String prefix = unescape(buffer, lineStart, unescaped(lineStart, true)) + '.';
+        int keyEnd = unescaped(lineStart, false);
+        String seriesKey = buffer.substring(lineStart, keyEnd);
+        // fields and timestamp, without the newline
+        String rest = buffer.substring(keyEnd + 1, buffer.length() - 1);
+        buffer.setLength(lineStart);
+        escape(measurement, false);
+        fieldCount = 0;
+        field("original_series", seriesKey);
+        String time = null;
+        int fieldStart = 0;
+        while (fieldStart < rest.length()) {
+            int valueStart = fieldStart;
+            while (valueStart < rest.length() && rest.charAt(valueStart) != '=') {
+                valueStart += rest.charAt(valueStart) == '\\' ? 2 : 1;
+            }
+            int valueEnd = Math.min(valueStart + 1, rest.length());
+            if (valueEnd < rest.length() && rest.charAt(valueEnd) == '"') {
+                valueEnd++;
+                while (valueEnd < rest.length() && rest.charAt(valueEnd) != '"') {
+                    valueEnd += rest.charAt(valueEnd) == '\\' ? 2 : 1;
+                }
+                valueEnd = Math.min(valueEnd + 1, rest.length());
+            } else {
+                while (valueEnd < rest.length() && rest.charAt(valueEnd) != ',' && rest.charAt(valueEnd) != ' ') {
+                    valueEnd++;
+                }
+            }
+            fieldKey(prefix + unescape(rest, fieldStart, Math.min(valueStart, rest.length())));
+            buffer.append(rest, Math.min(valueStart + 1, valueEnd), valueEnd);
+            if (valueEnd < rest.length() && rest.charAt(valueEnd) == ' ') {
+                time = rest.substring(valueEnd + 1);
+                break;
+            }
+            fieldStart = valueEnd + 1;
+        }
+        buffer.append(' ').append(time != null ? time : String.valueOf(timeNanos)).append('\n');
+    }
+
+    public int length() {
+        return buffer.length();
+    }
+
+    /**
+     * Returns the lines written since the last reset.
+     */
+    @Override
+    public String toString() {
+        return buffer.toString();
+    }
+
+    /**
+     * Empties the buffer, keeping its capacity for the next lines.
+     */
+    public void reset() {
+        buffer.setLength(0);
+        lineStart = 0;
+        fieldCount = 0;
+    }
+
+    // index of the first unescaped space, or comma if requested, after start
+    private int unescaped(int start, boolean orComma) {
+        for (int i = start; i < buffer.length(); i++) {
+            char c = buffer.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == ' ' || (orComma && c == ',')) {
+                return i;
+            }
+        }
+        return buffer.length();
+    }
+
+    private void fieldKey(String key) {
+        buffer.append(fieldCount == 0 ? ' ' : ',');
+        escape(key, true);
+        buffer.append('=');
+        fieldCount++;
+    }
+
+    private void appendDouble(double value) {
+        double abs = Math.abs(value);
+        if (abs == 0 || (abs >= MIN_PLAIN_DOUBLE && abs < MAX_PLAIN_DOUBLE)) {
+            buffer.append(value);
+        } else {
+            // avoid the exponent notation of Double.toString
+            buffer.append(BigDecimal.valueOf(value).toPlainString());
+        }
+    }
+
+    // the inverse of escape, backslashes before other chars are kept
+    private static String unescape(CharSequence escaped, int start, int end) {
+        StringBuilder value = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = escaped.charAt(i);
+            if (c == '\\' && i + 1 < end) {
+                char next = escaped.charAt(i + 1);
+                if (next == ' ' || next == ',' || next == '=') {
+                    c = next;
+                    i++;
+                }
+            }
+            value.append(c);
+        }
+        return value.toString();
+    }
+
+    private void escape(String value, boolean escapeEquals) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ' ' || c == ',' || (escapeEquals && c == '=')) {
+                buffer.append('\\');
+            }
+            appendChar(c);
+        }
+    }
+
+    // a newline within a line would end it
+    private void appendChar(char c) {
+        if (c == '\n') {
+            buffer.append("\\n");
+        } else if (c == '\r') {
+            buffer.append("\\r");
+        } else {
+            buffer.append(c);
+        }
+    }
+}
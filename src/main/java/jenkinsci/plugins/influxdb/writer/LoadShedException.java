@@ -0,0 +1,13 @@
+package jenkinsci.plugins.influxdb.writer;
+
+/**
+ * Recorded instead of writing a bulk chunk while its target struggles.
+ */
+public class LoadShedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public LoadShedException(String message) {
+        super(message);
+    }
+}
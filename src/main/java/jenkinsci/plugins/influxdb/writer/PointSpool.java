@@ -0,0 +1,534 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+import jenkins.model.Jenkins;
+import jenkinsci.plugins.influxdb.InfluxDbPublisher;
+import jenkinsci.plugins.influxdb.models.Target;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Durable, append-only spool of batches that could not be written to a target.
+ *
+ * Batches are appended as length and CRC framed records to segment files under
+ * {@code JENKINS_HOME/influxdb-spool/<url and database>/}, so that renaming a target keeps its
+ * spool. Segments are rotated at a fixed size, replayed oldest first once the target accepts writes
+ * again and deleted as soon as they are fully replayed. The replay position is kept in a small
+ * checkpoint file, so on restart only the last segment has to be scanned for a torn record. The
+ * checkpoint is written every few records rather than after each one; after a crash at most those
+ * records are replayed a second time.
+ */
+public final class PointSpool {
+
+    /** The logger. **/
+    private static final Logger logger = Logger.getLogger(PointSpool.class.getName());
+
+    public static final long DEFAULT_MAX_TOTAL_BYTES = 256L * 1024 * 1024;
+    static final long DEFAULT_SEGMENT_BYTES = 8L * 1024 * 1024;
+
+    private static final String SPOOL_DIRECTORY = "influxdb-spool";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".lp";
+    private static final String CHECKPOINT = "checkpoint";
+    private static final int HEADER_BYTES = 8;
+    // starts the point count line of a record body, a comment to line protocol
+    private static final char POINT_COUNT_MARK = '#';
+    // replayed records per checkpoint write
+    private static final int CHECKPOINT_INTERVAL = 64;
+
+    private static final ConcurrentMap<String, PointSpool> spools = new ConcurrentHashMap<>();
+    private static volatile long maxTotalBytes = DEFAULT_MAX_TOTAL_BYTES;
+
+    private final File directory;
+    private final long maxSegmentBytes;
+    private final AtomicBoolean replaying = new AtomicBoolean();
+
+    // guarded by this
+    private final TreeMap<Long, File> segments = new TreeMap<>();
+    private long totalBytes;
+    private FileChannel writeChannel;
+    private long writeSequence;
+    private long writeSize;
+    private FileChannel readChannel;
+    private long readSequence;
+    private long readOffset;
+    private int uncheckpointed;
+
+    PointSpool(File directory, long maxSegmentBytes) throws IOException {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        recover();
+    }
+
+    /**
+     * Returns the spool of the given target, recovering it from disk on first use.
+     */
+    public static PointSpool forTarget(Target target) throws IOException {
+        String name = directoryName(target);
+        PointSpool spool = spools.get(name);
+        if (spool == null) {
+            synchronized (spools) {
+                spool = spools.get(name);
+                if (spool == null) {
+                    File root = new File(Jenkins.getActiveInstance().getRootDir(), SPOOL_DIRECTORY);
+                    File directory = new File(root, name);
+                    migrate(new File(root, legacyDirectoryName(target.getDescription())), directory);
+                    spool = new PointSpool(directory, DEFAULT_SEGMENT_BYTES);
+                    spools.put(name, spool);
+                }
+            }
+        }
+        return spool;
+    }
+
+    /**
+     * Appends the batch to the spool of its target if the target has spooling enabled.
+     *
+     * @return true if the batch is now safely on disk
+     */
+    public static boolean spoolIfEnabled(WriteBatch batch) {
+        if (!batch.getTarget().isSpoolWrites()) {
+            return false;
+        }
+        try {
+            forTarget(batch.getTarget()).append(batch);
+            return true;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "[InfluxDB Plugin] Could not spool " + batch.getPointCount() + " points from "
+                    + batch.getSource(), e);
+            return false;
+        }
+    }
+
+    public static void setMaxTotalBytes(long bytes) {
+        maxTotalBytes = bytes;
+    }
+
+    /**
+     * Durably appends a batch, rotating the current segment if it is full and dropping the oldest
+     * segments if the spool grows beyond its size cap.
+     */
+    public synchronized void append(WriteBatch batch) throws IOException {
+        byte[] record = encode(batch);
+        long recordBytes = HEADER_BYTES + record.length;
+        if (writeChannel != null && writeSize > 0 && writeSize + recordBytes > maxSegmentBytes) {
+            closeWriteSegment();
+        }
+        if (writeChannel == null) {
+            openWriteSegment();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(record.length).putInt((int) crc.getValue()).flip();
+        ByteBuffer[] buffers = {header, ByteBuffer.wrap(record)};
+        long remaining = recordBytes;
+        while (remaining > 0) {
+            remaining -= writeChannel.write(buffers);
+        }
+        writeChannel.force(false);
+        writeSize += recordBytes;
+        totalBytes += recordBytes;
+        enforceCapacity();
+    }
+
+    /**
+     * Writes spooled batches to the target in the order they were spooled, stopping at the first
+     * failure. Only one replay runs at a time.
+     *
+     * @return the number of points replayed
+     */
+    public int replay(BatchWriter writer, Target target) {
+        if (!replaying.compareAndSet(false, true)) {
+            return 0;
+        }
+        int replayed = 0;
+        try {
+            synchronized (this) {
+                // replay only reads closed segments
+                closeWriteSegment();
+            }
+            for (;;) {
+                Record record;
+                synchronized (this) {
+                    record = nextRecord();
+                }
+                if (record == null) {
+                    break;
+                }
+                try {
+                    writer.write(record.toBatch(target));
+                    replayed += record.pointCount;
+                } catch (WriteRejectedException e) {
+                    // malformed points would be rejected again and hold up the records behind them
+                    logger.log(Level.WARNING, "[InfluxDB Plugin] Dropped " + record.pointCount + " spooled points rejected by "
+                            + target.getDescription(), e);
+                }
+                synchronized (this) {
+                    commit(record);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.FINE, "Replay of " + directory + " stopped", e);
+        } finally {
+            synchronized (this) {
+                if (uncheckpointed > 0) {
+                    try {
+                        writeCheckpoint();
+                    } catch (IOException e) {
+                        logger.log(Level.WARNING, "Could not write the checkpoint of " + directory, e);
+                    }
+                }
+            }
+            replaying.set(false);
+        }
+        return replayed;
+    }
+
+    public synchronized boolean isEmpty() {
+        return totalBytes == 0;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    private void recover() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create spool directory " + directory);
+        }
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        long sequence = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                        segments.put(sequence, file);
+                    } catch (NumberFormatException e) {
+                        logger.log(Level.WARNING, "Ignoring unexpected file {0} in spool", file);
+                    }
+                }
+            }
+        }
+        readCheckpoint();
+
+        // compaction: segments before the checkpoint have been replayed already
+        while (!segments.isEmpty() && segments.firstKey() < readSequence) {
+            deleteSegment(segments.firstKey());
+        }
+        if (!segments.isEmpty()) {
+            if (readSequence < segments.firstKey()) {
+                readSequence = segments.firstKey();
+                readOffset = 0;
+            }
+            truncateTornRecord(segments.lastEntry().getValue());
+            writeSequence = segments.lastKey() + 1;
+        } else {
+            writeSequence = Math.max(readSequence, 0);
+        }
+        for (File segment : segments.values()) {
+            totalBytes += segment.length();
+        }
+        // consumed prefix of the head segment
+        totalBytes -= Math.min(readOffset, totalBytes);
+    }
+
+    /**
+     * Only the segment that was being written when Jenkins stopped can end with an incomplete
+     * record; walking its headers is enough to find the last complete one.
+     */
+    private void truncateTornRecord(File segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            long position = 0;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (position + HEADER_BYTES <= size) {
+                header.clear();
+                readFully(channel, header, position);
+                int length = header.getInt(0);
+                if (length < 0 || position + HEADER_BYTES + length > size) {
+                    break;
+                }
+                position += HEADER_BYTES + length;
+            }
+            if (position < size) {
+                logger.log(Level.WARNING, "Truncating incomplete record at offset {0} of {1}", new Object[] {position, segment});
+                channel.truncate(position);
+            }
+        }
+    }
+
+    private void openWriteSegment() throws IOException {
+        File file = new File(directory, segmentName(writeSequence));
+        writeChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        writeSize = writeChannel.size();
+        segments.put(writeSequence, file);
+    }
+
+    private void closeWriteSegment() throws IOException {
+        if (writeChannel != null) {
+            writeChannel.close();
+            writeChannel = null;
+            writeSequence++;
+        }
+    }
+
+    private void enforceCapacity() throws IOException {
+        while (totalBytes > maxTotalBytes && segments.size() > 1) {
+            long oldest = segments.firstKey();
+            logger.log(Level.WARNING, "[InfluxDB Plugin] Spool {0} exceeds {1} bytes, dropping its oldest segment",
+                    new Object[] {directory, maxTotalBytes});
+            long consumed = oldest == readSequence ? readOffset : 0;
+            totalBytes -= segments.get(oldest).length() - consumed;
+            deleteSegment(oldest);
+            if (oldest == readSequence) {
+                readSequence = segments.firstKey();
+                readOffset = 0;
+                writeCheckpoint();
+            }
+        }
+    }
+
+    private Record nextRecord() throws IOException {
+        for (;;) {
+            Map.Entry<Long, File> entry = segments.ceilingEntry(readSequence);
+            if (entry == null || (writeChannel != null && entry.getKey() == writeSequence)) {
+                return null;
+            }
+            if (entry.getKey() != readSequence) {
+                if (readChannel != null) {
+                    readChannel.close();
+                    readChannel = null;
+                }
+                readSequence = entry.getKey();
+                readOffset = 0;
+            }
+            Record record = readRecord(entry.getValue());
+            if (record != null) {
+                return record;
+            }
+            // segment fully replayed
+            long remaining = entry.getValue().length() - readOffset;
+            totalBytes -= Math.max(remaining, 0);
+            deleteSegment(readSequence);
+            readSequence++;
+            readOffset = 0;
+            writeCheckpoint();
+        }
+    }
+
+    private Record readRecord(File segment) throws IOException {
+        if (readChannel == null) {
+            readChannel = FileChannel.open(segment.toPath(), StandardOpenOption.READ);
+        }
+        long size = readChannel.size();
+        if (readOffset + HEADER_BYTES > size) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(readChannel, header, readOffset);
+        int length = header.getInt(0);
+        int checksum = header.getInt(4);
+        if (length < 0 || readOffset + HEADER_BYTES + length > size) {
+            return null;
+        }
+        ByteBuffer body = ByteBuffer.allocate(length);
+        readFully(readChannel, body, readOffset + HEADER_BYTES);
+        CRC32 crc = new CRC32();
+        crc.update(body.array());
+        if ((int) crc.getValue() != checksum) {
+            logger.log(Level.WARNING, "Skipping corrupt remainder of spool segment {0}", segment);
+            return null;
+        }
+        return decode(body.array(), readSequence, readOffset + HEADER_BYTES + length);
+    }
+
+    private void commit(Record record) throws IOException {
+        // the segment may have been dropped by the size cap while the record was being written
+        if (record.sequence == readSequence) {
+            totalBytes -= record.nextOffset - readOffset;
+            readOffset = record.nextOffset;
+            if (++uncheckpointed >= CHECKPOINT_INTERVAL) {
+                writeCheckpoint();
+            }
+        }
+    }
+
+    private void deleteSegment(long sequence) throws IOException {
+        if (sequence == readSequence && readChannel != null) {
+            readChannel.close();
+            readChannel = null;
+        }
+        File file = segments.remove(sequence);
+        if (file != null) {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    private void readCheckpoint() throws IOException {
+        File checkpoint = new File(directory, CHECKPOINT);
+        if (!checkpoint.isFile()) {
+            readSequence = segments.isEmpty() ? 0 : segments.firstKey();
+            readOffset = 0;
+            return;
+        }
+        String[] position = new String(Files.readAllBytes(checkpoint.toPath()), StandardCharsets.UTF_8).trim().split(" ");
+        try {
+            readSequence = Long.parseLong(position[0]);
+            readOffset = Long.parseLong(position[1]);
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            logger.log(Level.WARNING, "Ignoring unreadable spool checkpoint {0}", checkpoint);
+            readSequence = segments.isEmpty() ? 0 : segments.firstKey();
+            readOffset = 0;
+        }
+    }
+
+    private void writeCheckpoint() throws IOException {
+        File checkpoint = new File(directory, CHECKPOINT);
+        File temp = new File(directory, CHECKPOINT + ".tmp");
+        Files.write(temp.toPath(), (readSequence + " " + readOffset).getBytes(StandardCharsets.UTF_8));
+        Files.move(temp.toPath(), checkpoint.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        uncheckpointed = 0;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of spool segment");
+            }
+        }
+    }
+
+    private static String segmentName(long sequence) {
+        return String.format("%s%019d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Targets writing to the same database of the same server share their spool.
+     */
+    static String directoryName(Target target) {
+        return legacyDirectoryName(target.getUrl() + "|" + target.getDatabase());
+    }
+
+    // spools used to be named after the description of their target
+    private static String legacyDirectoryName(String description) {
+        String name = description == null ? "" : description;
+        return name.replaceAll("[^A-Za-z0-9_.-]", "_") + "-" + Integer.toHexString(name.hashCode());
+    }
+
+    private static void migrate(File legacy, File directory) {
+        if (legacy.isDirectory() && !directory.exists() && !legacy.renameTo(directory)) {
+            logger.log(Level.WARNING, "[InfluxDB Plugin] Could not move spool {0} to {1}", new Object[] {legacy, directory});
+        }
+    }
+
+    // record body: database, retention policy, point count and the line protocol, separated by newlines
+    private static byte[] encode(WriteBatch batch) {
+        StringBuilder body = new StringBuilder(batch.getPayload().length() + 48);
+        body.append(batch.getDatabase()).append('\n');
+        if (batch.getRetentionPolicy() != null) {
+            body.append(batch.getRetentionPolicy());
+        }
+        body.append('\n').append(POINT_COUNT_MARK).append(batch.getPointCount());
+        body.append('\n').append(batch.getPayload());
+        return body.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Record decode(byte[] body, long sequence, long nextOffset) {
+        String text = new String(body, StandardCharsets.UTF_8);
+        int databaseEnd = text.indexOf('\n');
+        int retentionEnd = text.indexOf('\n', databaseEnd + 1);
+        String retentionPolicy = text.substring(databaseEnd + 1, retentionEnd);
+        int payloadStart = retentionEnd + 1;
+        int points;
+        if (payloadStart < text.length() && text.charAt(payloadStart) == POINT_COUNT_MARK) {
+            int countEnd = text.indexOf('\n', payloadStart);
+            points = Integer.parseInt(text.substring(payloadStart + 1, countEnd));
+            payloadStart = countEnd + 1;
+        } else {
+            // spooled before records kept their point count, every point ends with a newline
+            points = 0;
+            for (int i = payloadStart; i < text.length(); i++) {
+                if (text.charAt(i) == '\n') {
+                    points++;
+                }
+            }
+        }
+        return new Record(sequence, nextOffset, text.substring(0, databaseEnd),
+                retentionPolicy.isEmpty() ? null : retentionPolicy, text.substring(payloadStart), points);
+    }
+
+    private static final class Record {
+        private final long sequence;
+        private final long nextOffset;
+        private final String database;
+        private final String retentionPolicy;
+        private final String payload;
+        private final int pointCount;
+
+        Record(long sequence, long nextOffset, String database, String retentionPolicy, String payload, int pointCount) {
+            this.sequence = sequence;
+            this.nextOffset = nextOffset;
+            this.database = database;
+            this.retentionPolicy = retentionPolicy;
+            this.payload = payload;
+            this.pointCount = pointCount;
+        }
+
+        WriteBatch toBatch(Target target) {
+            return new WriteBatch(target, database, retentionPolicy, payload, pointCount, "spool");
+        }
+    }
+
+    /**
+     * Periodically replays the spools of targets that have spooling enabled.
+     */
+    @Extension
+    public static final class SpoolReplay extends AsyncPeriodicWork {
+
+        private final BatchWriter writer = new BatchWriter();
+
+        public SpoolReplay() {
+            super("InfluxDB spool replay");
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return MIN;
+        }
+
+        @Override
+        protected void execute(TaskListener listener) throws IOException {
+            for (Target target : InfluxDbPublisher.DESCRIPTOR.getTargets()) {
+                if (!target.isSpoolWrites()) {
+                    continue;
+                }
+                PointSpool spool = forTarget(target);
+                if (!spool.isEmpty()) {
+                    int replayed = spool.replay(writer, target);
+                    if (replayed > 0) {
+                        listener.getLogger().println("Replayed " + replayed + " spooled points to " + target.getDescription());
+                    }
+                }
+            }
+        }
+    }
+}
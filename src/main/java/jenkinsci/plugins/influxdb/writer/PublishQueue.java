@@ -0,0 +1,376 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import hudson.init.Terminator;
+import jenkinsci.plugins.influxdb.generators.PointPriority;
+import jenkinsci.plugins.influxdb.stats.PluginStatistics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded queue of batches that are written to InfluxDB by a pool of background sender threads,
+ * so that builds with asynchronous targets do not wait for InfluxDB.
+ *
+ * Each {@link PointPriority} has a lock-free linked queue of its own, sharing a CAS-maintained size;
+ * producers and senders only wait on a monitor when they have to block (queue full or queue empty).
+ * Senders take batches in decreasing priority. A full queue makes room for critical and normal
+ * batches by shedding queued bulk batches, and sheds bulk batches that arrive while it is full,
+ * whatever its policy. Critical batches are never dropped.
+ */
+public final class PublishQueue {
+
+    /** The logger. **/
+    private static final Logger logger = Logger.getLogger(PublishQueue.class.getName());
+
+    public static final int DEFAULT_CAPACITY = 1000;
+    public static final int DEFAULT_SENDER_THREADS = 2;
+
+    private static final long WAIT_MILLIS = 500;
+    private static final long SHUTDOWN_FLUSH_SECONDS = 30;
+
+    private static final PublishQueue INSTANCE = new PublishQueue(new BatchWriter());
+
+    private final Map<PointPriority, Queue<WriteBatch>> queues = new EnumMap<>(PointPriority.class);
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger blockedProducers = new AtomicInteger();
+    private final AtomicInteger idleSenders = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Object notFull = new Object();
+    private final Object notEmpty = new Object();
+    private final BatchWriter writer;
+
+    private volatile int capacity = DEFAULT_CAPACITY;
+    private volatile QueueFullPolicy policy = QueueFullPolicy.BLOCK;
+
+    // guarded by this
+    private int senderThreads = DEFAULT_SENDER_THREADS;
+    private Senders senders;
+
+    PublishQueue(BatchWriter writer) {
+        this.writer = writer;
+        for (PointPriority priority : PointPriority.values()) {
+            queues.put(priority, new ConcurrentLinkedQueue<WriteBatch>());
+        }
+    }
+
+    public static PublishQueue get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Applies the global queue settings. Running senders are replaced if the pool size changed.
+     */
+    public synchronized void configure(int capacity, QueueFullPolicy policy, int senderThreads) {
+        this.capacity = Math.max(1, capacity);
+        this.policy = policy;
+        int threads = Math.max(1, senderThreads);
+        if (threads != this.senderThreads) {
+            this.senderThreads = threads;
+            if (senders != null) {
+                senders.stop();
+                senders = new Senders(threads);
+            }
+        }
+    }
+
+    /**
+     * Queues a batch for a background sender.
+     *
+     * @return false if the queue is full and either the policy is {@link QueueFullPolicy#SPILL} or
+     *         the batch is a bulk batch, in which case the caller is responsible for the batch
+     */
+    public boolean offer(WriteBatch batch) throws InterruptedException {
+        ensureStarted();
+        PointPriority priority = batch.getPriority();
+        if (!tryReserve() && !shedBulk(priority)) {
+            if (priority == PointPriority.BULK) {
+                return false;
+            }
+            switch (policy) {
+                case SPILL:
+                    return false;
+                case DROP_OLDEST:
+                    if (!dropOldest()) {
+                        awaitSlot();
+                    }
+                    break;
+                case BLOCK:
+                default:
+                    awaitSlot();
+                    break;
+            }
+        }
+        enqueue(batch);
+        return true;
+    }
+
+    /**
+     * Queues a batch for a background sender if there is room for it, whatever the policy. Never waits.
+     *
+     * @return false if the queue is full, in which case the caller is responsible for the batch
+     */
+    public boolean tryOffer(WriteBatch batch) {
+        ensureStarted();
+        if (!tryReserve() && !shedBulk(batch.getPriority())) {
+            return false;
+        }
+        enqueue(batch);
+        return true;
+    }
+
+    /**
+     * Waits until every queued batch has been sent.
+     *
+     * @return true if the queue drained within the timeout
+     */
+    public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (size.get() > 0 || inFlight.get() > 0) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @Terminator
+    public static void shutdown() throws InterruptedException {
+        boolean flushed = INSTANCE.flush(SHUTDOWN_FLUSH_SECONDS, TimeUnit.SECONDS);
+        INSTANCE.stopSenders();
+        if (!flushed) {
+            INSTANCE.spoolRemaining();
+        }
+    }
+
+    /**
+     * Moves batches that are still queued to the spool of their target, or logs them as lost.
+     */
+    void spoolRemaining() {
+        WriteBatch batch;
+        int lost = 0;
+        while ((batch = poll()) != null) {
+            size.decrementAndGet();
+            if (!PointSpool.spoolIfEnabled(batch)) {
+                lost += batch.getPointCount();
+            }
+        }
+        if (lost > 0) {
+            logger.log(Level.WARNING, "[InfluxDB Plugin] Shutting down with {0} unsent points", lost);
+        }
+    }
+
+    synchronized void stopSenders() {
+        if (senders != null) {
+            senders.stop();
+            senders = null;
+        }
+    }
+
+    private synchronized void ensureStarted() {
+        if (senders == null) {
+            senders = new Senders(senderThreads);
+        }
+    }
+
+    private void enqueue(WriteBatch batch) {
+        queues.get(batch.getPriority()).add(batch);
+        if (idleSenders.get() > 0) {
+            synchronized (notEmpty) {
+                notEmpty.notify();
+            }
+        }
+    }
+
+    private boolean tryReserve() {
+        for (;;) {
+            int current = size.get();
+            if (current >= capacity) {
+                return false;
+            }
+            if (size.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void awaitSlot() throws InterruptedException {
+        blockedProducers.incrementAndGet();
+        try {
+            synchronized (notFull) {
+                while (!tryReserve()) {
+                    notFull.wait(WAIT_MILLIS);
+                }
+            }
+        } finally {
+            blockedProducers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Makes room for a critical or normal batch by shedding the oldest queued bulk batch, which
+     * goes to the spool of its target if it has one.
+     *
+     * @return true if the new batch took over the slot of a shed batch
+     */
+    private boolean shedBulk(PointPriority priority) {
+        if (priority == PointPriority.BULK) {
+            return false;
+        }
+        WriteBatch oldest = queues.get(PointPriority.BULK).poll();
+        if (oldest == null) {
+            return false;
+        }
+        if (!PointSpool.spoolIfEnabled(oldest)) {
+            dropped.incrementAndGet();
+            PluginStatistics.get().recordShed(oldest.getPointCount());
+            logger.log(Level.FINE, "Publish queue full, shed {0} bulk points from {1}",
+                    new Object[] {oldest.getPointCount(), oldest.getSource()});
+        }
+        return true;
+    }
+
+    /**
+     * Drops the oldest normal batch, or reserves a slot that was freed meanwhile.
+     *
+     * @return false if only critical batches are queued
+     */
+    private boolean dropOldest() {
+        for (;;) {
+            WriteBatch oldest = queues.get(PointPriority.NORMAL).poll();
+            if (oldest != null) {
+                // the new batch takes over the slot of the dropped one
+                dropped.incrementAndGet();
+                logger.log(Level.WARNING, "[InfluxDB Plugin] Publish queue full, dropped {0} points from {1}",
+                        new Object[] {oldest.getPointCount(), oldest.getSource()});
+                return true;
+            }
+            if (shedBulk(PointPriority.NORMAL) || tryReserve()) {
+                return true;
+            }
+            if (!queues.get(PointPriority.CRITICAL).isEmpty()) {
+                return false;
+            }
+            // slots are reserved by producers that have not enqueued yet
+            Thread.yield();
+        }
+    }
+
+    // the oldest batch of the highest priority
+    private WriteBatch poll() {
+        for (Queue<WriteBatch> queue : queues.values()) {
+            WriteBatch batch = queue.poll();
+            if (batch != null) {
+                return batch;
+            }
+        }
+        return null;
+    }
+
+    private boolean isEmpty() {
+        for (Queue<WriteBatch> queue : queues.values()) {
+            if (!queue.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private WriteBatch take() throws InterruptedException {
+        inFlight.incrementAndGet();
+        WriteBatch batch = poll();
+        if (batch == null) {
+            inFlight.decrementAndGet();
+            idleSenders.incrementAndGet();
+            try {
+                synchronized (notEmpty) {
+                    if (isEmpty()) {
+                        notEmpty.wait(WAIT_MILLIS);
+                    }
+                }
+            } finally {
+                idleSenders.decrementAndGet();
+            }
+            return null;
+        }
+        size.decrementAndGet();
+        if (blockedProducers.get() > 0) {
+            synchronized (notFull) {
+                notFull.notify();
+            }
+        }
+        return batch;
+    }
+
+    private void send(WriteBatch batch) {
+        try {
+            writer.write(batch);
+        } catch (Exception e) {
+            if (!(e instanceof WriteRejectedException) && PointSpool.spoolIfEnabled(batch)) {
+                logger.log(Level.FINE, "Spooled batch from " + batch.getSource() + " after failed write", e);
+            } else {
+                logger.log(Level.WARNING, "[InfluxDB Plugin] Could not write " + batch.getPointCount() + " points from "
+                        + batch.getSource() + " to " + batch.getTarget().getDescription(), e);
+            }
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * One generation of sender threads. A generation is retired by clearing its flag, which lets
+     * every thread finish the batch it is currently sending.
+     */
+    private final class Senders implements Runnable {
+
+        private volatile boolean running = true;
+
+        Senders(int threads) {
+            for (int i = 0; i < threads; i++) {
+                Thread thread = new Thread(this, "InfluxDB publish queue sender #" + i);
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+
+        void stop() {
+            running = false;
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    WriteBatch batch = take();
+                    if (batch != null) {
+                        send(batch);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "[InfluxDB Plugin] Publish queue sender failed", e);
+                }
+            }
+        }
+    }
+}
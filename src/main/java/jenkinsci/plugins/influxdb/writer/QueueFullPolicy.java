@@ -0,0 +1,27 @@
+package jenkinsci.plugins.influxdb.writer;
+
+/**
+ * What {@link PublishQueue#offer(WriteBatch)} does when the queue is at capacity.
+ */
+public enum QueueFullPolicy {
+
+    /** Wait on the build's executor until a sender frees a slot. */
+    BLOCK,
+
+    /** Discard the oldest queued batch to make room for the new one. */
+    DROP_OLDEST,
+
+    /** Refuse the batch so that the caller spools it, or writes it synchronously without a spool. */
+    SPILL;
+
+    public static QueueFullPolicy parse(String name) {
+        if (name != null) {
+            for (QueueFullPolicy policy : values()) {
+                if (policy.name().equalsIgnoreCase(name.trim())) {
+                    return policy;
+                }
+            }
+        }
+        return BLOCK;
+    }
+}
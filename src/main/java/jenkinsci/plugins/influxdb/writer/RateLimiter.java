@@ -0,0 +1,113 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import jenkinsci.plugins.influxdb.models.Target;
+import jenkinsci.plugins.influxdb.stats.PluginStatistics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the points and bytes per second written to a target, with one {@link TokenBucket} for
+ * each, shared by all builds, the publish queue and the spool. Targets writing to the same
+ * database have limiters of their own, so that their rates do not replace each other.
+ *
+ * Writes beyond the rate wait for their turn. Synchronous writes of targets that spool are spilled
+ * to the spool instead once writes are booked more than {@link #MAX_BACKLOG_MILLIS} ahead.
+ */
+public final class RateLimiter {
+
+    public static final long MAX_BACKLOG_MILLIS = 10000;
+
+    private static final ConcurrentMap<String, RateLimiter> limiters = new ConcurrentHashMap<>();
+
+    // null if the rate is not limited
+    private volatile TokenBucket points;
+    private volatile TokenBucket bytes;
+
+    RateLimiter() {
+    }
+
+    /**
+     * Returns the limiter of the target with the target's current rates.
+     *
+     * @return null if the target has no rate limit
+     */
+    public static RateLimiter forTarget(Target target) {
+        if (target.getRateLimitPoints() <= 0 && target.getRateLimitBytes() <= 0) {
+            return null;
+        }
+        String key = target.getDescription() + '|' + target.getUrl() + '|' + target.getDatabase();
+        RateLimiter limiter = limiters.get(key);
+        if (limiter == null) {
+            RateLimiter created = new RateLimiter();
+            limiter = limiters.putIfAbsent(key, created);
+            if (limiter == null) {
+                limiter = created;
+            }
+        }
+        limiter.configure(target.getRateLimitPoints(), target.getRateLimitBytes());
+        return limiter;
+    }
+
+    /**
+     * Replaces the buckets whose rate changed, which start out full.
+     */
+    void configure(int pointsPerSecond, int bytesPerSecond) {
+        points = bucket(points, pointsPerSecond);
+        bytes = bucket(bytes, bytesPerSecond);
+    }
+
+    /**
+     * Waits until the batch may be written.
+     */
+    public void acquire(WriteBatch batch) throws InterruptedException {
+        long wait = reserve(batch.getPointCount(), batch.getPayload().length());
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        PluginStatistics.get().recordThrottle(wait);
+    }
+
+    /**
+     * @return nanoseconds to wait before writing the points and bytes
+     */
+    long reserve(int pointCount, long byteCount) {
+        long wait = 0;
+        TokenBucket points = this.points;
+        if (points != null) {
+            wait = points.reserve(pointCount);
+        }
+        TokenBucket bytes = this.bytes;
+        if (bytes != null) {
+            wait = Math.max(wait, bytes.reserve(byteCount));
+        }
+        return wait;
+    }
+
+    /**
+     * @return true if a write would have to wait longer than {@link #MAX_BACKLOG_MILLIS}
+     */
+    public boolean isBackedUp() {
+        long backlog = 0;
+        TokenBucket points = this.points;
+        if (points != null) {
+            backlog = points.getBacklogNanos();
+        }
+        TokenBucket bytes = this.bytes;
+        if (bytes != null) {
+            backlog = Math.max(backlog, bytes.getBacklogNanos());
+        }
+        return backlog > TimeUnit.MILLISECONDS.toNanos(MAX_BACKLOG_MILLIS);
+    }
+
+    private static TokenBucket bucket(TokenBucket current, int perSecond) {
+        if (perSecond <= 0) {
+            return null;
+        }
+        if (current != null && current.getTokensPerSecond() == perSecond) {
+            return current;
+        }
+        return new TokenBucket(perSecond);
+    }
+}
@@ -0,0 +1,47 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import java.io.IOException;
+
+/**
+ * Remembers the status of the last response on the calling thread. The client only reports the
+ * body of an error response, so this is how {@link BatchWriter} tells a write that InfluxDB
+ * could not parse from a server that is down, overloaded or not set up for the write yet.
+ */
+public final class ResponseStatusInterceptor implements Interceptor {
+
+    private static final int BAD_REQUEST = 400;
+
+    private static final ThreadLocal<Integer> lastStatus = new ThreadLocal<>();
+
+    /**
+     * Returns and clears the status of the last response this thread received.
+     *
+     * @return -1 if the last request of this thread got no response
+     */
+    static int takeLastStatus() {
+        Integer status = lastStatus.get();
+        lastStatus.remove();
+        return status != null ? status : -1;
+    }
+
+    /**
+     * Only a malformed write is rejected for good. Other client errors, such as a missing database
+     * or revoked credentials, may be fixed on the server, the write is kept for then.
+     *
+     * @return true if the status rejects the points themselves, so that sending them again cannot succeed
+     */
+    static boolean isMalformed(int status) {
+        return status == BAD_REQUEST;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        lastStatus.remove();
+        Response response = chain.proceed(chain.request());
+        lastStatus.set(response.code());
+        return response;
+    }
+}
@@ -0,0 +1,46 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How often and after which delays a failed write is retried.
+ *
+ * Delays grow exponentially from {@code baseDelayMillis} up to {@code maxDelayMillis}. Each delay
+ * is drawn at random from the upper half of its range, so that builds that failed together do not
+ * retry together.
+ */
+public final class RetryPolicy {
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final int DEFAULT_BASE_DELAY_MILLIS = 500;
+    public static final int DEFAULT_MAX_DELAY_MILLIS = 10000;
+
+    public static final RetryPolicy DEFAULT = new RetryPolicy(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY_MILLIS,
+            DEFAULT_MAX_DELAY_MILLIS);
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMillis = Math.max(1, baseDelayMillis);
+        this.maxDelayMillis = Math.max(this.baseDelayMillis, maxDelayMillis);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param attempt the failed attempt, starting at 1
+     * @return the delay before the next attempt
+     */
+    public long delayMillis(int attempt) {
+        int shift = Math.min(attempt - 1, 62);
+        // compared before shifting, so that the delay cannot overflow
+        long ceiling = baseDelayMillis > (maxDelayMillis >> shift) ? maxDelayMillis : baseDelayMillis << shift;
+        long half = ceiling / 2;
+        return half + ThreadLocalRandom.current().nextLong(ceiling - half + 1);
+    }
+}
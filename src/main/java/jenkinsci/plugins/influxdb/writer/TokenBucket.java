@@ -0,0 +1,54 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket that holds up to one second worth of tokens.
+ *
+ * Instead of a token count, the bucket keeps the time at which all tokens handed out so far are
+ * paid for, and moves it forward with a compare-and-set for every reservation. A reservation never
+ * fails: it is booked right away and returns how long the caller has to wait before using the
+ * tokens, so that concurrent callers are served in the order they reserved.
+ */
+public final class TokenBucket {
+
+    private static final long BURST_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final long tokensPerSecond;
+    // the time the tokens handed out so far are paid for
+    private final AtomicLong paidUntil;
+
+    public TokenBucket(long tokensPerSecond) {
+        this.tokensPerSecond = Math.max(1, tokensPerSecond);
+        this.paidUntil = new AtomicLong(System.nanoTime());
+    }
+
+    public long getTokensPerSecond() {
+        return tokensPerSecond;
+    }
+
+    /**
+     * Reserves the tokens.
+     *
+     * @return nanoseconds to wait before the tokens may be used, 0 if they are available now
+     */
+    public long reserve(long tokens) {
+        long cost = tokens * BURST_NANOS / tokensPerSecond;
+        for (;;) {
+            long now = System.nanoTime();
+            long current = paidUntil.get();
+            long next = Math.max(current, now) + cost;
+            if (paidUntil.compareAndSet(current, next)) {
+                return Math.max(0, next - BURST_NANOS - now);
+            }
+        }
+    }
+
+    /**
+     * @return nanoseconds a reservation made now would have to wait at least
+     */
+    public long getBacklogNanos() {
+        return Math.max(0, paidUntil.get() - BURST_NANOS - System.nanoTime());
+    }
+}
@@ -0,0 +1,78 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import jenkinsci.plugins.influxdb.generators.PointPriority;
+import jenkinsci.plugins.influxdb.models.Target;
+
+/**
+ * A block of line protocol destined for one target, as handed from a build to the write path.
+ */
+public final class WriteBatch {
+
+    private final Target target;
+    private final String database;
+    private final String retentionPolicy;
+    private final String payload;
+    private final int pointCount;
+    private final String source;
+    private final PointPriority priority;
+
+    /**
+     * @param target     the target to write to
+     * @param payload    newline separated line protocol
+     * @param pointCount number of points (lines) in the payload
+     * @param source     where the points come from, used in log messages
+     */
+    public WriteBatch(Target target, String payload, int pointCount, String source) {
+        this(target, payload, pointCount, source, PointPriority.NORMAL);
+    }
+
+    /**
+     * @param priority the priority of all points in the payload
+     */
+    public WriteBatch(Target target, String payload, int pointCount, String source, PointPriority priority) {
+        this(target, target.getDatabase(), target.getRetentionPolicy(), payload, pointCount, source, priority);
+    }
+
+    public WriteBatch(Target target, String database, String retentionPolicy, String payload, int pointCount, String source) {
+        this(target, database, retentionPolicy, payload, pointCount, source, PointPriority.NORMAL);
+    }
+
+    public WriteBatch(Target target, String database, String retentionPolicy, String payload, int pointCount, String source,
+                      PointPriority priority) {
+        this.target = target;
+        this.database = database;
+        this.retentionPolicy = retentionPolicy;
+        this.payload = payload;
+        this.pointCount = pointCount;
+        this.source = source;
+        this.priority = priority;
+    }
+
+    public Target getTarget() {
+        return target;
+    }
+
+    public String getDatabase() {
+        return database;
+    }
+
+    public String getRetentionPolicy() {
+        return retentionPolicy;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public PointPriority getPriority() {
+        return priority;
+    }
+}
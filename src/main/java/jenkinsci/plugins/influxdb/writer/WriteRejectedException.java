@@ -0,0 +1,21 @@
+package jenkinsci.plugins.influxdb.writer;
+
+/**
+ * Thrown when InfluxDB rejects a write as malformed, e.g. for points it cannot parse or a field
+ * type conflict. The write is not retried, as it would be rejected again.
+ */
+public class WriteRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    public WriteRejectedException(int status, Throwable cause) {
+        super("InfluxDB rejected the write with status " + status + ": " + cause.getMessage(), cause);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,42 @@
+package jenkinsci.plugins.influxdb.writer;
+
+/**
+ * What a write sent to InfluxDB: the size of its line protocol and, if the body was compressed,
+ * the size of the compressed body.
+ */
+public final class WriteResult {
+
+    private final long rawBytes;
+    private final long compressedBytes;
+
+    /**
+     * @param compressedBytes bytes of the compressed body, or -1 if the body was sent as it is
+     */
+    public WriteResult(long rawBytes, long compressedBytes) {
+        this.rawBytes = rawBytes;
+        this.compressedBytes = compressedBytes;
+    }
+
+    /**
+     * Returns the result of a batch that was sent as it is.
+     */
+    public static WriteResult uncompressed(WriteBatch batch) {
+        // line protocol is almost entirely ASCII, so chars are a close estimate of bytes
+        return new WriteResult(batch.getPayload().length(), -1);
+    }
+
+    public long getRawBytes() {
+        return rawBytes;
+    }
+
+    /**
+     * @return bytes of the compressed body, or -1 if the body was not compressed
+     */
+    public long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    public boolean isCompressed() {
+        return compressedBytes >= 0;
+    }
+}
@@ -0,0 +1,53 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import jenkinsci.plugins.influxdb.writer.LineProtocolEncoder;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class AgentPointWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writesFilePerPriorityTest() throws Exception {
+        File directory = folder.newFolder();
+        LineProtocolEncoder encoder = new LineProtocolEncoder();
+        try (AgentPointWriter writer = new AgentPointWriter(new PointTemplate("my job", 42, "team_a"), directory)) {
+            writer.start(encoder, "junit_suite").field("tests", 3).endLine(1L);
+            writer.start(encoder, "junit_suite").field("tests", 4).endLine(2L);
+            writer.write(encoder, 2, PointPriority.NORMAL);
+            Assert.assertEquals(0, encoder.length());
+
+            writer.start(encoder, "junit_case").field("duration", 0.5).endLine(3L);
+            writer.write(encoder, 1, PointPriority.BULK);
+
+            Assert.assertArrayEquals(new int[] {0, 2, 1}, writer.getCounts());
+        }
+
+        Assert.assertEquals("junit_suite,prefix=team_a,project_name=my\\ job build_number=42i,project_name=\"my job\",tests=3i 1\n"
+                + "junit_suite,prefix=team_a,project_name=my\\ job build_number=42i,project_name=\"my job\",tests=4i 2\n",
+                read(new File(directory, AgentPointWriter.fileName(PointPriority.NORMAL))));
+        Assert.assertEquals("junit_case,prefix=team_a,project_name=my\\ job build_number=42i,project_name=\"my job\",duration=0.5 3\n",
+                read(new File(directory, AgentPointWriter.fileName(PointPriority.BULK))));
+        Assert.assertFalse(new File(directory, AgentPointWriter.fileName(PointPriority.CRITICAL)).exists());
+    }
+
+    @Test
+    public void templateWithoutPrefixTest() throws Exception {
+        LineProtocolEncoder encoder = new LineProtocolEncoder();
+        new PointTemplate("job", 1, null).start(encoder, "junit_suite").field("tests", 1).endLine();
+
+        Assert.assertEquals("junit_suite,project_name=job build_number=1i,project_name=\"job\",tests=1i\n", encoder.toString());
+    }
+
+    private static String read(File file) throws Exception {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,89 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.model.AbstractBuild;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.User;
+import hudson.scm.ChangeLogSet;
+import jenkinsci.plugins.influxdb.renderer.MeasurementRenderer;
+import jenkinsci.plugins.influxdb.renderer.ProjectNameRenderer;
+import org.influxdb.dto.Point;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class ChangeLogPointGeneratorTest {
+
+    public static final String JOB_NAME = "master";
+    public static final int BUILD_NUMBER = 11;
+    public static final String CUSTOM_PREFIX = "test_prefix";
+
+    private AbstractBuild build;
+    private ChangeLogSet changeSet;
+    private MeasurementRenderer<Run<?, ?>> measurementRenderer;
+
+    @Before
+    public void before() {
+        build = Mockito.mock(AbstractBuild.class);
+        Job job = Mockito.mock(Job.class);
+        changeSet = Mockito.mock(ChangeLogSet.class);
+        measurementRenderer = new ProjectNameRenderer(CUSTOM_PREFIX, null);
+
+        Mockito.when(build.getNumber()).thenReturn(BUILD_NUMBER);
+        Mockito.when(build.getParent()).thenReturn(job);
+        Mockito.when(build.getDisplayName()).thenReturn("#" + BUILD_NUMBER);
+        Mockito.when(build.getChangeSet()).thenReturn(changeSet);
+        Mockito.when(job.getName()).thenReturn(JOB_NAME);
+    }
+
+    @Test
+    public void hasReportDoesNotReadChangeLogTest() {
+        Mockito.when(changeSet.isEmptySet()).thenReturn(false);
+
+        ChangeLogPointGenerator generator = new ChangeLogPointGenerator(measurementRenderer, CUSTOM_PREFIX, build);
+
+        Assert.assertTrue(generator.hasReport());
+        Mockito.verify(changeSet, Mockito.never()).iterator();
+    }
+
+    @Test
+    public void emptyChangeLogTest() {
+        Mockito.when(changeSet.isEmptySet()).thenReturn(true);
+
+        Assert.assertFalse(new ChangeLogPointGenerator(measurementRenderer, CUSTOM_PREFIX, build).hasReport());
+    }
+
+    @Test
+    public void generateTest() {
+        final ChangeLogSet.Entry entry = Mockito.mock(ChangeLogSet.Entry.class);
+        User author = Mockito.mock(User.class);
+        Mockito.when(entry.getMsg()).thenReturn("Fix the build");
+        Mockito.when(entry.getAuthor()).thenReturn(author);
+        Mockito.doReturn(Collections.emptyList()).when(entry).getAffectedFiles();
+        Mockito.when(author.getFullName()).thenReturn("Jane Doe");
+        Mockito.when(changeSet.isEmptySet()).thenReturn(false);
+        Mockito.when(changeSet.iterator()).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return Arrays.asList(entry).iterator();
+            }
+        });
+
+        ChangeLogPointGenerator generator = new ChangeLogPointGenerator(measurementRenderer, CUSTOM_PREFIX, build);
+        Assert.assertTrue(generator.hasReport());
+        Assert.assertTrue(generator.hasReport());
+        Point[] points = generator.generate();
+
+        Assert.assertEquals(1, points.length);
+        String lineProtocol = points[0].lineProtocol();
+        Assert.assertTrue(lineProtocol.contains("commit_count=1i"));
+        Assert.assertTrue(lineProtocol.contains("commit_messages=\"Fix the build\""));
+        Assert.assertTrue(lineProtocol.contains("culprits=\"Jane Doe\""));
+    }
+}
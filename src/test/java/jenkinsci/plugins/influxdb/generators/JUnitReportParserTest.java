@@ -0,0 +1,122 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+public class JUnitReportParserTest {
+
+    private static final String REPORT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<testsuite name=\"com.example.FooTest\" tests=\"3\" time=\"1.5\">\n"
+            + "  <properties><property name=\"java.version\" value=\"1.8\"/></properties>\n"
+            + "  <testcase classname=\"com.example.FooTest\" name=\"passes\" time=\"0.2\"/>\n"
+            + "  <testcase classname=\"com.example.FooTest\" name=\"fails\" time=\"0.7\">\n"
+            + "    <failure message=\"expected\" type=\"java.lang.AssertionError\">stack trace</failure>\n"
+            + "    <system-out>output</system-out>\n"
+            + "  </testcase>\n"
+            + "  <testcase classname=\"com.example.FooTest\" name=\"is skipped\" time=\"0\"><skipped/></testcase>\n"
+            + "</testsuite>\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File workspace;
+    private File output;
+    private PointTemplate template;
+
+    @Before
+    public void before() throws Exception {
+        workspace = folder.newFolder();
+        output = folder.newFolder();
+        template = new PointTemplate("job", 7, null);
+    }
+
+    @Test
+    public void suiteAndCasePointsTest() throws Exception {
+        writeReport("target/surefire-reports/TEST-com.example.FooTest.xml", REPORT);
+
+        int[] counts = parse("**/TEST-*.xml", true);
+
+        Assert.assertArrayEquals(new int[] {0, 1, 3}, counts);
+        String suite = lines(PointPriority.NORMAL).get(0);
+        Assert.assertTrue(suite, suite.startsWith("junit_suite,project_name=job build_number=7i,project_name=\"job\","
+                + "junit_suite_name=\"com.example.FooTest\",junit_tests=3i,junit_failures=1i,junit_errors=0i,"
+                + "junit_skipped=1i,junit_duration=1.5,junit_max_case_duration=0.7 "));
+        List<String> cases = lines(PointPriority.BULK);
+        Assert.assertEquals(3, cases.size());
+        Assert.assertTrue(cases.get(1), cases.get(1).contains(
+                "junit_case_name=\"fails\",junit_result=\"failed\",junit_duration=0.7 "));
+        Assert.assertTrue(cases.get(2), cases.get(2).contains("junit_case_name=\"is skipped\",junit_result=\"skipped\""));
+    }
+
+    @Test
+    public void suitesOfSeveralReportsTest() throws Exception {
+        writeReport("a/TEST-a.xml", REPORT);
+        writeReport("b/TEST-b.xml", "<testsuites>"
+                + "<testsuite name=\"outer\">"
+                + "<testsuite name=\"inner1\"><testcase name=\"x\" time=\"0.25\"><error/></testcase></testsuite>"
+                + "<testsuite name=\"inner2\"><testcase name=\"y\" time=\"0.5\"/><testcase name=\"z\" time=\"0.5\"/></testsuite>"
+                + "</testsuite>"
+                + "</testsuites>");
+        writeReport("b/ignored.xml", REPORT);
+
+        int[] counts = parse("**/TEST-*.xml", false);
+
+        Assert.assertArrayEquals(new int[] {0, 3, 0}, counts);
+        Assert.assertFalse(new File(output, AgentPointWriter.fileName(PointPriority.BULK)).exists());
+        String suites = new String(Files.readAllBytes(new File(output, AgentPointWriter.fileName(PointPriority.NORMAL)).toPath()),
+                StandardCharsets.UTF_8);
+        Assert.assertTrue(suites, suites.contains("junit_suite_name=\"inner1\",junit_tests=1i,junit_failures=0i,junit_errors=1i"));
+        // without a time attribute the cases are summed up
+        Assert.assertTrue(suites, suites.contains("junit_suite_name=\"inner2\",junit_tests=2i,junit_failures=0i,junit_errors=0i,"
+                + "junit_skipped=0i,junit_duration=1.0,junit_max_case_duration=0.5 "));
+        Assert.assertFalse(suites, suites.contains("\"outer\""));
+    }
+
+    @Test
+    public void truncatedReportKeepsCompleteSuitesTest() throws Exception {
+        writeReport("TEST-truncated.xml", "<testsuites>"
+                + "<testsuite name=\"complete\"><testcase name=\"x\" time=\"1\"/></testsuite>"
+                + "<testsuite name=\"truncated\"><testcase name=\"y\" ti");
+
+        int[] counts = parse("TEST-*.xml", true);
+
+        Assert.assertArrayEquals(new int[] {0, 1, 1}, counts);
+        Assert.assertTrue(lines(PointPriority.NORMAL).get(0).contains("junit_suite_name=\"complete\""));
+    }
+
+    @Test
+    public void noReportsTest() throws Exception {
+        Assert.assertArrayEquals(new int[] {0, 0, 0}, parse("**/TEST-*.xml", true));
+    }
+
+    private int[] parse(String includes, boolean casePoints) throws Exception {
+        try (AgentPointWriter writer = new AgentPointWriter(template, output)) {
+            new JUnitReportParser(includes, casePoints).parse(workspace, writer);
+            return writer.getCounts();
+        }
+    }
+
+    private List<String> lines(PointPriority priority) throws IOException {
+        return Files.readAllLines(new File(output, AgentPointWriter.fileName(priority)).toPath(), StandardCharsets.UTF_8);
+    }
+
+    private void writeReport(String path, String content) throws IOException {
+        File report = new File(workspace, path);
+        report.getParentFile().mkdirs();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(report), StandardCharsets.UTF_8)) {
+            writer.write(content);
+        }
+    }
+}
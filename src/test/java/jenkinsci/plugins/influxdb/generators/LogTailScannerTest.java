@@ -0,0 +1,78 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+public class LogTailScannerTest {
+
+    private static final String MARKER = "ANALYSIS SUCCESSFUL, you can browse ";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void findsLastOccurrenceTest() throws Exception {
+        File log = writeLog(MARKER + "http://sonar/dashboard/index/first\n"
+                + filler(1000)
+                + "[INFO] " + MARKER + "http://sonar/dashboard/index/second\r\n"
+                + "Finished: SUCCESS\n");
+
+        LogTailScanner scanner = new LogTailScanner(MARKER, 64);
+
+        Assert.assertEquals("http://sonar/dashboard/index/second", scanner.findLast(log, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void findsMarkerAcrossBlockBoundaryTest() throws Exception {
+        for (int padding = 0; padding < 80; padding++) {
+            File log = writeLog(filler(padding) + MARKER + "http://sonar/dashboard/index/project\n" + filler(100 - padding));
+
+            LogTailScanner scanner = new LogTailScanner(MARKER, 50);
+
+            Assert.assertEquals("http://sonar/dashboard/index/project", scanner.findLast(log, Long.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void stopsAtByteLimitTest() throws Exception {
+        File log = writeLog(MARKER + "http://sonar/dashboard/index/project\n" + filler(1000));
+
+        LogTailScanner scanner = new LogTailScanner(MARKER, 64);
+
+        Assert.assertNull(scanner.findLast(log, 500));
+        Assert.assertEquals("http://sonar/dashboard/index/project", scanner.findLast(log, 2000));
+    }
+
+    @Test
+    public void noMarkerTest() throws Exception {
+        File log = writeLog(filler(300));
+
+        Assert.assertNull(new LogTailScanner(MARKER).findLast(log, Long.MAX_VALUE));
+        Assert.assertNull(new LogTailScanner(MARKER).findLast(writeLog(""), Long.MAX_VALUE));
+    }
+
+    private File writeLog(String content) throws IOException {
+        File log = folder.newFile();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(log), StandardCharsets.UTF_8)) {
+            writer.write(content);
+        }
+        return log;
+    }
+
+    private static String filler(int length) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            builder.append(i % 40 == 39 ? '\n' : 'x');
+        }
+        return builder.toString();
+    }
+}
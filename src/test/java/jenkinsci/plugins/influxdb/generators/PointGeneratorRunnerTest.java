@@ -0,0 +1,229 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import jenkinsci.plugins.influxdb.renderer.MeasurementRenderer;
+import jenkinsci.plugins.influxdb.stats.BuildStatistics;
+import org.influxdb.dto.Point;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+public class PointGeneratorRunnerTest {
+
+    private TaskListener listener;
+    private ByteArrayOutputStream console;
+
+    @Before
+    public void before() {
+        console = new ByteArrayOutputStream();
+        listener = Mockito.mock(TaskListener.class);
+        Mockito.when(listener.getLogger()).thenReturn(new PrintStream(console, true));
+    }
+
+    @Test
+    public void pointsKeepGeneratorOrderTest() throws Exception {
+        PointGeneratorRunner runner = new PointGeneratorRunner(listener, 10);
+        runner.add(new FixedGenerator("first", 200, false), null);
+        runner.add(new FixedGenerator("second", 0, false), "Second data");
+
+        List<Point> points = runner.run();
+
+        Assert.assertEquals(2, points.size());
+        Assert.assertTrue(points.get(0).lineProtocol().startsWith("first"));
+        Assert.assertTrue(points.get(1).lineProtocol().startsWith("second"));
+        Assert.assertTrue(console.toString().contains("Second data found"));
+    }
+
+    @Test
+    public void slowGeneratorDoesNotStallOthersTest() throws Exception {
+        PointGeneratorRunner runner = new PointGeneratorRunner(listener, 1);
+        runner.add(new FixedGenerator("slow", 30000, false), "Slow data");
+        runner.add(new FixedGenerator("fast", 0, false), "Fast data");
+
+        long start = System.currentTimeMillis();
+        List<Point> points = runner.run();
+
+        Assert.assertTrue(System.currentTimeMillis() - start < 10000);
+        Assert.assertEquals(1, points.size());
+        Assert.assertTrue(points.get(0).lineProtocol().startsWith("fast"));
+        Assert.assertTrue(console.toString().contains("Collecting Slow data timed out after"));
+    }
+
+    @Test
+    public void queuedGeneratorsAreNotTimedOutTest() throws Exception {
+        // three rounds of generators, the last one waits for a thread longer than the budget
+        int count = 3 * Math.max(2, Runtime.getRuntime().availableProcessors());
+        PointGeneratorRunner runner = new PointGeneratorRunner(listener, 1);
+        for (int i = 0; i < count; i++) {
+            runner.add(new FixedGenerator("queued", 600, false), null);
+        }
+
+        List<Point> points = runner.run();
+
+        Assert.assertEquals(count, points.size());
+        Assert.assertFalse(console.toString().contains("timed out"));
+    }
+
+    @Test
+    public void timeInSinkDoesNotCountTest() throws Exception {
+        PointGeneratorRunner runner = new PointGeneratorRunner(listener, 1);
+        runner.add(new FixedGenerator("waiting", 0, false), null);
+        final PointCollector collector = new PointCollector();
+
+        // a sink that only implements add(Point) and waits longer than the budget
+        runner.run(new PointSink() {
+            @Override
+            public void add(Point point) {
+                try {
+                    Thread.sleep(1500);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                collector.add(point);
+            }
+        });
+
+        Assert.assertEquals(1, collector.getPoints().size());
+        Assert.assertFalse(console.toString().contains("timed out"));
+    }
+
+    @Test
+    public void failingGeneratorIsReportedTest() throws Exception {
+        PointGeneratorRunner runner = new PointGeneratorRunner(listener, 10);
+        runner.add(new FixedGenerator("broken", 0, true), "Broken data");
+        runner.add(new FixedGenerator("working", 0, false), "Working data");
+
+        List<Point> points = runner.run();
+
+        Assert.assertEquals(1, points.size());
+        Assert.assertTrue(console.toString().contains("Failed to collect Broken data after"));
+    }
+
+    @Test
+    public void pointsAreStreamedIntoSinkTest() throws Exception {
+        PointGeneratorRunner runner = new PointGeneratorRunner(listener, 10);
+        runner.add(new FixedGenerator("first", 0, false), null);
+        runner.add(new FixedGenerator("second", 0, false), null);
+        runner.add(new FixedGenerator("broken", 0, true), "Broken data");
+        PointCollector sink = new PointCollector();
+
+        runner.run(sink);
+
+        Assert.assertEquals(2, sink.getPoints().size());
+    }
+
+    @Test
+    public void pointsOfIncompleteGeneratorsAreDiscardedTest() throws Exception {
+        PointGeneratorRunner runner = new PointGeneratorRunner(listener, 1);
+        runner.add(new StreamingGenerator("failing", 0, true), "Failing data");
+        runner.add(new StreamingGenerator("slow", 30000, false), "Slow data");
+        runner.add(new StreamingGenerator("complete", 0, false), "Complete data");
+        PointCollector sink = new PointCollector();
+
+        runner.run(sink);
+
+        Assert.assertEquals(2, sink.getPoints().size());
+        for (Point point : sink.getPoints()) {
+            Assert.assertTrue(point.lineProtocol().startsWith("complete"));
+        }
+        Assert.assertTrue(console.toString().contains("Collecting Slow data timed out after"));
+    }
+
+    @Test
+    public void generatorRunsAreRecordedTest() throws Exception {
+        PointGeneratorRunner runner = new PointGeneratorRunner(listener, 10);
+        runner.add(new FixedGenerator("working", 50, false), "Working data");
+        runner.add(new FixedGenerator("broken", 0, true), "Broken data");
+
+        runner.run(new PointCollector());
+
+        List<BuildStatistics.GeneratorRun> runs = runner.getStatistics().getGenerators();
+        Assert.assertEquals(2, runs.size());
+        Assert.assertEquals("Working data", runs.get(0).getName());
+        Assert.assertEquals(BuildStatistics.Outcome.GENERATED, runs.get(0).getOutcome());
+        Assert.assertEquals(1, runs.get(0).getPoints());
+        Assert.assertTrue(runs.get(0).getHasReportNanos() >= 0);
+        Assert.assertTrue(runs.get(0).getGenerateNanos() >= 50000000L);
+        Assert.assertEquals(BuildStatistics.Outcome.FAILED, runs.get(1).getOutcome());
+        Assert.assertEquals(-1, runs.get(1).getGenerateNanos());
+    }
+
+    // emits a point, then waits or fails before it emits the second one
+    private static final class StreamingGenerator extends AbstractPointGenerator {
+        private final String measurement;
+        private final long sleepMillis;
+        private final boolean fail;
+
+        StreamingGenerator(String measurement, long sleepMillis, boolean fail) {
+            super(new MeasurementRenderer<Run<?, ?>>() {
+                @Override
+                public String render(Run<?, ?> input) {
+                    return "project";
+                }
+            });
+            this.measurement = measurement;
+            this.sleepMillis = sleepMillis;
+            this.fail = fail;
+        }
+
+        public boolean hasReport() {
+            return true;
+        }
+
+        @Override
+        public void generate(PointSink sink) {
+            sink.add(Point.measurement(measurement).addField("value", 1).build());
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                // the timeout does not stop a generator that keeps emitting
+            }
+            if (fail) {
+                throw new IllegalStateException("report is broken");
+            }
+            sink.add(Point.measurement(measurement).addField("value", 2).build());
+        }
+
+        public Point[] generate() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class FixedGenerator implements PointGenerator {
+        private final String measurement;
+        private final long sleepMillis;
+        private final boolean fail;
+
+        FixedGenerator(String measurement, long sleepMillis, boolean fail) {
+            this.measurement = measurement;
+            this.sleepMillis = sleepMillis;
+            this.fail = fail;
+        }
+
+        public boolean hasReport() {
+            return true;
+        }
+
+        public Point[] generate() {
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                return new Point[0];
+            }
+            if (fail) {
+                throw new IllegalStateException("report is broken");
+            }
+            return new Point[] {Point.measurement(measurement).addField("value", 1).build()};
+        }
+
+        public Point.Builder buildPoint(String name, String customPrefix, Run<?, ?> build) {
+            return Point.measurement(name);
+        }
+    }
+}
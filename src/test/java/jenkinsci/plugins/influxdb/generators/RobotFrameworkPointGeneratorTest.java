@@ -0,0 +1,89 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.plugins.robot.RobotBuildAction;
+import hudson.plugins.robot.model.RobotCaseResult;
+import hudson.plugins.robot.model.RobotResult;
+import hudson.plugins.robot.model.RobotSuiteResult;
+import jenkinsci.plugins.influxdb.renderer.MeasurementRenderer;
+import jenkinsci.plugins.influxdb.renderer.ProjectNameRenderer;
+import org.influxdb.dto.Point;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class RobotFrameworkPointGeneratorTest {
+
+    public static final String JOB_NAME = "master";
+    public static final int BUILD_NUMBER = 11;
+    public static final String CUSTOM_PREFIX = "test_prefix";
+
+    private Run<?, ?> build;
+    private MeasurementRenderer<Run<?, ?>> measurementRenderer;
+    private RobotResult result;
+    private RobotSuiteResult suite;
+
+    @Before
+    public void before() {
+        build = Mockito.mock(Run.class);
+        Job job = Mockito.mock(Job.class);
+        measurementRenderer = new ProjectNameRenderer(CUSTOM_PREFIX, null);
+        RobotBuildAction buildAction = Mockito.mock(RobotBuildAction.class);
+        result = Mockito.mock(RobotResult.class);
+        suite = Mockito.mock(RobotSuiteResult.class);
+
+        Mockito.when(build.getNumber()).thenReturn(BUILD_NUMBER);
+        Mockito.when(build.getParent()).thenReturn(job);
+        Mockito.when(job.getName()).thenReturn(JOB_NAME);
+        Mockito.when(build.getAction(RobotBuildAction.class)).thenReturn(buildAction);
+        Mockito.when(buildAction.getResult()).thenReturn(result);
+        Mockito.when(result.getAllSuites()).thenReturn(Collections.singletonList(suite));
+        Mockito.when(suite.getName()).thenReturn("suite");
+    }
+
+    private RobotCaseResult robotCase(String name, long duration) {
+        RobotCaseResult caseResult = Mockito.mock(RobotCaseResult.class);
+        Mockito.when(caseResult.getName()).thenReturn(name);
+        Mockito.when(caseResult.getParent()).thenReturn(suite);
+        Mockito.when(caseResult.getDuplicateSafeName()).thenReturn(name);
+        Mockito.when(caseResult.getPassed()).thenReturn(1L);
+        Mockito.when(caseResult.getDuration()).thenReturn(duration);
+        Mockito.when(caseResult.getTags()).thenReturn(Collections.singletonList("smoke"));
+        return caseResult;
+    }
+
+    private int casePoints(Point[] points) {
+        int count = 0;
+        for (Point point : points) {
+            if (point.lineProtocol().startsWith("testcase_point")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void duplicateCasesCollapseTest() {
+        RobotCaseResult login = robotCase("login", 100);
+        // nested suites list the cases of their children again
+        Mockito.when(suite.getAllCases()).thenReturn(Arrays.asList(login, robotCase("login", 100), login));
+        RobotFrameworkPointGenerator generator = new RobotFrameworkPointGenerator(measurementRenderer, CUSTOM_PREFIX, build);
+
+        Assert.assertTrue(generator.hasReport());
+        Assert.assertEquals(1, casePoints(generator.generate()));
+    }
+
+    @Test
+    public void distinctCasesAreKeptTest() {
+        Mockito.when(suite.getAllCases()).thenReturn(Arrays.asList(robotCase("login", 100), robotCase("login", 120),
+                robotCase("logout", 100)));
+        RobotFrameworkPointGenerator generator = new RobotFrameworkPointGenerator(measurementRenderer, CUSTOM_PREFIX, build);
+
+        Assert.assertEquals(3, casePoints(generator.generate()));
+    }
+}
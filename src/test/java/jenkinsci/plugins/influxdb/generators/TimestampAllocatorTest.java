@@ -0,0 +1,46 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class TimestampAllocatorTest {
+
+    @Test
+    public void timesIncreaseTest() {
+        long before = System.currentTimeMillis() * 1000000;
+        long previous = TimestampAllocator.nextTimeNanos();
+        Assert.assertTrue(previous >= before);
+        for (int i = 0; i < 100000; i++) {
+            long next = TimestampAllocator.nextTimeNanos();
+            Assert.assertTrue(next > previous);
+            previous = next;
+        }
+    }
+
+    @Test
+    public void timesAreUniqueAcrossThreadsTest() throws Exception {
+        final Set<Long> times = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+        final int threads = 4;
+        final int perThread = 50000;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        times.add(TimestampAllocator.nextTimeNanos());
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        Assert.assertEquals(threads * perThread, times.size());
+    }
+}
@@ -0,0 +1,65 @@
+package jenkinsci.plugins.influxdb.models;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class TargetSnapshotTest {
+
+    @Test
+    public void lookupByDescriptionTest() {
+        Target first = target("first", "http://influx:8086", "jenkins");
+        Target second = target("second", "https://influx.example.com", "jenkins");
+
+        TargetSnapshot snapshot = TargetSnapshot.of(Arrays.asList(first, second));
+
+        Assert.assertTrue(snapshot.getProblems().isEmpty());
+        Assert.assertSame(second, snapshot.get("second"));
+        Assert.assertSame(first, snapshot.getDefault());
+        Assert.assertNull(snapshot.get("third"));
+        Assert.assertNull(snapshot.get(null));
+        Assert.assertEquals(2, snapshot.size());
+        Assert.assertArrayEquals(new Target[] {first, second}, snapshot.toArray());
+    }
+
+    @Test
+    public void duplicateDescriptionKeepsFirstTest() {
+        Target first = target("influx", "http://influx:8086", "jenkins");
+        Target duplicate = target("influx", "http://other:8086", "jenkins");
+
+        TargetSnapshot snapshot = TargetSnapshot.of(Arrays.asList(first, duplicate));
+
+        Assert.assertSame(first, snapshot.get("influx"));
+        Assert.assertEquals(1, snapshot.getProblems().size());
+    }
+
+    @Test
+    public void invalidTargetsAreReportedTest() {
+        TargetSnapshot snapshot = TargetSnapshot.of(Arrays.asList(
+                target("no-url", null, "jenkins"),
+                target("ftp", "ftp://influx", "jenkins"),
+                target("no-database", "http://influx:8086", "")));
+
+        Assert.assertEquals(3, snapshot.getProblems().size());
+        // invalid targets can still be looked up
+        Assert.assertNotNull(snapshot.get("no-database"));
+    }
+
+    @Test
+    public void emptySnapshotTest() {
+        TargetSnapshot snapshot = TargetSnapshot.of(Collections.<Target>emptyList());
+
+        Assert.assertNull(snapshot.getDefault());
+        Assert.assertEquals(0, snapshot.toArray().length);
+    }
+
+    private static Target target(String description, String url, String database) {
+        Target target = new Target();
+        target.setDescription(description);
+        target.setUrl(url);
+        target.setDatabase(database);
+        return target;
+    }
+}
@@ -0,0 +1,50 @@
+package jenkinsci.plugins.influxdb.stats;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverValuesTest() {
+        long[] values = {0, 1, 15, 16, 17, 31, 32, 33, 1000, 123456789, Long.MAX_VALUE / 2, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = LatencyHistogram.index(value);
+            long highest = LatencyHistogram.highestValue(index);
+            Assert.assertTrue(value + " above its bucket", value <= highest);
+            // the relative error is bounded by the sub-bucket resolution
+            Assert.assertTrue(value + " too far below " + highest, highest - value <= Math.max(0, value / 16));
+            if (index > 0) {
+                Assert.assertTrue(value + " below its bucket", value > LatencyHistogram.highestValue(index - 1));
+            }
+        }
+    }
+
+    @Test
+    public void percentilesTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 100; millis++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        Assert.assertEquals(100, snapshot.getCount());
+        Assert.assertEquals(50.0, snapshot.getP50Millis(), 50 * 0.07);
+        Assert.assertEquals(90.0, snapshot.getP90Millis(), 90 * 0.07);
+        Assert.assertEquals(99.0, snapshot.getP99Millis(), 99 * 0.07);
+        Assert.assertEquals(100.0, snapshot.getMaxMillis(), 0.001);
+        Assert.assertEquals(50.5, snapshot.getMeanMillis(), 0.001);
+    }
+
+    @Test
+    public void emptyHistogramTest() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+
+        Assert.assertEquals(0, snapshot.getCount());
+        Assert.assertEquals(0.0, snapshot.getP99Millis(), 0.0);
+        Assert.assertEquals(0.0, snapshot.getMaxMillis(), 0.0);
+    }
+}
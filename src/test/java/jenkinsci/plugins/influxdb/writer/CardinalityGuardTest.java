@@ -0,0 +1,54 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import jenkinsci.plugins.influxdb.models.Target;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CardinalityGuardTest {
+
+    @Test
+    public void measurementLimitKeepsKnownMeasurementsTest() {
+        CardinalityGuard guard = new CardinalityGuard();
+        guard.configure(2, 0, CardinalityAction.REJECT);
+
+        Assert.assertEquals(CardinalityGuard.Verdict.ACCEPT, guard.check("first", "first"));
+        Assert.assertEquals(CardinalityGuard.Verdict.ACCEPT, guard.check("second", "second"));
+        Assert.assertEquals(CardinalityGuard.Verdict.REJECT, guard.check("third", "third"));
+        Assert.assertEquals(CardinalityGuard.Verdict.ACCEPT, guard.check("first", "first,tag=a"));
+        Assert.assertEquals(3, guard.getMeasurementEstimate());
+    }
+
+    @Test
+    public void seriesLimitTest() {
+        CardinalityGuard guard = new CardinalityGuard();
+        guard.configure(0, 100, CardinalityAction.FALLBACK);
+
+        for (int i = 0; i < 90; i++) {
+            Assert.assertEquals(CardinalityGuard.Verdict.ACCEPT, guard.check("jenkins_data", "jenkins_data,prefix=p" + i));
+        }
+        CardinalityGuard.Verdict verdict = CardinalityGuard.Verdict.ACCEPT;
+        for (int i = 90; i < 200; i++) {
+            verdict = guard.check("jenkins_data", "jenkins_data,prefix=p" + i);
+        }
+
+        Assert.assertEquals(CardinalityGuard.Verdict.FALLBACK, verdict);
+        Assert.assertEquals(CardinalityGuard.Verdict.ACCEPT, guard.check("other", "other,prefix=p1"));
+        Assert.assertEquals(CardinalityGuard.Verdict.ACCEPT,
+                guard.check(CardinalityGuard.FALLBACK_MEASUREMENT, CardinalityGuard.FALLBACK_MEASUREMENT));
+    }
+
+    @Test
+    public void targetWithoutLimitsHasNoGuardTest() {
+        Target target = new Target();
+        target.setUrl("http://influx:8086");
+        target.setDatabase("jenkins");
+
+        Assert.assertNull(CardinalityGuard.forTarget(target));
+
+        target.setCardinalityMaxSeries(10);
+        CardinalityGuard guard = CardinalityGuard.forTarget(target);
+
+        Assert.assertNotNull(guard);
+        Assert.assertSame(guard, CardinalityGuard.forTarget(target));
+    }
+}
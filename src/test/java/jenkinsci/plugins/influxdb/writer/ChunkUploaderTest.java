@@ -0,0 +1,196 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import jenkinsci.plugins.influxdb.generators.PointPriority;
+import jenkinsci.plugins.influxdb.models.Target;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ChunkUploaderTest {
+
+    private Target target;
+
+    @Before
+    public void before() {
+        target = new Target();
+        target.setDescription("test");
+        target.setUrl("http://localhost:8086");
+        target.setDatabase("jenkins");
+    }
+
+    private WriteBatch chunk(String source) {
+        return new WriteBatch(target, "jenkins_data value=1i\n", 1, source);
+    }
+
+    @Test
+    public void inFlightUploadsAreBoundedTest() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final AtomicInteger written = new AtomicInteger();
+        BatchWriter writer = new BatchWriter() {
+            @Override
+            public WriteResult write(WriteBatch batch) {
+                int now = running.incrementAndGet();
+                synchronized (maxRunning) {
+                    maxRunning.set(Math.max(maxRunning.get(), now));
+                }
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    running.decrementAndGet();
+                }
+                written.incrementAndGet();
+                return WriteResult.uncompressed(batch);
+            }
+        };
+        ChunkUploader uploader = new ChunkUploader(writer, 3, new RetryPolicy(RetryPolicy.DEFAULT_MAX_ATTEMPTS, 1, 1));
+        for (int i = 0; i < 20; i++) {
+            uploader.submit(chunk("chunk " + i));
+        }
+
+        Assert.assertTrue(uploader.await().isEmpty());
+        Assert.assertEquals(20, written.get());
+        Assert.assertEquals(20, uploader.getChunkCount());
+        Assert.assertTrue(maxRunning.get() <= 3);
+    }
+
+    @Test
+    public void chunksAreRetriedIndependentlyTest() throws Exception {
+        final ConcurrentMap<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        BatchWriter writer = new BatchWriter() {
+            @Override
+            public WriteResult write(WriteBatch batch) {
+                attempts.putIfAbsent(batch.getSource(), new AtomicInteger());
+                int attempt = attempts.get(batch.getSource()).incrementAndGet();
+                if (batch.getSource().equals("broken") || (batch.getSource().equals("flaky") && attempt < 2)) {
+                    throw new IllegalStateException("write failed");
+                }
+                return WriteResult.uncompressed(batch);
+            }
+        };
+        ChunkUploader uploader = new ChunkUploader(writer, 2, new RetryPolicy(RetryPolicy.DEFAULT_MAX_ATTEMPTS, 1, 1));
+        uploader.submit(chunk("fine"));
+        uploader.submit(chunk("flaky"));
+        uploader.submit(chunk("broken"));
+
+        List<ChunkUploader.Failure> failures = uploader.await();
+
+        Assert.assertEquals(1, failures.size());
+        Assert.assertEquals("broken", failures.get(0).getChunk().getSource());
+        Assert.assertEquals(3, failures.get(0).getNumber());
+        Assert.assertEquals(RetryPolicy.DEFAULT_MAX_ATTEMPTS, failures.get(0).getAttempts());
+        Assert.assertEquals(1, attempts.get("fine").get());
+        Assert.assertEquals(2, attempts.get("flaky").get());
+    }
+
+    @Test
+    public void rejectedChunksAreNotRetriedTest() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        BatchWriter writer = new BatchWriter() {
+            @Override
+            public WriteResult write(WriteBatch batch) {
+                attempts.incrementAndGet();
+                throw new WriteRejectedException(400, new RuntimeException("unable to parse"));
+            }
+        };
+        ChunkUploader uploader = new ChunkUploader(writer, 1, new RetryPolicy(RetryPolicy.DEFAULT_MAX_ATTEMPTS, 1, 1));
+        uploader.submit(chunk("malformed"));
+
+        List<ChunkUploader.Failure> failures = uploader.await();
+
+        Assert.assertEquals(1, failures.size());
+        Assert.assertEquals(1, failures.get(0).getAttempts());
+        Assert.assertEquals(1, attempts.get());
+        Assert.assertEquals(0, uploader.getRetries());
+    }
+
+    @Test
+    public void offeredChunksNeverWaitTest() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger written = new AtomicInteger();
+        BatchWriter writer = new BatchWriter() {
+            @Override
+            public WriteResult write(WriteBatch batch) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                written.incrementAndGet();
+                return WriteResult.uncompressed(batch);
+            }
+        };
+        ChunkUploader uploader = new ChunkUploader(writer, 1, new RetryPolicy(RetryPolicy.DEFAULT_MAX_ATTEMPTS, 1, 1));
+        // one upload in flight, the other chunks wait in the backlog
+        for (int i = 0; i < 10; i++) {
+            uploader.offer(chunk("chunk " + i));
+        }
+        uploader.offer(new WriteBatch(target, "jenkins_data value=1i\n", 1, "bulk", PointPriority.BULK));
+        Assert.assertFalse(uploader.isDone());
+
+        release.countDown();
+        List<ChunkUploader.Failure> failures = uploader.await();
+
+        Assert.assertTrue(uploader.isDone());
+        Assert.assertEquals(11, written.get());
+        Assert.assertTrue(failures.isEmpty());
+    }
+
+    @Test
+    public void bulkChunksAreShedOnlyWhileStrugglingTest() throws Exception {
+        final CountDownLatch retrying = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ConcurrentMap<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        BatchWriter writer = new BatchWriter() {
+            @Override
+            public WriteResult write(WriteBatch batch) {
+                attempts.putIfAbsent(batch.getSource(), new AtomicInteger());
+                int attempt = attempts.get(batch.getSource()).incrementAndGet();
+                if (batch.getSource().equals("flaky") && attempt < 2) {
+                    retrying.countDown();
+                    throw new IllegalStateException("write failed");
+                }
+                if (batch.getSource().equals("slow")) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                return WriteResult.uncompressed(batch);
+            }
+        };
+        ChunkUploader uploader = new ChunkUploader(writer, 2, new RetryPolicy(RetryPolicy.DEFAULT_MAX_ATTEMPTS, 1000, 1000));
+        // every upload is busy, the target is not struggling
+        uploader.submit(chunk("slow"));
+        uploader.submit(chunk("busy"));
+        uploader.submit(new WriteBatch(target, "jenkins_data value=1i\n", 1, "queued", PointPriority.BULK));
+        release.countDown();
+        Assert.assertTrue(uploader.await().isEmpty());
+
+        // a chunk waits at least half a second to be retried
+        uploader.submit(chunk("flaky"));
+        retrying.await();
+        Thread.sleep(100);
+        uploader.offer(new WriteBatch(target, "jenkins_data value=1i\n", 1, "shed", PointPriority.BULK));
+        uploader.await();
+        // an earlier retry does not count once the target caught up
+        uploader.submit(new WriteBatch(target, "jenkins_data value=1i\n", 1, "sent", PointPriority.BULK));
+        List<ChunkUploader.Failure> failures = uploader.await();
+
+        Assert.assertEquals(1, uploader.getRetries());
+        Assert.assertEquals(1, failures.size());
+        Assert.assertEquals("shed", failures.get(0).getChunk().getSource());
+        Assert.assertTrue(failures.get(0).getCause() instanceof LoadShedException);
+        Assert.assertEquals(1, attempts.get("queued").get());
+        Assert.assertEquals(1, attempts.get("sent").get());
+    }
+}
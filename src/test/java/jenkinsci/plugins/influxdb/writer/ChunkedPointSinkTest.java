@@ -0,0 +1,200 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import jenkinsci.plugins.influxdb.generators.PointPriority;
+import jenkinsci.plugins.influxdb.models.Target;
+import org.influxdb.dto.Point;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class ChunkedPointSinkTest {
+
+    private Target target;
+    private List<WriteBatch> chunks;
+    private ChunkedPointSink.Handler handler;
+
+    @Before
+    public void before() {
+        target = new Target();
+        target.setDescription("test");
+        target.setDatabase("jenkins");
+        chunks = new CopyOnWriteArrayList<>();
+        handler = new ChunkedPointSink.Handler() {
+            @Override
+            public void handle(WriteBatch chunk) {
+                chunks.add(chunk);
+            }
+        };
+    }
+
+    private static Point point(int number) {
+        return Point.measurement("jenkins_data").addField("build_number", number).time(number, TimeUnit.MILLISECONDS).build();
+    }
+
+    @Test
+    public void chunksByPointCountTest() throws Exception {
+        ChunkedPointSink sink = new ChunkedPointSink(target, "build #1", 2, Integer.MAX_VALUE, handler);
+        for (int i = 1; i <= 5; i++) {
+            sink.add(point(i));
+        }
+        Assert.assertEquals(2, chunks.size());
+
+        sink.close();
+
+        Assert.assertEquals(3, chunks.size());
+        Assert.assertEquals(2, chunks.get(0).getPointCount());
+        Assert.assertEquals(1, chunks.get(2).getPointCount());
+        Assert.assertEquals(point(1).lineProtocol() + "\n" + point(2).lineProtocol() + "\n", chunks.get(0).getPayload());
+        Assert.assertEquals(5, sink.getPointCount());
+    }
+
+    @Test
+    public void chunksBySizeTest() throws Exception {
+        int lineLength = point(1).lineProtocol().length() + 1;
+        ChunkedPointSink sink = new ChunkedPointSink(target, "build #1", Integer.MAX_VALUE, lineLength * 3, handler);
+        for (int i = 1; i <= 7; i++) {
+            sink.add(point(i));
+        }
+        sink.close();
+
+        Assert.assertEquals(3, chunks.size());
+        Assert.assertEquals(3, chunks.get(0).getPointCount());
+        Assert.assertEquals(1, chunks.get(2).getPointCount());
+    }
+
+    @Test
+    public void chunksByPriorityTest() throws Exception {
+        ChunkedPointSink sink = new ChunkedPointSink(target, "build #1", 2, Integer.MAX_VALUE, handler);
+        sink.add(point(1), PointPriority.BULK);
+        sink.add(point(2), PointPriority.NORMAL);
+        sink.add(point(3), PointPriority.BULK);
+        sink.add(point(4), PointPriority.BULK);
+        sink.add(point(5), PointPriority.CRITICAL);
+        Assert.assertEquals(1, chunks.size());
+        Assert.assertEquals(PointPriority.BULK, chunks.get(0).getPriority());
+
+        sink.close();
+
+        Assert.assertEquals(4, chunks.size());
+        Assert.assertEquals(PointPriority.CRITICAL, chunks.get(1).getPriority());
+        Assert.assertEquals(point(5).lineProtocol() + "\n", chunks.get(1).getPayload());
+        Assert.assertEquals(PointPriority.NORMAL, chunks.get(2).getPriority());
+        Assert.assertEquals(PointPriority.BULK, chunks.get(3).getPriority());
+        Assert.assertEquals(point(4).lineProtocol() + "\n", chunks.get(3).getPayload());
+    }
+
+    @Test
+    public void chunksEncodedLinesTest() throws Exception {
+        ChunkedPointSink sink = new ChunkedPointSink(target, "build #1", 2, Integer.MAX_VALUE, handler);
+        sink.addLines(point(1).lineProtocol() + "\n" + point(2).lineProtocol() + "\n\n" + point(3).lineProtocol(),
+                PointPriority.BULK);
+        Assert.assertEquals(1, chunks.size());
+
+        sink.close();
+
+        Assert.assertEquals(2, chunks.size());
+        Assert.assertEquals(point(1).lineProtocol() + "\n" + point(2).lineProtocol() + "\n", chunks.get(0).getPayload());
+        Assert.assertEquals(PointPriority.BULK, chunks.get(1).getPriority());
+        Assert.assertEquals(point(3).lineProtocol() + "\n", chunks.get(1).getPayload());
+        Assert.assertEquals(3, sink.getPointCount());
+    }
+
+    @Test
+    public void dispatcherHandsChunksOnTest() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Thread> handlerThreads = new CopyOnWriteArrayList<>();
+        ExecutorService dispatcher = Executors.newSingleThreadExecutor();
+        ChunkedPointSink sink = new ChunkedPointSink(target, "build #1", 1, Integer.MAX_VALUE, new ChunkedPointSink.Handler() {
+            @Override
+            public void handle(WriteBatch chunk) throws InterruptedException {
+                handlerThreads.add(Thread.currentThread());
+                release.await();
+                chunks.add(chunk);
+            }
+        });
+        sink.setDispatcher(dispatcher, 2);
+        try {
+            // the handler is stuck, the adding thread only fills the backlog
+            for (int i = 1; i <= 3; i++) {
+                sink.add(point(i));
+            }
+            Assert.assertTrue(chunks.isEmpty());
+
+            release.countDown();
+            sink.close();
+
+            Assert.assertEquals(3, chunks.size());
+            Assert.assertEquals(point(1).lineProtocol() + "\n", chunks.get(0).getPayload());
+            Assert.assertEquals(point(3).lineProtocol() + "\n", chunks.get(2).getPayload());
+            Assert.assertFalse(handlerThreads.contains(Thread.currentThread()));
+        } finally {
+            dispatcher.shutdownNow();
+        }
+    }
+
+    @Test
+    public void handlerFailureIsThrownOnCloseTest() throws Exception {
+        ChunkedPointSink sink = new ChunkedPointSink(target, "build #1", 1, Integer.MAX_VALUE, new ChunkedPointSink.Handler() {
+            @Override
+            public void handle(WriteBatch chunk) {
+                throw new IllegalStateException("unreachable");
+            }
+        });
+        sink.add(point(1));
+        sink.add(point(2));
+
+        try {
+            sink.close();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("unreachable", e.getMessage());
+        }
+    }
+
+    @Test
+    public void pointsAfterCloseAreIgnoredTest() throws Exception {
+        ChunkedPointSink sink = new ChunkedPointSink(target, "build #1", handler);
+        sink.add(point(1));
+        sink.close();
+        sink.add(point(2));
+
+        Assert.assertEquals(1, chunks.size());
+        Assert.assertEquals(1, sink.getPointCount());
+    }
+
+    @Test
+    public void verdictsApplyToTheirTargetsTest() throws Exception {
+        Target limited = new Target();
+        limited.setDescription("limited");
+        limited.setDatabase("jenkins");
+        Target other = new Target();
+        other.setDescription("other");
+        other.setDatabase("jenkins");
+        CardinalityGuard guard = new CardinalityGuard();
+        guard.configure(1, 0, CardinalityAction.REJECT);
+        ChunkedPointSink sink = new ChunkedPointSink(target, "build #1", handler);
+        sink.setTargets(Arrays.asList(target, limited, other), Arrays.asList(null, guard, null));
+        sink.add(Point.measurement("first").addField("value", 1).time(1, TimeUnit.MILLISECONDS).build());
+        sink.add(Point.measurement("second").addField("value", 2).time(2, TimeUnit.MILLISECONDS).build());
+        sink.close();
+
+        Assert.assertEquals(3, chunks.size());
+        Assert.assertSame(target, chunks.get(0).getTarget());
+        Assert.assertSame(other, chunks.get(1).getTarget());
+        // targets without a guard share the encoded chunk
+        Assert.assertSame(chunks.get(0).getPayload(), chunks.get(1).getPayload());
+        Assert.assertEquals(2, chunks.get(0).getPointCount());
+        Assert.assertSame(limited, chunks.get(2).getTarget());
+        Assert.assertEquals("first value=1i 1000000\n", chunks.get(2).getPayload());
+        Assert.assertEquals(1, sink.getCardinalityRejected());
+        Assert.assertEquals(2, sink.getPointCount());
+    }
+}
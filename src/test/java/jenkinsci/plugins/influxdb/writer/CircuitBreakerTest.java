@@ -0,0 +1,86 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+    @After
+    public void after() {
+        CircuitBreaker.configure(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD, CircuitBreaker.DEFAULT_OPEN_SECONDS);
+    }
+
+    @Test
+    public void opensAfterConsecutiveFailuresTest() {
+        CircuitBreaker.configure(3, 60);
+        CircuitBreaker breaker = new CircuitBreaker("http://influx:8086");
+
+        breaker.acquire();
+        breaker.recordFailure();
+        breaker.acquire();
+        breaker.recordFailure();
+        breaker.acquire();
+        breaker.recordSuccess();
+        for (int i = 0; i < 3; i++) {
+            breaker.acquire();
+            breaker.recordFailure();
+        }
+
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assert.assertEquals(1, breaker.getTrips());
+        Assert.assertTrue(breaker.getRetryInMillis() > 0);
+        try {
+            breaker.acquire();
+            Assert.fail("open breaker let a write through");
+        } catch (CircuitOpenException expected) {
+            // writes fail at once
+        }
+    }
+
+    @Test
+    public void probeClosesOrReopensTest() throws Exception {
+        CircuitBreaker.configure(1, 1);
+        CircuitBreaker breaker = new CircuitBreaker("http://influx:8086");
+        breaker.acquire();
+        breaker.recordFailure();
+        Thread.sleep(1100);
+
+        breaker.acquire();
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        try {
+            breaker.acquire();
+            Assert.fail("second write let through while probing");
+        } catch (CircuitOpenException expected) {
+            // only one probe at a time
+        }
+        breaker.recordFailure();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assert.assertEquals(2, breaker.getTrips());
+        Thread.sleep(1100);
+
+        breaker.acquire();
+        breaker.recordSuccess();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        Assert.assertEquals(0, breaker.getConsecutiveFailures());
+    }
+
+    @Test
+    public void releasedProbeIsNoFailureTest() throws Exception {
+        CircuitBreaker.configure(1, 1);
+        CircuitBreaker breaker = new CircuitBreaker("http://influx:8086");
+        breaker.acquire();
+        breaker.recordFailure();
+        Thread.sleep(1100);
+
+        breaker.acquire();
+        breaker.release();
+
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assert.assertEquals(1, breaker.getConsecutiveFailures());
+        Assert.assertEquals(1, breaker.getTrips());
+        // the next write is the probe
+        breaker.acquire();
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    }
+}
@@ -0,0 +1,191 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import jenkinsci.plugins.influxdb.generators.PointPriority;
+import jenkinsci.plugins.influxdb.models.Target;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+public class CoalescingWriterTest {
+
+    private ScheduledExecutorService executor;
+    private RecordingWriter writer;
+    private Target target;
+
+    @Before
+    public void before() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        writer = new RecordingWriter();
+        target = new Target();
+        target.setDescription("test");
+        target.setUrl("http://localhost:8086");
+        target.setDatabase("jenkins");
+    }
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+        CoalescingWriter.configure(CoalescingWriter.DEFAULT_MAX_POINTS, CoalescingWriter.DEFAULT_MAX_BYTES,
+                CoalescingWriter.DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    private WriteBatch batch(int number) {
+        return new WriteBatch(target, "jenkins_data build_number=" + number + "i\n", 1, "build #" + number);
+    }
+
+    private void awaitWrites(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (writer.batches.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void flushOnPointThresholdTest() throws Exception {
+        CoalescingWriter.configure(3, CoalescingWriter.DEFAULT_MAX_BYTES, 60000);
+        CoalescingWriter coalescingWriter = new CoalescingWriter(writer, executor, "jenkins", null, PointPriority.NORMAL);
+        for (int i = 1; i <= 3; i++) {
+            coalescingWriter.add(batch(i));
+        }
+        awaitWrites(1);
+
+        Assert.assertEquals(1, writer.batches.size());
+        Assert.assertEquals(3, writer.batches.get(0).getPointCount());
+        Assert.assertEquals("jenkins_data build_number=1i\njenkins_data build_number=2i\njenkins_data build_number=3i\n",
+                writer.batches.get(0).getPayload());
+    }
+
+    @Test
+    public void flushOnIntervalTest() throws Exception {
+        CoalescingWriter.configure(1000, CoalescingWriter.DEFAULT_MAX_BYTES, 50);
+        CoalescingWriter coalescingWriter = new CoalescingWriter(writer, executor, "jenkins", null, PointPriority.NORMAL);
+        coalescingWriter.add(batch(1));
+        coalescingWriter.add(batch(2));
+
+        awaitWrites(1);
+        Assert.assertEquals(1, writer.batches.size());
+        Assert.assertEquals(2, writer.batches.get(0).getPointCount());
+    }
+
+    @Test
+    public void flushWritesPendingPointsTest() throws Exception {
+        CoalescingWriter.configure(1000, CoalescingWriter.DEFAULT_MAX_BYTES, 60000);
+        CoalescingWriter coalescingWriter = new CoalescingWriter(writer, executor, "jenkins", "autogen", PointPriority.NORMAL);
+        coalescingWriter.add(batch(1));
+        coalescingWriter.flush();
+        coalescingWriter.flush();
+
+        Assert.assertEquals(1, writer.batches.size());
+        Assert.assertEquals("autogen", writer.batches.get(0).getRetentionPolicy());
+    }
+
+    @Test
+    public void refuseBatchesWhenBackedUpTest() throws Exception {
+        CoalescingWriter.configure(1000, 64, 60000);
+        CoalescingWriter coalescingWriter = new CoalescingWriter(writer, executor, "jenkins", null, PointPriority.NORMAL);
+        int accepted = 0;
+        while (coalescingWriter.add(batch(accepted)) != null) {
+            accepted++;
+            Assert.assertTrue("pending bytes are not bounded", accepted < 100);
+        }
+        coalescingWriter.flush();
+
+        Assert.assertNotNull(coalescingWriter.add(batch(accepted)));
+    }
+
+    @Test
+    public void ticketReportsFailureTest() throws Exception {
+        CoalescingWriter.configure(1000, CoalescingWriter.DEFAULT_MAX_BYTES, 60000);
+        CoalescingWriter coalescingWriter = new CoalescingWriter(new BatchWriter() {
+            @Override
+            public WriteResult write(WriteBatch batch) {
+                throw new RuntimeException("unreachable");
+            }
+        }, executor, "jenkins", null, PointPriority.NORMAL);
+        CoalescingWriter.Ticket first = coalescingWriter.add(batch(1));
+        CoalescingWriter.Ticket second = coalescingWriter.add(batch(2));
+        coalescingWriter.flush();
+
+        first.await();
+        second.await();
+        Assert.assertEquals("unreachable", first.getFailure().getMessage());
+        Assert.assertSame(first.getFailure(), second.getFailure());
+        Assert.assertFalse(first.isSpooled());
+    }
+
+    @Test
+    public void ticketCarriesShareOfCompressionTest() throws Exception {
+        CoalescingWriter.configure(1000, CoalescingWriter.DEFAULT_MAX_BYTES, 60000);
+        CoalescingWriter coalescingWriter = new CoalescingWriter(new BatchWriter() {
+            @Override
+            public WriteResult write(WriteBatch batch) {
+                return new WriteResult(batch.getPayload().length(), batch.getPayload().length() / 2);
+            }
+        }, executor, "jenkins", null, PointPriority.NORMAL);
+        WriteBatch batch = batch(1);
+        CoalescingWriter.Ticket first = coalescingWriter.add(batch);
+        coalescingWriter.add(batch(2));
+        coalescingWriter.flush();
+
+        first.await();
+        Assert.assertNull(first.getFailure());
+        Assert.assertEquals(batch.getPayload().length(), first.getResult().getRawBytes());
+        Assert.assertEquals(batch.getPayload().length() / 2, first.getResult().getCompressedBytes());
+    }
+
+    @Test
+    public void mergedBatchKeepsPriorityTest() throws Exception {
+        CoalescingWriter.configure(1000, CoalescingWriter.DEFAULT_MAX_BYTES, 60000);
+        CoalescingWriter coalescingWriter = new CoalescingWriter(writer, executor, "jenkins", null, PointPriority.CRITICAL);
+        coalescingWriter.add(new WriteBatch(target, "jenkins_data build_number=1i\n", 1, "build #1", PointPriority.CRITICAL));
+        coalescingWriter.flush();
+
+        Assert.assertEquals(PointPriority.CRITICAL, writer.batches.get(0).getPriority());
+    }
+
+    @Test
+    public void slowTargetDoesNotHoldUpFlushesTest() throws Exception {
+        CoalescingWriter.configure(1, CoalescingWriter.DEFAULT_MAX_BYTES, 60000);
+        final CountDownLatch release = new CountDownLatch(1);
+        CoalescingWriter slow = new CoalescingWriter(new BatchWriter() {
+            @Override
+            public WriteResult write(WriteBatch batch) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return WriteResult.uncompressed(batch);
+            }
+        }, executor, "slow", null, PointPriority.NORMAL);
+        CoalescingWriter fast = new CoalescingWriter(writer, executor, "jenkins", null, PointPriority.NORMAL);
+        // more slow writes than the single flusher thread of the test
+        CoalescingWriter.Ticket blocked = slow.add(batch(1));
+        slow.add(batch(2));
+        fast.add(batch(3));
+
+        awaitWrites(1);
+        Assert.assertEquals(1, writer.batches.size());
+        Assert.assertFalse(blocked.isDone());
+        release.countDown();
+        blocked.await();
+        Assert.assertNull(blocked.getFailure());
+    }
+
+    private static final class RecordingWriter extends BatchWriter {
+        private final List<WriteBatch> batches = new CopyOnWriteArrayList<>();
+
+        @Override
+        public WriteResult write(WriteBatch batch) {
+            batches.add(batch);
+            return WriteResult.uncompressed(batch);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.GzipSource;
+import okio.Okio;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+public class GzipRequestInterceptorTest {
+
+    private static final MediaType TEXT = MediaType.parse("text/plain");
+
+    private static String payload(int lines) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            builder.append("jenkins_data,project_name=test build_number=").append(i).append("i\n");
+        }
+        return builder.toString();
+    }
+
+    private static Request write(String payload) {
+        return new Request.Builder()
+                .url("http://localhost:8086/write?db=jenkins")
+                .post(RequestBody.create(TEXT, payload))
+                .build();
+    }
+
+    private static Request intercept(GzipRequestInterceptor interceptor, Request request) throws Exception {
+        final AtomicReference<Request> sent = new AtomicReference<>();
+        Interceptor.Chain chain = Mockito.mock(Interceptor.Chain.class);
+        Mockito.when(chain.request()).thenReturn(request);
+        Mockito.when(chain.proceed(Mockito.any(Request.class))).thenAnswer(new Answer<Response>() {
+            @Override
+            public Response answer(InvocationOnMock invocation) {
+                Request proceeded = (Request) invocation.getArguments()[0];
+                sent.set(proceeded);
+                return new Response.Builder().request(proceeded).protocol(Protocol.HTTP_1_1).code(204)
+                        .message("No Content").build();
+            }
+        });
+        interceptor.intercept(chain);
+        return sent.get();
+    }
+
+    @Test
+    public void largeWriteIsCompressedTest() throws Exception {
+        String payload = payload(1000);
+
+        Request sent = intercept(new GzipRequestInterceptor(1024), write(payload));
+
+        Assert.assertEquals("gzip", sent.header("Content-Encoding"));
+        Buffer body = new Buffer();
+        sent.body().writeTo(body);
+        Assert.assertEquals(payload, Okio.buffer(new GzipSource(body)).readUtf8());
+
+        WriteResult compression = GzipRequestInterceptor.takeLastCompression();
+        Assert.assertTrue(compression.isCompressed());
+        Assert.assertEquals(payload.length(), compression.getRawBytes());
+        Assert.assertTrue(compression.getCompressedBytes() < compression.getRawBytes());
+        Assert.assertNull(GzipRequestInterceptor.takeLastCompression());
+    }
+
+    @Test
+    public void smallWriteIsNotCompressedTest() throws Exception {
+        Request request = write(payload(1));
+
+        Request sent = intercept(new GzipRequestInterceptor(1024), request);
+
+        Assert.assertSame(request, sent);
+        Assert.assertNull(GzipRequestInterceptor.takeLastCompression());
+    }
+
+    @Test
+    public void queriesAreNotCompressedTest() throws Exception {
+        Request request = new Request.Builder()
+                .url("http://localhost:8086/query?q=SHOW+DATABASES")
+                .post(RequestBody.create(TEXT, payload(1000)))
+                .build();
+
+        Request sent = intercept(new GzipRequestInterceptor(1024), request);
+
+        Assert.assertSame(request, sent);
+    }
+}
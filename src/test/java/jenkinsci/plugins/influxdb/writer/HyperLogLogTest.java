@@ -0,0 +1,33 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HyperLogLogTest {
+
+    @Test
+    public void estimateIsCloseToCardinalityTest() {
+        int[] cardinalities = {0, 1, 10, 100, 1000, 10000, 100000};
+        for (int cardinality : cardinalities) {
+            HyperLogLog sketch = new HyperLogLog(CardinalityGuard.PRECISION);
+            for (int i = 0; i < cardinality; i++) {
+                sketch.offer("project_" + i + ",prefix=branch");
+            }
+
+            // standard error is about 3% with 1024 registers
+            Assert.assertEquals("cardinality " + cardinality, cardinality, sketch.estimate(), Math.max(1, cardinality * 0.1));
+        }
+    }
+
+    @Test
+    public void duplicatesAreNotCountedTest() {
+        HyperLogLog sketch = new HyperLogLog(CardinalityGuard.PRECISION);
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < 50; i++) {
+                sketch.offer("series" + i);
+            }
+        }
+
+        Assert.assertEquals(50, sketch.estimate(), 3);
+    }
+}
@@ -0,0 +1,81 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import jenkinsci.plugins.influxdb.models.Target;
+import org.influxdb.InfluxDB;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InfluxDbClientRegistryTest {
+
+    private final InfluxDbClientRegistry registry = new InfluxDbClientRegistry();
+
+    @After
+    public void after() {
+        registry.closeAll();
+    }
+
+    private static Target target(String description, String url, String username) {
+        Target target = new Target();
+        target.setDescription(description);
+        target.setUrl(url);
+        target.setUsername(username);
+        target.setPassword(username == null ? null : "secret");
+        target.setDatabase("jenkins");
+        return target;
+    }
+
+    @Test
+    public void sameConnectionSharesClientTest() {
+        InfluxDB first = registry.getClient(target("first", "http://localhost:8086", "user"));
+        InfluxDB second = registry.getClient(target("second", "http://localhost:8086", "user"));
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, registry.size());
+    }
+
+    @Test
+    public void differentCredentialsGetOwnClientTest() {
+        InfluxDB first = registry.getClient(target("first", "http://localhost:8086", "user"));
+        InfluxDB second = registry.getClient(target("second", "http://localhost:8086", null));
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(2, registry.size());
+    }
+
+    @Test
+    public void retainOnlyDropsRemovedTargetsTest() {
+        Target kept = target("kept", "http://localhost:8086", null);
+        InfluxDB keptClient = registry.getClient(kept);
+        registry.getClient(target("removed", "http://otherhost:8086", null));
+
+        registry.retainOnly(new Target[] {kept});
+
+        Assert.assertEquals(1, registry.size());
+        Assert.assertSame(keptClient, registry.getClient(kept));
+    }
+
+    @Test
+    public void evictIdleTest() {
+        registry.getClient(target("idle", "http://localhost:8086", null));
+        registry.evictIdle(-1);
+        Assert.assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void evictedClientIsReplacedTest() {
+        Target target = target("idle", "http://localhost:8086", null);
+        InfluxDB evicted = registry.getClient(target);
+        registry.evictIdle(-1);
+
+        Assert.assertNotSame(evicted, registry.getClient(target));
+        Assert.assertEquals(1, registry.size());
+    }
+
+    @Test
+    public void usedClientIsKeptTest() {
+        Target target = target("used", "http://localhost:8086", null);
+        InfluxDB client = registry.getClient(target);
+        registry.evictIdle(60000);
+
+        Assert.assertSame(client, registry.getClient(target));
+    }
+}
@@ -0,0 +1,70 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import jenkinsci.plugins.influxdb.generators.PointCollector;
+import jenkinsci.plugins.influxdb.generators.PointPriority;
+import org.influxdb.dto.Point;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class LineProtocolDecoderTest {
+
+    private static String encode(Point point) {
+        LineProtocolEncoder encoder = new LineProtocolEncoder();
+        encoder.encode(point);
+        return encoder.toString();
+    }
+
+    @Test
+    public void encodedLineIsDecodedTest() {
+        LineProtocolEncoder encoder = new LineProtocolEncoder();
+        // in the order of the fields of a point
+        encoder.measurement("my measurement,x")
+                .tag("project name", "a=b,c d")
+                .field("build_number", 42)
+                .field("duration", 1.5)
+                .field("message", "say \"hi\", C:\\temp=ok")
+                .field("passed", true)
+                .endLine(1000);
+        String line = encoder.toString();
+
+        Point point = LineProtocolDecoder.decode(line.substring(0, line.length() - 1));
+
+        // Point does not escape the backslash, InfluxDB reads a backslash before another char as is
+        Assert.assertEquals("my\\ measurement\\,x,project\\ name=a\\=b\\,c\\ d build_number=42i,duration=1.5,"
+                + "message=\"say \\\"hi\\\", C:\\temp=ok\",passed=true 1000\n", encode(point));
+    }
+
+    @Test
+    public void lineProtocolVariantsAreDecodedTest() {
+        Point point = LineProtocolDecoder.decode("jenkins_data ok=t,failed=FALSE,value=-2.5e3,count=-7i");
+
+        Assert.assertEquals(LineProtocolDecoder.decode("jenkins_data count=-7i,failed=false,ok=true,value=-2500.0")
+                .lineProtocol(), point.lineProtocol());
+    }
+
+    @Test
+    public void invalidLinesAreRejectedTest() {
+        for (String line : new String[] {"jenkins_data", "jenkins_data value=", "jenkins_data value=1x",
+                "jenkins_data value=\"open", "jenkins_data value=1i now", ",tag=a value=1i"}) {
+            try {
+                LineProtocolDecoder.decode(line);
+                Assert.fail("decoded " + line);
+            } catch (IllegalArgumentException expected) {
+                // the line is not line protocol
+            }
+        }
+    }
+
+    @Test
+    public void sinksDecodeLinesTest() {
+        PointCollector collector = new PointCollector();
+
+        collector.addLines("first value=1i 1000\n\nsecond value=2i 2000\n", PointPriority.BULK);
+
+        List<Point> points = collector.getPoints();
+        Assert.assertEquals(2, points.size());
+        Assert.assertEquals("second value=2i 2000\n", encode(points.get(1)));
+    }
+}
@@ -0,0 +1,121 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import org.influxdb.dto.Point;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class LineProtocolEncoderTest {
+
+    @Test
+    public void pointIsEncodedLikeLineProtocolTest() {
+        Point point = Point.measurement("jenkins data")
+                .tag("project_name", "my,project")
+                .tag("prefix", "a=b c")
+                .addField("build_number", 42)
+                .addField("build_time", 123456789L)
+                .addField("coverage", 87.25)
+                .addField("ratio", 50.0)
+                .addField("build_successful", true)
+                .addField("build_status_message", "back to \"normal\"")
+                .time(1500000000000L, TimeUnit.MILLISECONDS)
+                .build();
+        LineProtocolEncoder encoder = new LineProtocolEncoder();
+
+        Assert.assertTrue(encoder.encode(point));
+
+        Assert.assertEquals(point.lineProtocol() + "\n", encoder.toString());
+    }
+
+    @Test
+    public void primitiveFieldsTest() {
+        LineProtocolEncoder encoder = new LineProtocolEncoder(8);
+        encoder.measurement("junit_suite")
+                .tag("suite", "com.example.FooTest")
+                .tag("empty", "")
+                .field("tests", 12)
+                .field("time", 0.25)
+                .field("large", 1.5e12)
+                .field("passed", false)
+                .field("path", "C:\\work")
+                .endLine(1000000000L);
+
+        Assert.assertEquals("junit_suite,suite=com.example.FooTest tests=12i,time=0.25,large=1500000000000,passed=false,"
+                + "path=\"C:\\\\work\" 1000000000\n", encoder.toString());
+    }
+
+    @Test
+    public void newlinesAreEscapedTest() {
+        LineProtocolEncoder encoder = new LineProtocolEncoder();
+        encoder.measurement("junit\ncase")
+                .tag("suite", "a\rb")
+                .field("message", "expected:\r\n<1>")
+                .endLine(1000);
+        encoder.encode(Point.measurement("jenkins_data")
+                .addField("message", "first\nsecond")
+                .time(1, TimeUnit.NANOSECONDS)
+                .build());
+
+        Assert.assertEquals("junit\\ncase,suite=a\\rb message=\"expected:\\r\\n<1>\" 1000\n"
+                + "jenkins_data message=\"first\\nsecond\" 1\n", encoder.toString());
+    }
+
+    @Test
+    public void lineWithoutFieldsIsDiscardedTest() {
+        LineProtocolEncoder encoder = new LineProtocolEncoder();
+        encoder.measurement("first").field("value", 1).endLine();
+        Assert.assertFalse(encoder.measurement("second").tag("a", "b").field("value", Double.NaN).endLine());
+
+        Assert.assertEquals("first value=1i\n", encoder.toString());
+    }
+
+    @Test
+    public void resetKeepsEncodingTest() {
+        LineProtocolEncoder encoder = new LineProtocolEncoder();
+        encoder.measurement("first").field("value", 1).endLine();
+        encoder.reset();
+        encoder.measurement("second").field("value", 2).endLine();
+
+        Assert.assertEquals("second value=2i\n", encoder.toString());
+        Assert.assertEquals("second value=2i\n".length(), encoder.length());
+    }
+
+    @Test
+    public void lastLineIsRewrittenTest() {
+        LineProtocolEncoder encoder = new LineProtocolEncoder();
+        encoder.measurement("first").field("value", 1).endLine();
+        encoder.measurement("my measurement")
+                .tag("project_name", "a b,c")
+                .field("label", "x y")
+                .field("value", 2)
+                .endLine(1000);
+
+        Assert.assertEquals("my\\ measurement", encoder.lastMeasurement());
+        Assert.assertEquals("my\\ measurement,project_name=a\\ b\\,c", encoder.lastSeriesKey());
+
+        encoder.moveLastLineTo("overflow", 2000);
+
+        Assert.assertEquals("first value=1i\n"
+                + "overflow original_series=\"my\\\\ measurement,project_name=a\\\\ b\\\\,c\",my\\ measurement.label=\"x y\","
+                + "my\\ measurement.value=2i 1000\n",
+                encoder.toString());
+
+        encoder.discardLastLine();
+
+        Assert.assertEquals("first value=1i\n", encoder.toString());
+    }
+
+    @Test
+    public void movedLineWithoutTimeGetsOneTest() {
+        LineProtocolEncoder encoder = new LineProtocolEncoder();
+        String line = "jenkins_data,project_name=a message=\"a, b=c \\\"d\\\"\",value=1.5,passed=true";
+        encoder.appendLine(line, 0, line.length());
+
+        encoder.moveLastLineTo("overflow", 2000);
+
+        Assert.assertEquals("overflow original_series=\"jenkins_data,project_name=a\","
+                + "jenkins_data.message=\"a, b=c \\\"d\\\"\",jenkins_data.value=1.5,jenkins_data.passed=true 2000\n",
+                encoder.toString());
+    }
+}
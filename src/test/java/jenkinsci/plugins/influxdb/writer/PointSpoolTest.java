@@ -0,0 +1,206 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import jenkinsci.plugins.influxdb.models.Target;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+public class PointSpoolTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Target target;
+
+    @Before
+    public void before() {
+        target = new Target();
+        target.setDescription("test");
+        target.setUrl("http://localhost:8086");
+        target.setDatabase("jenkins");
+        target.setRetentionPolicy("autogen");
+        target.setSpoolWrites(true);
+    }
+
+    @After
+    public void after() {
+        PointSpool.setMaxTotalBytes(PointSpool.DEFAULT_MAX_TOTAL_BYTES);
+    }
+
+    private WriteBatch batch(int number) {
+        return new WriteBatch(target, "jenkins_data build_number=" + number + "i\n", 1, "build #" + number);
+    }
+
+    @Test
+    public void replayInOrderTest() throws Exception {
+        PointSpool spool = new PointSpool(folder.getRoot(), 64);
+        for (int i = 1; i <= 5; i++) {
+            spool.append(batch(i));
+        }
+        RecordingWriter writer = new RecordingWriter(Integer.MAX_VALUE);
+
+        Assert.assertEquals(5, spool.replay(writer, target));
+        Assert.assertEquals(5, writer.payloads.size());
+        for (int i = 1; i <= 5; i++) {
+            Assert.assertEquals("jenkins_data build_number=" + i + "i\n", writer.payloads.get(i - 1));
+        }
+        Assert.assertTrue(spool.isEmpty());
+        Assert.assertEquals("autogen", writer.retentionPolicies.get(0));
+    }
+
+    @Test
+    public void failedReplayKeepsRemainingBatchesTest() throws Exception {
+        PointSpool spool = new PointSpool(folder.getRoot(), 64);
+        for (int i = 1; i <= 4; i++) {
+            spool.append(batch(i));
+        }
+
+        Assert.assertEquals(2, spool.replay(new RecordingWriter(2), target));
+        Assert.assertFalse(spool.isEmpty());
+
+        RecordingWriter writer = new RecordingWriter(Integer.MAX_VALUE);
+        Assert.assertEquals(2, spool.replay(writer, target));
+        Assert.assertEquals("jenkins_data build_number=3i\n", writer.payloads.get(0));
+    }
+
+    @Test
+    public void rejectedRecordIsDroppedTest() throws Exception {
+        PointSpool spool = new PointSpool(folder.getRoot(), 64);
+        for (int i = 1; i <= 3; i++) {
+            spool.append(batch(i));
+        }
+        RecordingWriter writer = new RecordingWriter(Integer.MAX_VALUE) {
+            @Override
+            public WriteResult write(WriteBatch batch) {
+                if (batch.getPayload().contains("=2i")) {
+                    throw new WriteRejectedException(400, new RuntimeException("field type conflict"));
+                }
+                return super.write(batch);
+            }
+        };
+
+        Assert.assertEquals(2, spool.replay(writer, target));
+        Assert.assertTrue(spool.isEmpty());
+        Assert.assertEquals("jenkins_data build_number=3i\n", writer.payloads.get(1));
+    }
+
+    @Test
+    public void pointCountIsSpooledTest() throws Exception {
+        PointSpool spool = new PointSpool(folder.getRoot(), 1024);
+        // the last line has no newline
+        spool.append(new WriteBatch(target, "jenkins_data build_number=1i\njenkins_data build_number=2i", 2, "build #1"));
+
+        RecordingWriter writer = new RecordingWriter(Integer.MAX_VALUE);
+        Assert.assertEquals(2, spool.replay(writer, target));
+        Assert.assertEquals("jenkins_data build_number=1i\njenkins_data build_number=2i", writer.payloads.get(0));
+    }
+
+    @Test
+    public void recordWithoutPointCountIsReplayedTest() throws Exception {
+        byte[] body = "jenkins\nautogen\njenkins_data build_number=1i\njenkins_data build_number=2i\n"
+                .getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        ByteBuffer record = ByteBuffer.allocate(8 + body.length);
+        record.putInt(body.length).putInt((int) crc.getValue()).put(body);
+        Files.write(new File(folder.getRoot(), "segment-0000000000000000001.lp").toPath(), record.array());
+
+        PointSpool spool = new PointSpool(folder.getRoot(), 1024);
+        RecordingWriter writer = new RecordingWriter(Integer.MAX_VALUE);
+        Assert.assertEquals(2, spool.replay(writer, target));
+        Assert.assertEquals("jenkins_data build_number=1i\njenkins_data build_number=2i\n", writer.payloads.get(0));
+    }
+
+    @Test
+    public void recoveryResumesAtCheckpointTest() throws Exception {
+        PointSpool spool = new PointSpool(folder.getRoot(), 1024);
+        for (int i = 1; i <= 3; i++) {
+            spool.append(batch(i));
+        }
+        spool.replay(new RecordingWriter(1), target);
+
+        PointSpool recovered = new PointSpool(folder.getRoot(), 1024);
+        RecordingWriter writer = new RecordingWriter(Integer.MAX_VALUE);
+        Assert.assertEquals(2, recovered.replay(writer, target));
+        Assert.assertEquals("jenkins_data build_number=2i\n", writer.payloads.get(0));
+    }
+
+    @Test
+    public void recoveryTruncatesTornRecordTest() throws Exception {
+        PointSpool spool = new PointSpool(folder.getRoot(), 1024);
+        spool.append(batch(1));
+        spool.append(batch(2));
+
+        File[] segments = folder.getRoot().listFiles();
+        Assert.assertNotNull(segments);
+        for (File segment : segments) {
+            if (segment.getName().startsWith("segment-")) {
+                try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+                    file.setLength(file.length() - 3);
+                }
+            }
+        }
+
+        PointSpool recovered = new PointSpool(folder.getRoot(), 1024);
+        RecordingWriter writer = new RecordingWriter(Integer.MAX_VALUE);
+        Assert.assertEquals(1, recovered.replay(writer, target));
+        Assert.assertEquals("jenkins_data build_number=1i\n", writer.payloads.get(0));
+    }
+
+    @Test
+    public void sizeCapDropsOldestSegmentsTest() throws Exception {
+        PointSpool.setMaxTotalBytes(200);
+        PointSpool spool = new PointSpool(folder.getRoot(), 64);
+        for (int i = 1; i <= 20; i++) {
+            spool.append(batch(i));
+        }
+        Assert.assertTrue(spool.getTotalBytes() <= 200);
+
+        RecordingWriter writer = new RecordingWriter(Integer.MAX_VALUE);
+        spool.replay(writer, target);
+        Assert.assertEquals("jenkins_data build_number=20i\n", writer.payloads.get(writer.payloads.size() - 1));
+        Assert.assertTrue(writer.payloads.size() < 20);
+    }
+
+    @Test
+    public void renamedTargetKeepsSpoolTest() throws Exception {
+        String name = PointSpool.directoryName(target);
+        target.setDescription("renamed");
+        Assert.assertEquals(name, PointSpool.directoryName(target));
+
+        target.setDatabase("other");
+        Assert.assertNotEquals(name, PointSpool.directoryName(target));
+    }
+
+    private static class RecordingWriter extends BatchWriter {
+        private final int failAfter;
+        private final List<String> payloads = new ArrayList<>();
+        private final List<String> retentionPolicies = new ArrayList<>();
+
+        RecordingWriter(int failAfter) {
+            this.failAfter = failAfter;
+        }
+
+        @Override
+        public WriteResult write(WriteBatch batch) {
+            if (payloads.size() >= failAfter) {
+                throw new RuntimeException("InfluxDB unreachable");
+            }
+            payloads.add(batch.getPayload());
+            retentionPolicies.add(batch.getRetentionPolicy());
+            return WriteResult.uncompressed(batch);
+        }
+    }
+}
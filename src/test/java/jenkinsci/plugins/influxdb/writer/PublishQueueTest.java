@@ -0,0 +1,87 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import jenkinsci.plugins.influxdb.generators.PointPriority;
+import jenkinsci.plugins.influxdb.models.Target;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class PublishQueueTest {
+
+    private Target target;
+    private CountDownLatch release;
+    private List<String> written;
+    private PublishQueue queue;
+
+    @Before
+    public void before() throws Exception {
+        target = new Target();
+        target.setDescription("test");
+        target.setDatabase("jenkins");
+        release = new CountDownLatch(1);
+        written = new CopyOnWriteArrayList<>();
+        queue = new PublishQueue(new BatchWriter() {
+            @Override
+            public WriteResult write(WriteBatch batch) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                written.add(batch.getSource());
+                return WriteResult.uncompressed(batch);
+            }
+        });
+        queue.configure(2, QueueFullPolicy.BLOCK, 1);
+        // keeps the only sender busy until released
+        Assert.assertTrue(queue.offer(batch("blocker", PointPriority.NORMAL)));
+        while (queue.size() > 0) {
+            Thread.sleep(5);
+        }
+    }
+
+    @After
+    public void after() {
+        release.countDown();
+        queue.stopSenders();
+    }
+
+    private WriteBatch batch(String source, PointPriority priority) {
+        return new WriteBatch(target, "jenkins_data value=1i\n", 1, source, priority);
+    }
+
+    @Test
+    public void higherPrioritiesAreSentFirstTest() throws Exception {
+        queue.offer(batch("bulk", PointPriority.BULK));
+        queue.offer(batch("critical", PointPriority.CRITICAL));
+        release.countDown();
+
+        Assert.assertTrue(queue.flush(10, TimeUnit.SECONDS));
+        Assert.assertEquals("blocker", written.get(0));
+        Assert.assertEquals("critical", written.get(1));
+        Assert.assertEquals("bulk", written.get(2));
+    }
+
+    @Test
+    public void bulkBatchesAreShedWhenFullTest() throws Exception {
+        Assert.assertTrue(queue.offer(batch("bulk 1", PointPriority.BULK)));
+        Assert.assertTrue(queue.offer(batch("bulk 2", PointPriority.BULK)));
+
+        // a full queue never blocks on bulk batches
+        Assert.assertFalse(queue.offer(batch("bulk 3", PointPriority.BULK)));
+        Assert.assertTrue(queue.offer(batch("critical", PointPriority.CRITICAL)));
+        Assert.assertEquals(1, queue.getDroppedCount());
+        release.countDown();
+
+        Assert.assertTrue(queue.flush(10, TimeUnit.SECONDS));
+        Assert.assertEquals(3, written.size());
+        Assert.assertEquals("critical", written.get(1));
+        Assert.assertEquals("bulk 2", written.get(2));
+    }
+}
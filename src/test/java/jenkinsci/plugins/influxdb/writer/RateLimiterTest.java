@@ -0,0 +1,61 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import jenkinsci.plugins.influxdb.models.Target;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class RateLimiterTest {
+
+    @Test
+    public void slowestBucketDecidesTest() {
+        RateLimiter limiter = new RateLimiter();
+        limiter.configure(100, 1000);
+
+        Assert.assertEquals(0, limiter.reserve(10, 1000));
+        long wait = limiter.reserve(10, 1000);
+
+        Assert.assertTrue(wait > TimeUnit.MILLISECONDS.toNanos(900));
+        Assert.assertFalse(limiter.isBackedUp());
+        limiter.reserve(0, 10000);
+        Assert.assertTrue(limiter.isBackedUp());
+    }
+
+    @Test
+    public void targetsWithoutLimitHaveNoLimiterTest() {
+        Target target = new Target();
+        target.setUrl("http://influx:8086");
+        target.setDatabase("jenkins");
+
+        Assert.assertNull(RateLimiter.forTarget(target));
+
+        target.setRateLimitPoints(1000);
+        RateLimiter limiter = RateLimiter.forTarget(target);
+
+        Assert.assertNotNull(limiter);
+        Assert.assertSame(limiter, RateLimiter.forTarget(target));
+    }
+
+    @Test
+    public void targetsOfOneDatabaseKeepTheirBucketsTest() {
+        Target fast = new Target();
+        fast.setDescription("fast");
+        fast.setUrl("http://influx:8086");
+        fast.setDatabase("jenkins");
+        fast.setRateLimitPoints(1000);
+        Target slow = new Target();
+        slow.setDescription("slow");
+        slow.setUrl("http://influx:8086");
+        slow.setDatabase("jenkins");
+        slow.setRateLimitPoints(10);
+
+        RateLimiter limiter = RateLimiter.forTarget(fast);
+        Assert.assertEquals(0, limiter.reserve(1000, 0));
+        Assert.assertNotSame(limiter, RateLimiter.forTarget(slow));
+
+        // the burst was spent, looking the limiter up again does not refill it
+        Assert.assertSame(limiter, RateLimiter.forTarget(fast));
+        Assert.assertTrue(limiter.reserve(1000, 0) > 0);
+    }
+}
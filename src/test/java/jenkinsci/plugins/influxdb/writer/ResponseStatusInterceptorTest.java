@@ -0,0 +1,41 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class ResponseStatusInterceptorTest {
+
+    private static void respond(int status) throws Exception {
+        Request request = new Request.Builder().url("http://localhost:8086/write?db=jenkins").build();
+        Interceptor.Chain chain = Mockito.mock(Interceptor.Chain.class);
+        Mockito.when(chain.request()).thenReturn(request);
+        Mockito.when(chain.proceed(request)).thenReturn(new Response.Builder().request(request)
+                .protocol(Protocol.HTTP_1_1).code(status).message("status " + status).build());
+        new ResponseStatusInterceptor().intercept(chain);
+    }
+
+    @Test
+    public void lastStatusIsTakenOnceTest() throws Exception {
+        respond(400);
+
+        Assert.assertEquals(400, ResponseStatusInterceptor.takeLastStatus());
+        Assert.assertEquals(-1, ResponseStatusInterceptor.takeLastStatus());
+    }
+
+    @Test
+    public void onlyMalformedWritesAreRejectedTest() {
+        Assert.assertTrue(ResponseStatusInterceptor.isMalformed(400));
+        Assert.assertFalse(ResponseStatusInterceptor.isMalformed(401));
+        Assert.assertFalse(ResponseStatusInterceptor.isMalformed(403));
+        Assert.assertFalse(ResponseStatusInterceptor.isMalformed(404));
+        Assert.assertFalse(ResponseStatusInterceptor.isMalformed(429));
+        Assert.assertFalse(ResponseStatusInterceptor.isMalformed(500));
+        Assert.assertFalse(ResponseStatusInterceptor.isMalformed(503));
+        Assert.assertFalse(ResponseStatusInterceptor.isMalformed(-1));
+    }
+}
@@ -0,0 +1,29 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void delaysGrowExponentiallyWithJitterTest() {
+        RetryPolicy policy = new RetryPolicy(10, 100, 1000);
+        for (int i = 0; i < 100; i++) {
+            long first = policy.delayMillis(1);
+            long second = policy.delayMillis(2);
+            long third = policy.delayMillis(3);
+            Assert.assertTrue(first >= 50 && first <= 100);
+            Assert.assertTrue(second >= 100 && second <= 200);
+            Assert.assertTrue(third >= 200 && third <= 400);
+        }
+    }
+
+    @Test
+    public void delaysAreCappedTest() {
+        RetryPolicy policy = new RetryPolicy(100, 100, 1000);
+        for (int attempt = 5; attempt < 100; attempt++) {
+            long delay = policy.delayMillis(attempt);
+            Assert.assertTrue(delay >= 500 && delay <= 1000);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package jenkinsci.plugins.influxdb.writer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TokenBucketTest {
+
+    @Test
+    public void burstOfOneSecondIsFreeTest() {
+        TokenBucket bucket = new TokenBucket(1000);
+
+        Assert.assertEquals(0, bucket.reserve(600));
+        Assert.assertEquals(0, bucket.reserve(400));
+        long wait = bucket.reserve(500);
+
+        Assert.assertTrue(wait > TimeUnit.MILLISECONDS.toNanos(450));
+        Assert.assertTrue(wait <= TimeUnit.MILLISECONDS.toNanos(500));
+        Assert.assertTrue(bucket.getBacklogNanos() > TimeUnit.MILLISECONDS.toNanos(450));
+    }
+
+    @Test
+    public void concurrentReservationsAreAllBookedTest() throws Exception {
+        final TokenBucket bucket = new TokenBucket(1000);
+        final AtomicLong maxWait = new AtomicLong();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 100; j++) {
+                        long wait = bucket.reserve(5);
+                        synchronized (maxWait) {
+                            maxWait.set(Math.max(maxWait.get(), wait));
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // 4000 tokens at 1000 per second, the first second is free
+        Assert.assertTrue(maxWait.get() > TimeUnit.MILLISECONDS.toNanos(2900));
+        Assert.assertTrue(maxWait.get() <= TimeUnit.MILLISECONDS.toNanos(3000));
+    }
+}